@@ -0,0 +1,114 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Dictionary encoding of UTF-8 strings to dense int ids (0..size-1), in insertion order.
+ * The strings are kept as bytes in a single arena and looked up through an open-addressing table,
+ * so no String (or boxed Integer) is created per entry while loading.
+ */
+final class ByteStringDictionary {
+
+	private byte[] bytes = new byte[1 << 16];
+	private int byteCount;
+	private int[] offsets = new int[1 << 10]; // Entry id spans bytes[offsets[id] .. offsets[id + 1]).
+	private int[] hashes = new int[1 << 10];
+	private int size;
+	private int[] table = new int[1 << 11]; // id + 1 per slot; 0 when empty.
+
+	int size() {
+		return this.size;
+	}
+
+	/**
+	 * @return the id of the string, adding it if it is new. New ids are always equal to the previous size().
+	 */
+	int intern(byte[] source, int offset, int length) {
+		int hash = hash(source, offset, length);
+		int mask = this.table.length - 1;
+		for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+			int id = this.table[slot] - 1;
+			if (id < 0) {
+				return this.add(source, offset, length, hash, slot);
+			}
+			if (this.hashes[id] == hash && this.equals(id, source, offset, length)) {
+				return id;
+			}
+		}
+	}
+
+	// Raw UTF-8 access, valid until the next intern().
+	byte[] bytes() {
+		return this.bytes;
+	}
+
+	int offset(int id) {
+		return this.offsets[id];
+	}
+
+	int length(int id) {
+		return this.offsets[id + 1] - this.offsets[id];
+	}
+
+	String get(int id) {
+		return new String(this.bytes, this.offsets[id], this.offsets[id + 1] - this.offsets[id], StandardCharsets.UTF_8);
+	}
+
+	private int add(byte[] source, int offset, int length, int hash, int slot) {
+		int id = this.size++;
+		if (this.byteCount + length > this.bytes.length) {
+			this.bytes = Arrays.copyOf(this.bytes, Math.max(this.bytes.length * 2, this.byteCount + length));
+		}
+		if (this.size + 1 > this.offsets.length) {
+			this.offsets = Arrays.copyOf(this.offsets, this.offsets.length * 2);
+			this.hashes = Arrays.copyOf(this.hashes, this.hashes.length * 2);
+		}
+		System.arraycopy(source, offset, this.bytes, this.byteCount, length);
+		this.offsets[id] = this.byteCount;
+		this.byteCount += length;
+		this.offsets[id + 1] = this.byteCount;
+		this.hashes[id] = hash;
+		this.table[slot] = id + 1;
+		if (this.size * 2 > this.table.length) {
+			this.rehash();
+		}
+		return id;
+	}
+
+	private void rehash() {
+		this.table = new int[this.table.length * 2];
+		int mask = this.table.length - 1;
+		for (int id = 0; id < this.size; id++) {
+			int slot = this.hashes[id] & mask;
+			while (this.table[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			this.table[slot] = id + 1;
+		}
+	}
+
+	private boolean equals(int id, byte[] source, int offset, int length) {
+		int start = this.offsets[id];
+		if (this.offsets[id + 1] - start != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (this.bytes[start + i] != source[offset + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int hash(byte[] source, int offset, int length) {
+		int hash = 0x811C9DC5; // FNV-1a, then a final mix so the low bits are usable as a slot index.
+		for (int i = offset; i < offset + length; i++) {
+			hash = (hash ^ source[i]) * 0x01000193;
+		}
+		hash ^= hash >>> 16;
+		hash *= 0x85EBCA6B;
+		return hash ^ (hash >>> 13);
+	}
+
+}
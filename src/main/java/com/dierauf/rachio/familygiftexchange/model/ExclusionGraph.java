@@ -0,0 +1,86 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import java.util.Arrays;
+
+/**
+ * Arbitrary giver -> receiver exclusions (spouses in different households, managers and reports, ...) as a
+ * sparse adjacency structure: the excluded receivers of each giver, sorted, back to back in one array.
+ * Memory is O(n + exclusions); lookups are a binary search in the giver's exclusions.
+ */
+public final class ExclusionGraph implements GiftExclusions {
+
+	static final String ERROR_MESSAGE_INVALID_EXCLUSION = "Invalid exclusion: ";
+
+	private final int[] offsets; // Exclusions of giver g: excludedReceiverIds[offsets[g] .. offsets[g + 1]).
+	private final int[] excludedReceiverIds;
+
+	/**
+	 * @param familyMemberCount
+	 * @param giverIds giverIds[i] must not give to receiverIds[i].
+	 * @param receiverIds
+	 */
+	public ExclusionGraph(int familyMemberCount, int[] giverIds, int[] receiverIds) throws Exception {
+		if (giverIds.length != receiverIds.length) {
+			throw new Exception(ERROR_MESSAGE_INVALID_EXCLUSION + giverIds.length + " givers for " + receiverIds.length + " receivers.");
+		}
+		this.offsets = new int[familyMemberCount + 1];
+		for (int i = 0; i < giverIds.length; i++) {
+			if (giverIds[i] < 0 || giverIds[i] >= familyMemberCount || receiverIds[i] < 0 || receiverIds[i] >= familyMemberCount) {
+				throw new Exception(ERROR_MESSAGE_INVALID_EXCLUSION + "[" + giverIds[i] + ":" + receiverIds[i] + "]");
+			}
+			this.offsets[giverIds[i] + 1]++;
+		}
+		for (int giverId = 0; giverId < familyMemberCount; giverId++) {
+			this.offsets[giverId + 1] += this.offsets[giverId];
+		}
+		this.excludedReceiverIds = new int[giverIds.length];
+		int[] next = Arrays.copyOf(this.offsets, familyMemberCount);
+		for (int i = 0; i < giverIds.length; i++) {
+			this.excludedReceiverIds[next[giverIds[i]]++] = receiverIds[i];
+		}
+		for (int giverId = 0; giverId < familyMemberCount; giverId++) {
+			Arrays.sort(this.excludedReceiverIds, this.offsets[giverId], this.offsets[giverId + 1]);
+		}
+	}
+
+	/**
+	 * Exclusions that apply both ways: a[i] and b[i] must not give to each other.
+	 */
+	public static ExclusionGraph symmetric(int familyMemberCount, int[] a, int[] b) throws Exception {
+		if (a.length != b.length) {
+			throw new Exception(ERROR_MESSAGE_INVALID_EXCLUSION + a.length + " givers for " + b.length + " receivers.");
+		}
+		int[] giverIds = Arrays.copyOf(a, a.length * 2);
+		int[] receiverIds = Arrays.copyOf(b, b.length * 2);
+		System.arraycopy(b, 0, giverIds, a.length, b.length);
+		System.arraycopy(a, 0, receiverIds, b.length, a.length);
+		return new ExclusionGraph(familyMemberCount, giverIds, receiverIds);
+	}
+
+	@Override
+	public boolean isExcluded(int giverId, int receiverId) {
+		return giverId >= 0 && giverId < this.offsets.length - 1
+				&& Arrays.binarySearch(this.excludedReceiverIds, this.offsets[giverId], this.offsets[giverId + 1], receiverId) >= 0;
+	}
+
+	public int getFamilyMemberCount() {
+		return this.offsets.length - 1;
+	}
+
+	public int getExclusionCount() {
+		return this.excludedReceiverIds.length;
+	}
+
+	int getExclusionsOffset(int giverId) {
+		return this.offsets[giverId];
+	}
+
+	int getExclusionsEnd(int giverId) {
+		return this.offsets[giverId + 1];
+	}
+
+	int getExcludedReceiverId(int index) {
+		return this.excludedReceiverIds[index];
+	}
+
+}
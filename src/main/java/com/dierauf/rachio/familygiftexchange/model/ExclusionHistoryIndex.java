@@ -0,0 +1,117 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Memory-mapped index of past receivers per giver, so that nobody draws the same person as in the
+ * last N years. The file holds a fixed number of slots (years) per giver, which makes a lookup a
+ * direct offset computation plus at most N int reads, without loading the index onto the heap.
+ * Layout (big-endian int32): "GXH1", familyMemberCount, years, 0, then familyMemberCount * years
+ * receiver ids (most recent year first; -1 for an empty slot).
+ */
+public final class ExclusionHistoryIndex implements GiftExclusions {
+
+	static final int MAGIC = 0x47584831; // "GXH1"
+	static final int HEADER_SIZE = 16;
+	static final int EMPTY_SLOT = -1;
+	static final String ERROR_MESSAGE_INVALID_EXCLUSION_HISTORY = "Invalid exclusion history file: ";
+
+	private final MappedByteBuffer buffer;
+	private final int familyMemberCount;
+	private final int years;
+
+	private ExclusionHistoryIndex(MappedByteBuffer buffer, int familyMemberCount, int years) {
+		this.buffer = buffer;
+		this.familyMemberCount = familyMemberCount;
+		this.years = years;
+	}
+
+	/**
+	 * Maps an existing index read-only. Only the header is read.
+	 */
+	public static ExclusionHistoryIndex open(Path path) throws Exception {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (channel.size() < HEADER_SIZE) {
+				throw new Exception(ERROR_MESSAGE_INVALID_EXCLUSION_HISTORY + path);
+			}
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			int familyMemberCount = buffer.getInt(4);
+			int years = buffer.getInt(8);
+			if (buffer.getInt(0) != MAGIC || familyMemberCount < 0 || years < 0
+					|| channel.size() != HEADER_SIZE + (long) familyMemberCount * years * Integer.BYTES) {
+				throw new Exception(ERROR_MESSAGE_INVALID_EXCLUSION_HISTORY + path);
+			}
+			return new ExclusionHistoryIndex(buffer, familyMemberCount, years);
+		}
+	}
+
+	/**
+	 * Writes an index of the most recent draws. The file is replaced in place, so it must not be open in this
+	 * process: a mapping is only released by garbage collection, and Windows refuses to truncate a mapped
+	 * file. Write each year's index to a new file instead.
+	 * @param familyMemberCount
+	 * @param years number of most recent draws to keep.
+	 * @param draws past draws as receiverOf arrays (indexed by giver id), oldest first. A shorter array or
+	 * a negative receiver id means the giver did not take part that year.
+	 */
+	public static void write(Path path, int familyMemberCount, int years, List<int[]> draws) throws IOException {
+		int[][] recentDraws = new int[years][];
+		for (int year = 0; year < years && year < draws.size(); year++) {
+			recentDraws[year] = draws.get(draws.size() - 1 - year);
+		}
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.WRITE)) {
+			ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+			buffer.putInt(MAGIC).putInt(familyMemberCount).putInt(years).putInt(0);
+			for (int giverId = 0; giverId < familyMemberCount; giverId++) {
+				for (int year = 0; year < years; year++) {
+					int[] receiverOf = recentDraws[year];
+					int receiverId = receiverOf != null && giverId < receiverOf.length && receiverOf[giverId] >= 0
+							? receiverOf[giverId] : EMPTY_SLOT;
+					if (!buffer.hasRemaining()) {
+						writeFully(channel, buffer);
+					}
+					buffer.putInt(receiverId);
+				}
+			}
+			writeFully(channel, buffer);
+		}
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	@Override
+	public boolean isExcluded(int giverId, int receiverId) {
+		if (giverId < 0 || giverId >= this.familyMemberCount) {
+			return false;
+		}
+		int offset = HEADER_SIZE + giverId * this.years * Integer.BYTES;
+		for (int year = 0; year < this.years; year++) {
+			if (this.buffer.getInt(offset + year * Integer.BYTES) == receiverId) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public int getFamilyMemberCount() {
+		return this.familyMemberCount;
+	}
+
+	public int getYears() {
+		return this.years;
+	}
+
+}
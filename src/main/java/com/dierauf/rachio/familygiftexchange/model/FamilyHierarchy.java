@@ -0,0 +1,150 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import java.util.Arrays;
+
+/**
+ * Nested groupings of family members, e.g. household (level 0) within branch within extended family. Each
+ * level is a flat array of group ids indexed by family member id, so "same group at level k" is one
+ * comparison. Hard levels must be honored; soft levels are honored when possible.
+ * Levels are nested, so not drawing one's own group at a coarse level implies the same at every finer
+ * level, and a level can be drawn exactly like family units: it is feasible when no group holds more than
+ * half of the pool. {@link #selectLevel()} picks the coarsest feasible level at or above the coarsest hard
+ * one, relaxing soft levels from the coarsest down only when they would make the draw fail. A relaxed level
+ * has one group holding more than half of the pool; its other members can still be kept from their own group.
+ */
+public final class FamilyHierarchy {
+
+	public enum Strength {
+		HARD, SOFT
+	}
+
+	static final String ERROR_MESSAGE_INVALID_HIERARCHY = "Invalid family hierarchy: ";
+
+	private final int[][] groupOf; // groupOf[level][familyMemberId], dense group ids per level.
+	private final int[] groupCounts;
+	private final int[] largestGroupSizes;
+	private final int[] largestGroups;
+	private final Strength[] strengths;
+
+	/**
+	 * @param groupOf group id of each family member at each level, from the finest (household) to the
+	 * coarsest; any int ids, renumbered internally. Each group must lie within one group of the next level.
+	 * @param strengths one per level; the finest level must be HARD.
+	 */
+	public FamilyHierarchy(int[][] groupOf, Strength[] strengths) throws Exception {
+		if (groupOf.length == 0 || groupOf.length != strengths.length) {
+			throw new Exception(ERROR_MESSAGE_INVALID_HIERARCHY + "expecting one strength per level, and at least one level.");
+		}
+		if (strengths[0] != Strength.HARD) {
+			throw new Exception(ERROR_MESSAGE_INVALID_HIERARCHY + "the finest level (households) must be hard.");
+		}
+		int familyMemberCount = groupOf[0].length;
+		int levelCount = groupOf.length;
+		this.groupOf = new int[levelCount][];
+		this.groupCounts = new int[levelCount];
+		this.largestGroupSizes = new int[levelCount];
+		this.largestGroups = new int[levelCount];
+		this.strengths = strengths.clone();
+		for (int level = 0; level < levelCount; level++) {
+			if (groupOf[level].length != familyMemberCount || strengths[level] == null) {
+				throw new Exception(ERROR_MESSAGE_INVALID_HIERARCHY + "level " + level + " does not cover "
+						+ familyMemberCount + " family members.");
+			}
+			this.renumber(level, groupOf[level]);
+			if (level > 0) {
+				this.validateNesting(level);
+			}
+		}
+	}
+
+	// Dense group ids, in ascending order of the given ids, and the largest group and its size.
+	private void renumber(int level, int[] groupIds) {
+		int[] sortedGroupIds = groupIds.clone();
+		Arrays.sort(sortedGroupIds);
+		int distinctCount = 0;
+		for (int i = 0; i < sortedGroupIds.length; i++) {
+			if (i == 0 || sortedGroupIds[i] != sortedGroupIds[i - 1]) {
+				sortedGroupIds[distinctCount++] = sortedGroupIds[i];
+			}
+		}
+		int[] groupSizes = new int[distinctCount];
+		int[] denseGroupOf = new int[groupIds.length];
+		for (int memberId = 0; memberId < groupIds.length; memberId++) {
+			int denseGroupId = Arrays.binarySearch(sortedGroupIds, 0, distinctCount, groupIds[memberId]);
+			denseGroupOf[memberId] = denseGroupId;
+			if (++groupSizes[denseGroupId] > this.largestGroupSizes[level]) {
+				this.largestGroupSizes[level] = groupSizes[denseGroupId];
+				this.largestGroups[level] = denseGroupId;
+			}
+		}
+		this.groupOf[level] = denseGroupOf;
+		this.groupCounts[level] = distinctCount;
+	}
+
+	private void validateNesting(int level) throws Exception {
+		int[] parentOf = new int[this.groupCounts[level - 1]];
+		Arrays.fill(parentOf, -1);
+		for (int memberId = 0; memberId < this.groupOf[level].length; memberId++) {
+			int group = this.groupOf[level - 1][memberId];
+			int parent = this.groupOf[level][memberId];
+			if (parentOf[group] == -1) {
+				parentOf[group] = parent;
+			}
+			else if (parentOf[group] != parent) {
+				throw new Exception(ERROR_MESSAGE_INVALID_HIERARCHY + "family member " + memberId + " splits a level "
+						+ (level - 1) + " group across level " + level + " groups.");
+			}
+		}
+	}
+
+	public boolean isSameGroup(int level, int familyMemberId, int otherFamilyMemberId) {
+		int[] groupOfLevel = this.groupOf[level];
+		return groupOfLevel[familyMemberId] == groupOfLevel[otherFamilyMemberId];
+	}
+
+	public int getLevelCount() {
+		return this.groupOf.length;
+	}
+
+	public int getFamilyMemberCount() {
+		return this.groupOf[0].length;
+	}
+
+	public Strength getStrength(int level) {
+		return this.strengths[level];
+	}
+
+	// Dense group ids of a level; not copied.
+	int[] getGroupOf(int level) {
+		return this.groupOf[level];
+	}
+
+	// Dense id of a largest group of a level; the only group above half of the pool if the level is relaxed.
+	int getLargestGroup(int level) {
+		return this.largestGroups[level];
+	}
+
+	/**
+	 * @return the coarsest level that can be drawn, never below the coarsest hard level. If that hard level
+	 * itself cannot be drawn, it is returned anyway and validation reports why.
+	 */
+	int selectLevel() {
+		int coarsestHardLevel = 0;
+		for (int level = 0; level < this.strengths.length; level++) {
+			if (this.strengths[level] == Strength.HARD) {
+				coarsestHardLevel = level;
+			}
+		}
+		for (int level = this.groupOf.length - 1; level > coarsestHardLevel; level--) {
+			if (this.isFeasible(level)) {
+				return level;
+			}
+		}
+		return coarsestHardLevel;
+	}
+
+	private boolean isFeasible(int level) {
+		return this.groupCounts[level] >= 2 && this.largestGroupSizes[level] * 2L <= this.getFamilyMemberCount();
+	}
+
+}
@@ -0,0 +1,58 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import java.util.SplittableRandom;
+
+/**
+ * Random orders of family units, shared by the engines: a plain shuffle, and largest family units first
+ * with a random order among equal sizes, which places the most constrained members while the most
+ * receivers are still open.
+ */
+final class FamilyUnitOrder {
+
+	private FamilyUnitOrder() {
+	}
+
+	// Largest family units first, random order among equal sizes.
+	static int[] bySizeDescending(int[] familyUnitSizes, SplittableRandom random) {
+		int familyUnitCount = familyUnitSizes.length;
+		int[] order = shuffled(familyUnitCount, random);
+		int largestFamilyUnitSize = 0;
+		for (int size : familyUnitSizes) {
+			largestFamilyUnitSize = Math.max(largestFamilyUnitSize, size);
+		}
+		// Stable counting sort by descending size.
+		int[] sizeOffsets = new int[largestFamilyUnitSize + 2];
+		for (int f : order) {
+			sizeOffsets[largestFamilyUnitSize - familyUnitSizes[f] + 1]++;
+		}
+		for (int size = 0; size <= largestFamilyUnitSize; size++) {
+			sizeOffsets[size + 1] += sizeOffsets[size];
+		}
+		int[] sortedFamilyUnitIds = new int[familyUnitCount];
+		for (int f : order) {
+			sortedFamilyUnitIds[sizeOffsets[largestFamilyUnitSize - familyUnitSizes[f]]++] = f;
+		}
+		return sortedFamilyUnitIds;
+	}
+
+	// 0..count-1 in random order.
+	static int[] shuffled(int count, SplittableRandom random) {
+		int[] order = new int[count];
+		for (int f = 0; f < count; f++) {
+			order[f] = f;
+		}
+		shuffle(order, 0, count, random);
+		return order;
+	}
+
+	// Fisher-Yates over array[from, from + length).
+	static void shuffle(int[] array, int from, int length, SplittableRandom random) {
+		for (int i = length - 1; i > 0; i--) {
+			int j = from + random.nextInt(i + 1);
+			int value = array[from + i];
+			array[from + i] = array[j];
+			array[j] = value;
+		}
+	}
+
+}
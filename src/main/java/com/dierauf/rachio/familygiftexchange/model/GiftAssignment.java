@@ -0,0 +1,314 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Immutable draw result, backed by two int arrays indexed by family member id: receiverOf and its inverse
+ * giverOf. About 8 bytes per family member instead of 50+ for a HashMap entry, O(1) lookups both ways, and
+ * unboxed iteration. The arrays span the range of family member ids while that range is at most
+ * {@link #DENSE_RANGE_FACTOR} times the member count; a bitset then marks the ids inside the range that took
+ * part. Sparser ids are kept sorted next to the arrays instead: 12 bytes per family member and O(log n) lookups.
+ * Any int is a valid family member id, -1 included, so no value of the arrays stands for "no pair"; use
+ * {@link #contains(int)}. {@link #asMap()} offers a read-only Map view.
+ */
+public final class GiftAssignment {
+
+	static final int DENSE_RANGE_FACTOR = 2;
+	static final String ERROR_MESSAGE_RECEIVER_ID_OUT_OF_RANGE = "ReceiverId out of range: ";
+	static final String ERROR_MESSAGE_FAMILY_MEMBER_ID_NOT_FOUND = "FamilyMemberId did not take part: ";
+
+	private static final int UNASSIGNED = -1; // Only for the dense ids 0..n-1 validated by wrap(int[]).
+
+	private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+	/**
+	 * Receives one giver/receiver pair at a time, without boxing.
+	 */
+	@FunctionalInterface
+	public interface PairConsumer {
+		void accept(int giverId, int receiverId);
+	}
+
+	private final int baseId; // Family member id at index 0, unless familyMemberIds is set.
+	private final int[] familyMemberIds; // Sorted family member id at each index, for sparse ids; otherwise null.
+	private final BitSet present; // Indexes holding a pair, for a range with gaps; null when every index does.
+	private final int[] receiverOf;
+	private final int[] giverOf;
+	private final int size;
+	private Map<Integer, Integer> map; // Created on demand; racy but idempotent.
+
+	private GiftAssignment(int baseId, int[] familyMemberIds, BitSet present, int[] receiverOf, int[] giverOf, int size) {
+		this.baseId = baseId;
+		this.familyMemberIds = familyMemberIds;
+		this.present = present;
+		this.receiverOf = receiverOf;
+		this.giverOf = giverOf;
+		this.size = size;
+	}
+
+	/**
+	 * @param receiverOf receiver id of each giver id (0..n-1); copied.
+	 * @throws Exception if receiverOf is not a permutation of 0..n-1.
+	 */
+	public static GiftAssignment of(int[] receiverOf) throws Exception {
+		return wrap(receiverOf.clone());
+	}
+
+	// Takes ownership of receiverOf.
+	static GiftAssignment wrap(int[] receiverOf) throws Exception {
+		int[] giverOf = new int[receiverOf.length];
+		Arrays.fill(giverOf, UNASSIGNED);
+		for (int giverId = 0; giverId < receiverOf.length; giverId++) {
+			int receiverId = receiverOf[giverId];
+			if (receiverId < 0 || receiverId >= receiverOf.length) {
+				throw new Exception(ERROR_MESSAGE_RECEIVER_ID_OUT_OF_RANGE + receiverId + " (GiverId: " + giverId + ").");
+			}
+			if (giverOf[receiverId] != UNASSIGNED) {
+				throw new Exception(GiftExchangeGenerator.ERROR_MESSAGE_DUPLICATE_RECEIVER_ID_FOUND + receiverId + ". ");
+			}
+			giverOf[receiverId] = giverId;
+		}
+		return new GiftAssignment(0, null, null, receiverOf, giverOf, receiverOf.length);
+	}
+
+	/**
+	 * @param receiverOf a valid permutation of dense ids.
+	 * @param familyMemberIds family member id of each dense id; distinct.
+	 */
+	static GiftAssignment of(int[] receiverOf, int[] familyMemberIds) {
+		int familyMemberCount = familyMemberIds.length;
+		if (familyMemberCount == 0) {
+			return new GiftAssignment(0, null, null, new int[0], new int[0], 0);
+		}
+		int minimumId = Integer.MAX_VALUE;
+		int maximumId = Integer.MIN_VALUE;
+		for (int familyMemberId : familyMemberIds) {
+			minimumId = Math.min(minimumId, familyMemberId);
+			maximumId = Math.max(maximumId, familyMemberId);
+		}
+		long range = (long) maximumId - minimumId + 1;
+		if (range > (long) DENSE_RANGE_FACTOR * familyMemberCount || range > MAX_ARRAY_LENGTH) {
+			return ofSparse(receiverOf, familyMemberIds);
+		}
+		int[] rangeReceiverOf = new int[(int) range];
+		int[] rangeGiverOf = new int[(int) range];
+		BitSet present = range > familyMemberCount ? new BitSet((int) range) : null;
+		for (int giverId = 0; giverId < familyMemberCount; giverId++) {
+			int giverIndex = familyMemberIds[giverId] - minimumId;
+			int receiverIndex = familyMemberIds[receiverOf[giverId]] - minimumId;
+			rangeReceiverOf[giverIndex] = familyMemberIds[receiverOf[giverId]];
+			rangeGiverOf[receiverIndex] = familyMemberIds[giverId];
+			if (present != null) {
+				present.set(giverIndex);
+			}
+		}
+		return new GiftAssignment(minimumId, null, present, rangeReceiverOf, rangeGiverOf, familyMemberCount);
+	}
+
+	// Family member ids sorted, with the arrays indexed by position in that order.
+	private static GiftAssignment ofSparse(int[] receiverOf, int[] familyMemberIds) {
+		int familyMemberCount = familyMemberIds.length;
+		long[] keys = new long[familyMemberCount];
+		for (int denseId = 0; denseId < familyMemberCount; denseId++) {
+			keys[denseId] = (long) familyMemberIds[denseId] << 32 | denseId;
+		}
+		Arrays.sort(keys);
+		int[] sortedFamilyMemberIds = new int[familyMemberCount];
+		int[] indexOf = new int[familyMemberCount]; // By dense id.
+		for (int index = 0; index < familyMemberCount; index++) {
+			sortedFamilyMemberIds[index] = (int) (keys[index] >> 32);
+			indexOf[(int) keys[index]] = index;
+		}
+		int[] sortedReceiverOf = new int[familyMemberCount];
+		int[] sortedGiverOf = new int[familyMemberCount];
+		for (int giverId = 0; giverId < familyMemberCount; giverId++) {
+			sortedReceiverOf[indexOf[giverId]] = familyMemberIds[receiverOf[giverId]];
+			sortedGiverOf[indexOf[receiverOf[giverId]]] = familyMemberIds[giverId];
+		}
+		return new GiftAssignment(0, sortedFamilyMemberIds, null, sortedReceiverOf, sortedGiverOf, familyMemberCount);
+	}
+
+	/**
+	 * @return the assignment behind a map returned by {@link #asMap()}, otherwise null.
+	 */
+	static GiftAssignment backing(Map<Integer, Integer> map) {
+		return map instanceof GiftAssignment.MapView ? ((GiftAssignment.MapView) map).getGiftAssignment() : null;
+	}
+
+	/**
+	 * @return true if the family member took part, as giver and as receiver.
+	 */
+	public boolean contains(int familyMemberId) {
+		return this.indexOf(familyMemberId) >= 0;
+	}
+
+	/**
+	 * @return the receiver of the giver.
+	 * @throws NoSuchElementException if the giver did not take part; see {@link #contains(int)}.
+	 */
+	public int getReceiverId(int giverId) {
+		return this.receiverOf[this.requireIndexOf(giverId)];
+	}
+
+	/**
+	 * @return the giver of the receiver.
+	 * @throws NoSuchElementException if the receiver did not take part; see {@link #contains(int)}.
+	 */
+	public int getGiverId(int receiverId) {
+		return this.giverOf[this.requireIndexOf(receiverId)];
+	}
+
+	private int requireIndexOf(int familyMemberId) {
+		int index = this.indexOf(familyMemberId);
+		if (index < 0) {
+			throw new NoSuchElementException(ERROR_MESSAGE_FAMILY_MEMBER_ID_NOT_FOUND + familyMemberId);
+		}
+		return index;
+	}
+
+	// Negative if the family member id did not take part.
+	private int indexOf(int familyMemberId) {
+		if (this.familyMemberIds != null) {
+			return Arrays.binarySearch(this.familyMemberIds, familyMemberId);
+		}
+		long index = (long) familyMemberId - this.baseId;
+		return index >= 0 && index < this.receiverOf.length && this.isPresent((int) index) ? (int) index : -1;
+	}
+
+	private boolean isPresent(int index) {
+		return this.present == null || this.present.get(index);
+	}
+
+	private int familyMemberIdAt(int index) {
+		return this.familyMemberIds != null ? this.familyMemberIds[index] : this.baseId + index;
+	}
+
+	/**
+	 * @return number of pairs.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Calls the consumer for every pair, in ascending giver id order.
+	 */
+	public void forEachPair(PairConsumer consumer) {
+		for (int index = 0; index < this.receiverOf.length; index++) {
+			if (this.isPresent(index)) {
+				consumer.accept(this.familyMemberIdAt(index), this.receiverOf[index]);
+			}
+		}
+	}
+
+	/**
+	 * @return a copy of receiverOf; indexed by giver id for dense ids (0..n-1), as from {@link #of(int[])}.
+	 *         Otherwise indexes that did not take part hold an arbitrary value.
+	 */
+	public int[] toReceiverOf() {
+		return this.receiverOf.clone();
+	}
+
+	/**
+	 * @return a read-only Map view, giver id to receiver id. Lookups stay O(1); values are boxed on access.
+	 */
+	public Map<Integer, Integer> asMap() {
+		if (this.map == null) {
+			this.map = new MapView();
+		}
+		return this.map;
+	}
+
+	@Override
+	public boolean equals(Object object) {
+		if (!(object instanceof GiftAssignment)) {
+			return false;
+		}
+		GiftAssignment other = (GiftAssignment) object;
+		return this.baseId == other.baseId && Arrays.equals(this.familyMemberIds, other.familyMemberIds)
+				&& Objects.equals(this.present, other.present) && Arrays.equals(this.receiverOf, other.receiverOf);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * (31 * (31 * this.baseId + Arrays.hashCode(this.familyMemberIds)) + Objects.hashCode(this.present))
+				+ Arrays.hashCode(this.receiverOf);
+	}
+
+	private final class MapView extends AbstractMap<Integer, Integer> {
+
+		GiftAssignment getGiftAssignment() {
+			return GiftAssignment.this;
+		}
+
+		@Override
+		public int size() {
+			return GiftAssignment.this.size;
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return key instanceof Integer && GiftAssignment.this.contains((Integer) key);
+		}
+
+		@Override
+		public Integer get(Object key) {
+			if (!(key instanceof Integer) || !GiftAssignment.this.contains((Integer) key)) {
+				return null;
+			}
+			return GiftAssignment.this.getReceiverId((Integer) key);
+		}
+
+		@Override
+		public Set<Entry<Integer, Integer>> entrySet() {
+			return new AbstractSet<Entry<Integer, Integer>>() {
+
+				@Override
+				public int size() {
+					return GiftAssignment.this.size;
+				}
+
+				@Override
+				public Iterator<Entry<Integer, Integer>> iterator() {
+					return new Iterator<Entry<Integer, Integer>>() {
+
+						private int index = this.advance(0);
+
+						private int advance(int from) {
+							int i = from;
+							while (i < GiftAssignment.this.receiverOf.length && !GiftAssignment.this.isPresent(i)) {
+								i++;
+							}
+							return i;
+						}
+
+						@Override
+						public boolean hasNext() {
+							return this.index < GiftAssignment.this.receiverOf.length;
+						}
+
+						@Override
+						public Entry<Integer, Integer> next() {
+							if (!this.hasNext()) {
+								throw new NoSuchElementException();
+							}
+							Entry<Integer, Integer> entry = new SimpleImmutableEntry<>(GiftAssignment.this.familyMemberIdAt(this.index),
+									GiftAssignment.this.receiverOf[this.index]);
+							this.index = this.advance(this.index + 1);
+							return entry;
+						}
+					};
+				}
+			};
+		}
+	}
+
+}
@@ -0,0 +1,45 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import java.util.Set;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Fork/join task solving a range of independent gift exchanges. Each exchange writes its own slot of
+ * results, so results stay in input order and one failure does not affect the others.
+ */
+final class GiftExchangeBatchTask extends RecursiveAction {
+
+	private static final long serialVersionUID = 1L;
+
+	private final Set<Set<Integer>>[] familyUnitConfigurations;
+	private final GiftExchangeResult[] results;
+	private final int from;
+	private final int to;
+
+	GiftExchangeBatchTask(Set<Set<Integer>>[] familyUnitConfigurations, GiftExchangeResult[] results, int from, int to) {
+		this.familyUnitConfigurations = familyUnitConfigurations;
+		this.results = results;
+		this.from = from;
+		this.to = to;
+	}
+
+	@Override
+	protected void compute() {
+		if (this.to - this.from > 1) {
+			int middle = (this.from + this.to) >>> 1;
+			invokeAll(new GiftExchangeBatchTask(this.familyUnitConfigurations, this.results, this.from, middle),
+					new GiftExchangeBatchTask(this.familyUnitConfigurations, this.results, middle, this.to));
+			return;
+		}
+		for (int i = this.from; i < this.to; i++) {
+			try {
+				this.results[i] = GiftExchangeResult
+						.success(GiftExchangeGenerator.instance().generateGiftExchanges(this.familyUnitConfigurations[i]));
+			}
+			catch (Exception e) {
+				this.results[i] = GiftExchangeResult.failure(e);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,26 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+/**
+ * Cost of a giver/receiver pair, e.g. shipping distance or the price of a budget tier, minimized by
+ * {@link GiftExchangeCostOptimizer}. Costs must be between 0 and {@link #MAX_COST}.
+ * Implementations must answer in O(1); the optimizer asks for many pairs per giver.
+ */
+@FunctionalInterface
+public interface GiftExchangeCostFunction {
+
+	long MAX_COST = Integer.MAX_VALUE;
+
+	long cost(int giverId, int receiverId);
+
+	/**
+	 * Straight-line distance between the members' coordinates, rounded down, e.g. in km on a projected map.
+	 */
+	static GiftExchangeCostFunction distance(int[] x, int[] y) {
+		return (giverId, receiverId) -> {
+			long dx = x[giverId] - (long) x[receiverId];
+			long dy = y[giverId] - (long) y[receiverId];
+			return Math.min(MAX_COST, (long) Math.sqrt((double) (dx * dx + dy * dy)));
+		};
+	}
+
+}
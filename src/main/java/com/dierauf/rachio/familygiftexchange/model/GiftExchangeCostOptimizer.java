@@ -0,0 +1,265 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Cost-aware draw: minimizes the total {@link GiftExchangeCostFunction} cost of the pairs while keeping
+ * family unit members apart. An exact assignment (Hungarian method, O(n^3)) does not scale to tens of
+ * thousands of members, so the pool is regionally blocked: members are ordered by region (ids of nearby
+ * regions should be close), cut into blocks of about {@link #BLOCK_SIZE} members, and each block is solved
+ * exactly and on its own by an auction with epsilon scaling. Cheap pairs are nearly always local, so
+ * blocking costs little; pairs never cross blocks.
+ * A block grows past BLOCK_SIZE until it is feasible (at least two family units, none larger than half of
+ * it); an infeasible tail is merged into the blocks before it. Among equally cheap pairs, the auction
+ * breaks ties at random, as does the order of members within a region. A block holds a dense m by m
+ * benefit matrix, so it is at least, but not much more than, twice the largest family unit in it; family
+ * units larger than BLOCK_SIZE are therefore spread evenly over the whole order instead of kept together,
+ * which keeps every block below about 4 * BLOCK_SIZE members.
+ */
+final class GiftExchangeCostOptimizer {
+
+	static final int BLOCK_SIZE = 256;
+	static final int EPSILON_SCALING_FACTOR = 8;
+	static final String ERROR_MESSAGE_INVALID_COST = "Cost must be between 0 and " + GiftExchangeCostFunction.MAX_COST + ": ";
+
+	private static final int UNASSIGNED = -1;
+
+	private final int[] familyUnitOf;
+	private final int familyUnitCount;
+	private final int[] regionOf;
+	private final GiftExchangeCostFunction costFunction;
+	private final SplittableRandom random;
+	private final int[] receiverOf;
+	private int blockCount;
+	private int largestBlockSize;
+	private long totalCost;
+
+	GiftExchangeCostOptimizer(int[] familyUnitOf, int familyUnitCount, int[] regionOf, GiftExchangeCostFunction costFunction,
+			SplittableRandom random) {
+		this.familyUnitOf = familyUnitOf;
+		this.familyUnitCount = familyUnitCount;
+		this.regionOf = regionOf;
+		this.costFunction = costFunction;
+		this.random = random;
+		this.receiverOf = new int[familyUnitOf.length];
+	}
+
+	/**
+	 * @param familyUnitOf already validated, so the whole pool is feasible.
+	 * @return receiverOf, indexed by giver id.
+	 */
+	int[] generate() throws Exception {
+		int familyMemberCount = this.familyUnitOf.length;
+		int[] order = this.orderByRegion();
+		int[] familyUnitCounts = new int[this.familyUnitCount];
+		int[] blockStarts = new int[familyMemberCount / BLOCK_SIZE + 1];
+		this.blockCount = 0;
+		this.largestBlockSize = 0;
+		this.totalCost = 0;
+		for (int start = 0; start < familyMemberCount;) {
+			// Grow the block to BLOCK_SIZE members, then on until it is feasible.
+			int end = start;
+			int largestFamilyUnitSize = 0;
+			int blockFamilyUnitCount = 0;
+			while (end < familyMemberCount && (end - start < BLOCK_SIZE || largestFamilyUnitSize * 2 > end - start
+					|| blockFamilyUnitCount < 2)) {
+				int f = this.familyUnitOf[order[end++]];
+				if (familyUnitCounts[f]++ == 0) {
+					blockFamilyUnitCount++;
+				}
+				largestFamilyUnitSize = Math.max(largestFamilyUnitSize, familyUnitCounts[f]);
+			}
+			boolean feasible = largestFamilyUnitSize * 2 <= end - start && blockFamilyUnitCount >= 2;
+			for (int i = start; i < end; i++) {
+				familyUnitCounts[this.familyUnitOf[order[i]]] = 0;
+			}
+			// Only the tail of the pool can be infeasible; the whole pool is not.
+			while (!feasible) {
+				start = blockStarts[--this.blockCount];
+				feasible = this.isFeasible(order, start, end, familyUnitCounts);
+			}
+			blockStarts[this.blockCount++] = start;
+			start = end;
+		}
+		for (int block = 0; block < this.blockCount; block++) {
+			this.solveBlock(order, blockStarts[block], block + 1 < this.blockCount ? blockStarts[block + 1] : familyMemberCount);
+		}
+		return this.receiverOf;
+	}
+
+	int getBlockCount() {
+		return this.blockCount;
+	}
+
+	int getLargestBlockSize() {
+		return this.largestBlockSize;
+	}
+
+	long getTotalCost() {
+		return this.totalCost;
+	}
+
+	// Members sorted by region, in random order within a region.
+	private int[] orderByRegion() {
+		int familyMemberCount = this.familyUnitOf.length;
+		int[] shuffled = new int[familyMemberCount];
+		for (int memberId = 0; memberId < familyMemberCount; memberId++) {
+			int j = this.random.nextInt(memberId + 1);
+			shuffled[memberId] = shuffled[j];
+			shuffled[j] = memberId;
+		}
+		long[] keys = new long[familyMemberCount];
+		for (int i = 0; i < familyMemberCount; i++) {
+			keys[i] = (long) this.regionOf[shuffled[i]] << 32 | i;
+		}
+		Arrays.sort(keys);
+		int[] order = new int[familyMemberCount];
+		for (int i = 0; i < familyMemberCount; i++) {
+			order[i] = shuffled[(int) keys[i]];
+		}
+		return this.spreadLargeFamilyUnits(order);
+	}
+
+	// A block must be at least twice its largest family unit, so a family unit larger than BLOCK_SIZE that
+	// shares a region would grow its block far past BLOCK_SIZE. Its members are spread evenly over the order
+	// instead, at slot (rank + 1/2) * n / size; everybody else keeps the region order, evenly stretched over the
+	// same n slots. No family unit is more than half of the pool, so none is more than about half of any block.
+	private int[] spreadLargeFamilyUnits(int[] order) {
+		int familyMemberCount = order.length;
+		int[] familyUnitSizes = new int[this.familyUnitCount];
+		for (int familyUnitId : this.familyUnitOf) {
+			familyUnitSizes[familyUnitId]++;
+		}
+		int largeFamilyUnitMemberCount = 0;
+		for (int familyUnitId : this.familyUnitOf) {
+			if (familyUnitSizes[familyUnitId] > BLOCK_SIZE) {
+				largeFamilyUnitMemberCount++;
+			}
+		}
+		if (largeFamilyUnitMemberCount == 0) {
+			return order;
+		}
+		int[] ranks = new int[this.familyUnitCount];
+		int otherRank = 0;
+		long[] keys = new long[familyMemberCount];
+		for (int i = 0; i < familyMemberCount; i++) {
+			int familyUnitId = this.familyUnitOf[order[i]];
+			boolean large = familyUnitSizes[familyUnitId] > BLOCK_SIZE;
+			long rank = large ? ranks[familyUnitId]++ : otherRank++;
+			long size = large ? familyUnitSizes[familyUnitId] : familyMemberCount - largeFamilyUnitMemberCount;
+			// Ties keep the region order.
+			keys[i] = (2 * rank + 1) * familyMemberCount / (2 * size) << 32 | i;
+		}
+		Arrays.sort(keys);
+		int[] spread = new int[familyMemberCount];
+		for (int i = 0; i < familyMemberCount; i++) {
+			spread[i] = order[(int) keys[i]];
+		}
+		return spread;
+	}
+
+	private boolean isFeasible(int[] order, int start, int end, int[] familyUnitCounts) {
+		int largestFamilyUnitSize = 0;
+		int blockFamilyUnitCount = 0;
+		for (int i = start; i < end; i++) {
+			int f = this.familyUnitOf[order[i]];
+			if (familyUnitCounts[f]++ == 0) {
+				blockFamilyUnitCount++;
+			}
+			largestFamilyUnitSize = Math.max(largestFamilyUnitSize, familyUnitCounts[f]);
+		}
+		for (int i = start; i < end; i++) {
+			familyUnitCounts[this.familyUnitOf[order[i]]] = 0;
+		}
+		return largestFamilyUnitSize * 2 <= end - start && blockFamilyUnitCount >= 2;
+	}
+
+	// Forward auction (Bertsekas): each unassigned giver bids for its best receiver by the difference to the
+	// second best plus epsilon. Benefits are costs times -(m + 1), so the last phase, at epsilon 1, ends with
+	// an optimal assignment of the block; the earlier phases, at larger epsilon, only warm up the prices.
+	private void solveBlock(int[] order, int start, int end) throws Exception {
+		int m = end - start;
+		this.largestBlockSize = Math.max(this.largestBlockSize, m);
+		int[] memberIds = Arrays.copyOfRange(order, start, end);
+		long scale = m + 1;
+		long[] benefits = new long[m * m]; // Row-major, giver by receiver; Long.MIN_VALUE for family pairs.
+		long largestBenefitRange = 0;
+		for (int i = 0; i < m; i++) {
+			for (int j = 0; j < m; j++) {
+				if (this.familyUnitOf[memberIds[i]] == this.familyUnitOf[memberIds[j]]) {
+					benefits[i * m + j] = Long.MIN_VALUE;
+					continue;
+				}
+				long cost = this.costFunction.cost(memberIds[i], memberIds[j]);
+				if (cost < 0 || cost > GiftExchangeCostFunction.MAX_COST) {
+					throw new Exception(ERROR_MESSAGE_INVALID_COST + cost + " (GiverId: " + memberIds[i] + "; ReceiverId: "
+							+ memberIds[j] + ").");
+				}
+				benefits[i * m + j] = -cost * scale;
+				largestBenefitRange = Math.max(largestBenefitRange, cost * scale);
+			}
+		}
+
+		long[] prices = new long[m];
+		int[] ownerOf = new int[m];
+		int[] objectOf = new int[m];
+		int[] unassigned = new int[m];
+		long epsilon = Math.max(1, largestBenefitRange / EPSILON_SCALING_FACTOR);
+		while (true) {
+			Arrays.fill(ownerOf, UNASSIGNED);
+			for (int i = 0; i < m; i++) {
+				unassigned[i] = i;
+			}
+			int unassignedCount = m;
+			while (unassignedCount > 0) {
+				// Random bidder and random pick among equally good receivers: random tie-break between optima.
+				int index = this.random.nextInt(unassignedCount);
+				int i = unassigned[index];
+				unassigned[index] = unassigned[--unassignedCount];
+				long best = Long.MIN_VALUE;
+				long secondBest = Long.MIN_VALUE;
+				int bestJ = UNASSIGNED;
+				int ties = 0;
+				for (int j = 0, row = i * m; j < m; j++) {
+					long benefit = benefits[row + j];
+					if (benefit == Long.MIN_VALUE) {
+						continue;
+					}
+					long value = benefit - prices[j];
+					if (value > best) {
+						secondBest = best;
+						best = value;
+						bestJ = j;
+						ties = 1;
+					}
+					else if (value == best) {
+						secondBest = best;
+						if (this.random.nextInt(++ties) == 0) {
+							bestJ = j;
+						}
+					}
+					else if (value > secondBest) {
+						secondBest = value;
+					}
+				}
+				prices[bestJ] += (secondBest == Long.MIN_VALUE ? 0 : best - secondBest) + epsilon;
+				int previousOwner = ownerOf[bestJ];
+				if (previousOwner != UNASSIGNED) {
+					unassigned[unassignedCount++] = previousOwner;
+				}
+				ownerOf[bestJ] = i;
+				objectOf[i] = bestJ;
+			}
+			if (epsilon == 1) {
+				break;
+			}
+			epsilon = Math.max(1, epsilon / EPSILON_SCALING_FACTOR);
+		}
+		for (int i = 0; i < m; i++) {
+			this.receiverOf[memberIds[i]] = memberIds[objectOf[i]];
+			this.totalCost -= benefits[i * m + objectOf[i]] / scale;
+		}
+	}
+
+}
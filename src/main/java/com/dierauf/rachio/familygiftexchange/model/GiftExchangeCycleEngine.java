@@ -0,0 +1,83 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import java.util.SplittableRandom;
+
+/**
+ * Single-cycle draw: everybody stands in one circle and gives to their neighbour, and no two neighbours
+ * belong to the same family unit. Runs in O(n) with no retries.
+ * <p>
+ * Family units are laid out back to back, largest first, and the resulting sequence fills the even
+ * places of the circle and then the odd ones. Neighbours are then about n/2 apart in the sequence, which
+ * no family unit spans as long as none holds more than half of the members (checked by validateParameters).
+ * Member order within each family unit, the order of the other family units, and the direction around the
+ * circle are random.
+ */
+final class GiftExchangeCycleEngine {
+
+	private final int[] familyUnitOf;
+	private final int familyUnitCount;
+	private final SplittableRandom random;
+
+	GiftExchangeCycleEngine(int[] familyUnitOf, int familyUnitCount, SplittableRandom random) {
+		this.familyUnitOf = familyUnitOf;
+		this.familyUnitCount = familyUnitCount;
+		this.random = random;
+	}
+
+	/**
+	 * @return receiverOf, indexed by giver id, forming a single cycle.
+	 */
+	int[] generate() {
+		int familyMemberCount = this.familyUnitOf.length;
+		int[] familyOffsets = new int[this.familyUnitCount + 1];
+		for (int familyUnitId : this.familyUnitOf) {
+			familyOffsets[familyUnitId + 1]++;
+		}
+
+		// Random family unit order, with a largest family unit first (a random one among ties).
+		int[] familyUnitOrder = FamilyUnitOrder.shuffled(this.familyUnitCount, this.random);
+		int largest = 0;
+		for (int i = 1; i < this.familyUnitCount; i++) {
+			if (familyOffsets[familyUnitOrder[i] + 1] > familyOffsets[familyUnitOrder[largest] + 1]) {
+				largest = i;
+			}
+		}
+		int largestFamilyUnitId = familyUnitOrder[largest];
+		familyUnitOrder[largest] = familyUnitOrder[0];
+		familyUnitOrder[0] = largestFamilyUnitId;
+
+		// Counting sort on family unit id, in that order.
+		int[] next = new int[this.familyUnitCount];
+		int offset = 0;
+		for (int familyUnitId : familyUnitOrder) {
+			next[familyUnitId] = offset;
+			offset += familyOffsets[familyUnitId + 1];
+		}
+		int[] sequence = new int[familyMemberCount];
+		for (int memberId = 0; memberId < familyMemberCount; memberId++) {
+			sequence[next[this.familyUnitOf[memberId]]++] = memberId;
+		}
+		offset = 0;
+		for (int familyUnitId : familyUnitOrder) {
+			int familyUnitSize = familyOffsets[familyUnitId + 1];
+			FamilyUnitOrder.shuffle(sequence, offset, familyUnitSize, this.random);
+			offset += familyUnitSize;
+		}
+
+		// Even places first, then odd places.
+		int[] circle = new int[familyMemberCount];
+		int evenPlaceCount = (familyMemberCount + 1) / 2;
+		for (int i = 0; i < familyMemberCount; i++) {
+			circle[i < evenPlaceCount ? 2 * i : 2 * (i - evenPlaceCount) + 1] = sequence[i];
+		}
+
+		int[] receiverOf = sequence; // No longer needed, reuse.
+		int step = this.random.nextBoolean() ? 1 : familyMemberCount - 1;
+		for (int place = 0; place < familyMemberCount; place++) {
+			int neighbourPlace = place + step;
+			receiverOf[circle[place]] = circle[neighbourPlace < familyMemberCount ? neighbourPlace : neighbourPlace - familyMemberCount];
+		}
+		return receiverOf;
+	}
+
+}
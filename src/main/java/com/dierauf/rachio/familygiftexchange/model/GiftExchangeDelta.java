@@ -0,0 +1,60 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Members who joined or dropped out after a draw, for {@link IncrementalGiftExchange#apply(GiftExchangeDelta)}.
+ * Additions are applied before removals.
+ */
+public final class GiftExchangeDelta {
+
+	private final List<Set<Integer>> addedFamilyUnits = new ArrayList<>();
+	private final Map<Integer, Integer> addedFamilyMembers = new LinkedHashMap<>(); // New member -> member of the family unit joined.
+	private final Set<Integer> removedFamilyMembers = new LinkedHashSet<>();
+
+	public GiftExchangeDelta addFamilyUnit(Set<Integer> familyUnit) {
+		this.addedFamilyUnits.add(familyUnit);
+		return this;
+	}
+
+	/**
+	 * @param familyMemberId new family member.
+	 * @param relatedFamilyMemberId member of the family unit to join; existing, or added by this delta.
+	 */
+	public GiftExchangeDelta addFamilyMember(int familyMemberId, int relatedFamilyMemberId) {
+		this.addedFamilyMembers.put(familyMemberId, relatedFamilyMemberId);
+		return this;
+	}
+
+	/**
+	 * Removing every member of a family unit removes the family unit.
+	 */
+	public GiftExchangeDelta removeFamilyMember(int familyMemberId) {
+		this.removedFamilyMembers.add(familyMemberId);
+		return this;
+	}
+
+	List<Set<Integer>> getAddedFamilyUnits() {
+		return Collections.unmodifiableList(this.addedFamilyUnits);
+	}
+
+	Map<Integer, Integer> getAddedFamilyMembers() {
+		return Collections.unmodifiableMap(this.addedFamilyMembers);
+	}
+
+	Set<Integer> getRemovedFamilyMembers() {
+		return Collections.unmodifiableSet(this.removedFamilyMembers);
+	}
+
+	int size() {
+		return this.addedFamilyUnits.stream().mapToInt(Set::size).sum() + this.addedFamilyMembers.size()
+				+ this.removedFamilyMembers.size();
+	}
+
+}
@@ -0,0 +1,404 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.function.BooleanSupplier;
+
+import com.dierauf.rachio.familygiftexchange.model.GiftExchangeException.Reason;
+
+/**
+ * Primitive assignment engine behind {@link GiftExchangeGenerator}.
+ * Works on dense member ids (0..n-1) and dense family unit ids (0..k-1). Every working array is
+ * allocated once per draw, so nothing is allocated (or boxed) per giver.
+ * Not thread-safe: create one engine per draw.
+ */
+final class GiftExchangeEngine {
+
+	static final int UNASSIGNED = -1;
+	static final String ERROR_MESSAGE_NO_ELIGIBLE_EXISTING_GIVER = "No eligible existing giver found to swap with. GiverId: ";
+	// Random tries before falling back to a scan, when exclusions can reject a candidate.
+	static final int MAX_RANDOM_ATTEMPTS = 32;
+	static final long NO_DEADLINE = Long.MAX_VALUE;
+	// Loop iterations between two cancellation and deadline checks; keeps System.nanoTime() off the hot path.
+	static final int CHECK_INTERVAL_MASK = 1023;
+
+	private final int[] familyUnitOf;
+	private final GiftExclusions exclusions; // Optional.
+	private final SplittableRandom random;
+
+	// Members grouped by family unit: family f owns familyMembers[familyOffsets[f] .. familyOffsets[f + 1]).
+	private final int[] familyOffsets;
+	private final int[] familyMembers;
+
+	private final int[] receiverOf;
+	// Receivers not yet assigned. receiverIdPoolIndex allows O(1) removal; UNASSIGNED once removed.
+	// While a family unit is drawing, its own unassigned members are kept at the tail of the pool.
+	private final int[] receiverIdPool;
+	private final int[] receiverIdPoolIndex;
+	private int receiverIdPoolSize;
+	private int familyTailSize;
+	// Givers assigned so far, in assignment order.
+	private final int[] assignedGiverIds;
+	private int assignedGiverCount;
+	// Number of assigned pairs whose giver or receiver belongs to each family unit. The pairs eligible to
+	// swap for a family unit are the remaining assignedGiverCount - assignedPairsTouchingFamilyUnit[f].
+	private final int[] assignedPairsTouchingFamilyUnit;
+	// Exact list of eligible existing givers, only built once a family unit's eligible pairs become sparse.
+	private int[] eligibleGiverIds;
+	private int eligibleGiverCount;
+	private int eligibleGiverIdsFamilyUnitId = UNASSIGNED;
+	private int swapCount;
+	private long examinedGiverCount; // Existing givers looked at by the swaps, see getExaminedGiverCount().
+	private int remainingReceiverIndex; // Pool index chosen along with an existing giver, when exclusions apply.
+	// Only set while DEBUG logging is enabled.
+	private GiftExchangeInvariantChecker invariantChecker;
+	private GiftExchangeTracer tracer; // Optional.
+	private int drawId;
+	private int[] familyUnitOrder; // Optional; family unit ids by drawing turn, otherwise by id.
+	// Optional; checked in the selection and swap loops, see checkCancelled().
+	private BooleanSupplier cancelled;
+	private long deadlineNanos = NO_DEADLINE; // System.nanoTime() based.
+	private long timeBudgetNanos;
+	private int checkCount;
+
+	GiftExchangeEngine(int[] familyUnitOf, int familyUnitCount, SplittableRandom random) {
+		this(familyUnitOf, familyUnitCount, null, random);
+	}
+
+	GiftExchangeEngine(int[] familyUnitOf, int familyUnitCount, GiftExclusions exclusions, SplittableRandom random) {
+		int familyMemberCount = familyUnitOf.length;
+		this.familyUnitOf = familyUnitOf;
+		this.exclusions = exclusions;
+		this.random = random;
+		this.familyOffsets = new int[familyUnitCount + 1];
+		this.familyMembers = new int[familyMemberCount];
+		this.receiverOf = new int[familyMemberCount];
+		this.receiverIdPool = new int[familyMemberCount];
+		this.receiverIdPoolIndex = new int[familyMemberCount];
+		this.assignedGiverIds = new int[familyMemberCount];
+		this.assignedPairsTouchingFamilyUnit = new int[familyUnitCount];
+		this.groupMembersByFamilyUnit(familyUnitCount);
+	}
+
+	private void groupMembersByFamilyUnit(int familyUnitCount) {
+		// Counting sort on family unit id.
+		for (int familyUnitId : this.familyUnitOf) {
+			this.familyOffsets[familyUnitId + 1]++;
+		}
+		for (int f = 0; f < familyUnitCount; f++) {
+			this.familyOffsets[f + 1] += this.familyOffsets[f];
+		}
+		int[] next = new int[familyUnitCount];
+		System.arraycopy(this.familyOffsets, 0, next, 0, familyUnitCount);
+		for (int memberId = 0; memberId < this.familyUnitOf.length; memberId++) {
+			this.familyMembers[next[this.familyUnitOf[memberId]]++] = memberId;
+		}
+	}
+
+	void setTracer(GiftExchangeTracer tracer) {
+		this.tracer = tracer;
+	}
+
+	/**
+	 * @param familyUnitOrder a permutation of the family unit ids, in drawing order; null draws by id.
+	 */
+	void setFamilyUnitOrder(int[] familyUnitOrder) {
+		this.familyUnitOrder = familyUnitOrder;
+	}
+
+	/**
+	 * @param cancelled once true, {@link #generate()} stops with a CANCELLED {@link GiftExchangeException}.
+	 */
+	void setCancelled(BooleanSupplier cancelled) {
+		this.cancelled = cancelled;
+	}
+
+	/**
+	 * @param timeBudgetNanos past this budget, counted from startNanos (System.nanoTime()), {@link #generate()}
+	 * stops with a TIMED_OUT {@link GiftExchangeException}.
+	 */
+	void setDeadline(long startNanos, long timeBudgetNanos) {
+		this.deadlineNanos = startNanos + timeBudgetNanos;
+		this.timeBudgetNanos = timeBudgetNanos;
+	}
+
+	/**
+	 * @return receiverOf, indexed by giver id.
+	 */
+	int[] generate() throws Exception {
+		for (int memberId = 0; memberId < this.receiverOf.length; memberId++) {
+			this.receiverOf[memberId] = UNASSIGNED;
+			this.receiverIdPool[memberId] = memberId;
+			this.receiverIdPoolIndex[memberId] = memberId;
+		}
+		this.receiverIdPoolSize = this.receiverOf.length;
+		this.assignedGiverCount = 0;
+		Arrays.fill(this.assignedPairsTouchingFamilyUnit, 0);
+		this.eligibleGiverIdsFamilyUnitId = UNASSIGNED;
+		this.swapCount = 0;
+		this.examinedGiverCount = 0;
+		this.checkCount = 0;
+		this.invariantChecker = GiftExchangeGenerator.LOGGER.isDebugEnabled()
+				? new GiftExchangeInvariantChecker(this.familyUnitOf, this.exclusions) : null;
+
+		int familyUnitCount = this.familyOffsets.length - 1;
+		if (this.tracer != null) {
+			this.drawId = this.tracer.beginDraw(this.receiverOf.length, familyUnitCount);
+		}
+		for (int turn = 0; turn < familyUnitCount; turn++) {
+			int familyUnitId = this.familyUnitOrder != null ? this.familyUnitOrder[turn] : turn;
+			this.createReceiverIdPool(familyUnitId);
+			// The eligible part of the pool is now guaranteed not to have any member of this family unit.
+			for (int i = this.familyOffsets[familyUnitId]; i < this.familyOffsets[familyUnitId + 1]; i++) {
+				this.checkCancelled();
+				int giverId = this.familyMembers[i];
+				int index = this.selectReceiverIdPoolIndex(giverId);
+				if (index == UNASSIGNED) {
+					// Only members of this family unit (or excluded receivers) remain, so 'swap' an eligible
+					// receiverId from a previous selection with the current giverId.
+					this.swapWithAnExistingNonFamilyMember(giverId, familyUnitId);
+				}
+				else {
+					if (this.tracer != null) {
+						this.tracer.onAssign(this.drawId, giverId, this.receiverIdPoolSize, this.receiverIdPool[index]);
+					}
+					this.assign(giverId, this.receiverIdPool[index]);
+					this.removeFromReceiverIdPool(index);
+				}
+			}
+			this.familyTailSize = 0;
+		}
+		return this.receiverOf;
+	}
+
+	private void checkCancelled() throws GiftExchangeException {
+		if ((this.cancelled == null && this.deadlineNanos == NO_DEADLINE) || (this.checkCount++ & CHECK_INTERVAL_MASK) != 0) {
+			return;
+		}
+		if (this.cancelled != null && this.cancelled.getAsBoolean()) {
+			throw new GiftExchangeException(Reason.CANCELLED, GiftExchangeException.ERROR_MESSAGE_CANCELLED);
+		}
+		if (this.deadlineNanos != NO_DEADLINE && System.nanoTime() - this.deadlineNanos > 0) {
+			throw new GiftExchangeException(Reason.TIMED_OUT, GiftExchangeException.ERROR_MESSAGE_TIMED_OUT + this.timeBudgetNanos + ".");
+		}
+	}
+
+	// Returns a random index into the eligible part of the pool, or UNASSIGNED if no receiver there is allowed.
+	private int selectReceiverIdPoolIndex(int giverId) throws GiftExchangeException {
+		int eligibleReceiverCount = this.receiverIdPoolSize - this.familyTailSize;
+		if (eligibleReceiverCount == 0) {
+			return UNASSIGNED;
+		}
+		if (this.exclusions == null) {
+			return this.random.nextInt(eligibleReceiverCount);
+		}
+		for (int attempt = 0; attempt < MAX_RANDOM_ATTEMPTS; attempt++) {
+			int index = this.random.nextInt(eligibleReceiverCount);
+			if (!this.exclusions.isExcluded(giverId, this.receiverIdPool[index])) {
+				return index;
+			}
+		}
+		int start = this.random.nextInt(eligibleReceiverCount);
+		for (int i = 0; i < eligibleReceiverCount; i++) {
+			this.checkCancelled();
+			int index = start + i < eligibleReceiverCount ? start + i : start + i - eligibleReceiverCount;
+			if (!this.exclusions.isExcluded(giverId, this.receiverIdPool[index])) {
+				return index;
+			}
+		}
+		return UNASSIGNED;
+	}
+
+	// Moves the family unit's unassigned members to the tail of the pool. O(family unit size).
+	private void createReceiverIdPool(int familyUnitId) {
+		this.familyTailSize = 0;
+		for (int i = this.familyOffsets[familyUnitId]; i < this.familyOffsets[familyUnitId + 1]; i++) {
+			int memberId = this.familyMembers[i];
+			int index = this.receiverIdPoolIndex[memberId];
+			if (index != UNASSIGNED) {
+				this.familyTailSize++;
+				this.swapInReceiverIdPool(index, this.receiverIdPoolSize - this.familyTailSize);
+			}
+		}
+	}
+
+	// Removes the pool entry at index, keeping the family tail contiguous at the end of the pool.
+	private void removeFromReceiverIdPool(int index) {
+		int lastIndex = this.receiverIdPoolSize - 1;
+		int firstTailIndex = this.receiverIdPoolSize - this.familyTailSize;
+		if (index < firstTailIndex) {
+			this.swapInReceiverIdPool(index, firstTailIndex - 1);
+			this.swapInReceiverIdPool(firstTailIndex - 1, lastIndex);
+		}
+		else {
+			this.swapInReceiverIdPool(index, lastIndex);
+			this.familyTailSize--;
+		}
+		this.receiverIdPoolIndex[this.receiverIdPool[lastIndex]] = UNASSIGNED;
+		this.receiverIdPoolSize--;
+	}
+
+	private void swapInReceiverIdPool(int i, int j) {
+		int a = this.receiverIdPool[i];
+		int b = this.receiverIdPool[j];
+		this.receiverIdPool[i] = b;
+		this.receiverIdPool[j] = a;
+		this.receiverIdPoolIndex[b] = i;
+		this.receiverIdPoolIndex[a] = j;
+	}
+
+	int getSwapCount() {
+		return this.swapCount;
+	}
+
+	/**
+	 * @return existing givers examined by the swaps of the last draw; divided by the swap count, the cost
+	 * of a swap in a form that does not depend on timing.
+	 */
+	long getExaminedGiverCount() {
+		return this.examinedGiverCount;
+	}
+
+	int getReceiverIdPoolCapacity() {
+		return this.receiverIdPool.length;
+	}
+
+	private void assign(int giverId, int receiverId) throws Exception {
+		if (this.invariantChecker != null) {
+			this.invariantChecker.onAssign(giverId, receiverId);
+		}
+		this.receiverOf[giverId] = receiverId;
+		this.assignedGiverIds[this.assignedGiverCount++] = giverId;
+		this.assignedPairsTouchingFamilyUnit[this.familyUnitOf[giverId]]++;
+		this.assignedPairsTouchingFamilyUnit[this.familyUnitOf[receiverId]]++;
+	}
+
+	private void reassign(int giverId, int receiverId) throws Exception {
+		if (this.invariantChecker != null) {
+			this.invariantChecker.onReassign(giverId, this.receiverOf[giverId], receiverId);
+		}
+		this.assignedPairsTouchingFamilyUnit[this.familyUnitOf[this.receiverOf[giverId]]]--;
+		this.receiverOf[giverId] = receiverId;
+		this.assignedPairsTouchingFamilyUnit[this.familyUnitOf[receiverId]]++;
+	}
+
+	// O(1) expected: the remaining receiver comes straight from the pool, and the existing giver is drawn
+	// from the incrementally maintained eligibility counts.
+	private void swapWithAnExistingNonFamilyMember(int giverId, int familyUnitId) throws Exception {
+		int existingGiverId;
+		int index;
+		if (this.exclusions == null) {
+			existingGiverId = this.retrieveEligibleExistingGiverId(giverId, familyUnitId);
+			index = this.random.nextInt(this.receiverIdPoolSize);
+		}
+		else {
+			existingGiverId = this.retrieveEligibleExistingGiverIdWithExclusions(giverId, familyUnitId);
+			index = this.remainingReceiverIndex;
+		}
+		int existingReceiverId = this.receiverOf[existingGiverId];
+		int remainingReceiverId = this.receiverIdPool[index];
+		if (this.tracer != null) {
+			this.tracer.onSwap(this.drawId, giverId, this.receiverIdPoolSize, existingReceiverId, existingGiverId,
+					remainingReceiverId);
+		}
+		this.removeFromReceiverIdPool(index);
+		// Make the swap.
+		this.reassign(existingGiverId, remainingReceiverId);
+		this.assign(giverId, existingReceiverId);
+		this.swapCount++;
+	}
+
+	// Returns a random assigned giver where neither the giver nor its receiver belongs to the family unit.
+	// While at least half of the assigned pairs are eligible, rejection sampling needs at most two tries
+	// on average. Below that, the eligible givers are collected once for the family unit and then drawn
+	// without replacement; every swap turns its existing giver ineligible, and no other pair changes
+	// until the family unit is done. Without further constraints only one family unit per draw can run
+	// the pool dry, so the collection pass is paid at most once per draw.
+	private int retrieveEligibleExistingGiverId(int giverId, int familyUnitId) throws Exception {
+		int eligibleCount = this.assignedGiverCount - this.assignedPairsTouchingFamilyUnit[familyUnitId];
+		if (eligibleCount <= 0) {
+			throw new GiftExchangeException(Reason.NOT_FOUND, ERROR_MESSAGE_NO_ELIGIBLE_EXISTING_GIVER + giverId + ".");
+		}
+		if (this.eligibleGiverIdsFamilyUnitId != familyUnitId) {
+			if (eligibleCount * 2 >= this.assignedGiverCount) {
+				while (true) {
+					int existingGiverId = this.assignedGiverIds[this.random.nextInt(this.assignedGiverCount)];
+					this.examinedGiverCount++;
+					if (this.isEligibleExistingGiver(existingGiverId, familyUnitId)) {
+						return existingGiverId;
+					}
+				}
+			}
+			this.collectEligibleGiverIds(familyUnitId);
+		}
+		int index = this.random.nextInt(this.eligibleGiverCount);
+		int existingGiverId = this.eligibleGiverIds[index];
+		this.eligibleGiverIds[index] = this.eligibleGiverIds[--this.eligibleGiverCount];
+		return existingGiverId;
+	}
+
+	// With exclusions the remaining receiver may be outside the family unit, and both new pairs must be
+	// allowed, so the existing giver and the remaining receiver are picked together. Random tries first;
+	// the exhaustive scan is only reached when almost nothing is allowed.
+	private int retrieveEligibleExistingGiverIdWithExclusions(int giverId, int familyUnitId) throws Exception {
+		for (int attempt = 0; attempt < MAX_RANDOM_ATTEMPTS && this.assignedGiverCount > 0; attempt++) {
+			int existingGiverId = this.assignedGiverIds[this.random.nextInt(this.assignedGiverCount)];
+			int index = this.random.nextInt(this.receiverIdPoolSize);
+			this.examinedGiverCount++;
+			if (this.isEligibleExistingGiver(giverId, familyUnitId, existingGiverId)
+					&& this.isEligibleRemainingReceiver(existingGiverId, this.receiverIdPool[index])) {
+				this.remainingReceiverIndex = index;
+				return existingGiverId;
+			}
+		}
+		int start = this.assignedGiverCount > 0 ? this.random.nextInt(this.assignedGiverCount) : 0;
+		for (int i = 0; i < this.assignedGiverCount; i++) {
+			this.checkCancelled();
+			int existingGiverId = this.assignedGiverIds[(start + i) % this.assignedGiverCount];
+			this.examinedGiverCount++;
+			if (this.isEligibleExistingGiver(giverId, familyUnitId, existingGiverId)) {
+				for (int index = 0; index < this.receiverIdPoolSize; index++) {
+					if (this.isEligibleRemainingReceiver(existingGiverId, this.receiverIdPool[index])) {
+						this.remainingReceiverIndex = index;
+						return existingGiverId;
+					}
+				}
+			}
+		}
+		throw new GiftExchangeException(Reason.NOT_FOUND, ERROR_MESSAGE_NO_ELIGIBLE_EXISTING_GIVER + giverId + ".");
+	}
+
+	// giverId may take over existingGiverId's receiver.
+	private boolean isEligibleExistingGiver(int giverId, int familyUnitId, int existingGiverId) {
+		int existingReceiverId = this.receiverOf[existingGiverId];
+		return this.familyUnitOf[existingReceiverId] != familyUnitId && !this.exclusions.isExcluded(giverId, existingReceiverId);
+	}
+
+	// existingGiverId may give to remainingReceiverId instead.
+	private boolean isEligibleRemainingReceiver(int existingGiverId, int remainingReceiverId) {
+		return this.familyUnitOf[existingGiverId] != this.familyUnitOf[remainingReceiverId]
+				&& !this.exclusions.isExcluded(existingGiverId, remainingReceiverId);
+	}
+
+	private void collectEligibleGiverIds(int familyUnitId) throws GiftExchangeException {
+		if (this.eligibleGiverIds == null) {
+			this.eligibleGiverIds = new int[this.receiverOf.length];
+		}
+		this.eligibleGiverCount = 0;
+		for (int i = 0; i < this.assignedGiverCount; i++) {
+			this.checkCancelled();
+			int existingGiverId = this.assignedGiverIds[i];
+			this.examinedGiverCount++;
+			if (this.isEligibleExistingGiver(existingGiverId, familyUnitId)) {
+				this.eligibleGiverIds[this.eligibleGiverCount++] = existingGiverId;
+			}
+		}
+		this.eligibleGiverIdsFamilyUnitId = familyUnitId;
+	}
+
+	private boolean isEligibleExistingGiver(int existingGiverId, int familyUnitId) {
+		return this.familyUnitOf[existingGiverId] != familyUnitId
+				&& this.familyUnitOf[this.receiverOf[existingGiverId]] != familyUnitId;
+	}
+
+}
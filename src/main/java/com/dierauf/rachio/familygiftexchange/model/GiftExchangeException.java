@@ -0,0 +1,45 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+/**
+ * Typed draw failure, so callers can tell a bad request from an impossible draw or a missed deadline
+ * without parsing messages. The message is the same as the untyped failure's.
+ */
+public class GiftExchangeException extends Exception {
+
+	private static final long serialVersionUID = 1L;
+	static final String ERROR_MESSAGE_TIMED_OUT = "Gift exchange timed out. Time budget (ns): ";
+	static final String ERROR_MESSAGE_CANCELLED = "Gift exchange cancelled. ";
+
+	public enum Reason {
+		/** The family units or exclusions are invalid, e.g. a family unit larger than half of the pool. */
+		INVALID_INPUT,
+		/** No valid draw exists; always an {@link InfeasibleGiftExchangeException}, which carries the proof. */
+		INFEASIBLE,
+		/**
+		 * The randomized search gave up without finding a draw, which does not prove that none exists. Retry with
+		 * another seed, or use {@link GiftExchangeGenerator#generateMatchedGiftExchanges} for a definite answer.
+		 */
+		NOT_FOUND,
+		/** The time budget ran out before a draw was found. */
+		TIMED_OUT,
+		/** The draw was cancelled by the caller. */
+		CANCELLED
+	}
+
+	private final Reason reason;
+
+	GiftExchangeException(Reason reason, String message) {
+		super(message);
+		this.reason = reason;
+	}
+
+	GiftExchangeException(Reason reason, String message, Throwable cause) {
+		super(message, cause);
+		this.reason = reason;
+	}
+
+	public Reason getReason() {
+		return this.reason;
+	}
+
+}
@@ -0,0 +1,315 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Streams giver/receiver pairs to a channel through one reusable buffer. Pairs are written as they are
+ * formatted; the buffer is flushed whenever it fills up, so the output never exists in memory as a whole.
+ * Formats:
+ * CSV: giverId,receiverId,giverName,receiverName (with a header line; names when available).
+ * NDJSON: {"giverId":0,"receiverId":1,"giverName":"...","receiverName":"..."} per line.
+ * BINARY: "GXP1", the pair count, then giverId and receiverId per pair; all big-endian int32.
+ * Not thread-safe: use one exporter per thread.
+ */
+public final class GiftExchangeExporter {
+
+	public enum Format {
+		CSV, NDJSON, BINARY;
+
+		static Format of(String fileName) {
+			String lowerCaseFileName = fileName.toLowerCase();
+			if (lowerCaseFileName.endsWith(".ndjson") || lowerCaseFileName.endsWith(".jsonl")) {
+				return NDJSON;
+			}
+			if (lowerCaseFileName.endsWith(".bin")) {
+				return BINARY;
+			}
+			return CSV;
+		}
+	}
+
+	static final int BINARY_MAGIC = 0x47585031; // "GXP1"
+	static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+	static final int MINIMUM_BUFFER_SIZE = 64; // Fits the longest fixed token in one piece.
+	private static final byte[] CSV_HEADER = "giverId,receiverId,giverName,receiverName\n".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] CSV_HEADER_WITHOUT_NAMES = "giverId,receiverId\n".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+	private final Format format;
+	private final ByteBuffer buffer;
+	private final byte[] digits = new byte[11];
+	private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+	private ByteBuffer nameBuffer = ByteBuffer.allocate(256);
+	private WritableByteChannel channel;
+
+	public GiftExchangeExporter(Format format) {
+		this(format, DEFAULT_BUFFER_SIZE);
+	}
+
+	public GiftExchangeExporter(Format format, int bufferSize) {
+		this.format = format;
+		this.buffer = ByteBuffer.allocate(Math.max(bufferSize, MINIMUM_BUFFER_SIZE));
+	}
+
+	/**
+	 * @param receiverOf receiver id of each giver id.
+	 * @param roster family member names; null to export ids only.
+	 */
+	public void export(int[] receiverOf, Roster roster, WritableByteChannel channel) throws IOException {
+		this.channel = channel;
+		try {
+			this.writeHeader(receiverOf.length, roster != null);
+			ByteStringDictionary names = roster == null ? null : roster.getFamilyMemberNames();
+			for (int giverId = 0; giverId < receiverOf.length; giverId++) {
+				int receiverId = receiverOf[giverId];
+				this.startPair(giverId, receiverId, names != null);
+				if (names != null) {
+					this.writeName(names.bytes(), names.offset(giverId), names.length(giverId));
+					this.writeNameSeparator();
+					this.writeName(names.bytes(), names.offset(receiverId), names.length(receiverId));
+				}
+				this.endPair(names != null);
+			}
+			this.flush();
+		}
+		finally {
+			this.channel = null;
+		}
+	}
+
+	public void export(int[] receiverOf, Roster roster, OutputStream outputStream) throws IOException {
+		this.export(receiverOf, roster, Channels.newChannel(outputStream));
+		outputStream.flush();
+	}
+
+	/**
+	 * @param familyMemberNames names indexed by family member id; null to export ids only.
+	 */
+	public void export(Map<Integer, Integer> giverReceiverMap, String[] familyMemberNames, WritableByteChannel channel)
+			throws IOException {
+		this.channel = channel;
+		try {
+			this.writeHeader(giverReceiverMap.size(), familyMemberNames != null);
+			for (Map.Entry<Integer, Integer> entry : giverReceiverMap.entrySet()) {
+				int giverId = entry.getKey();
+				int receiverId = entry.getValue();
+				this.startPair(giverId, receiverId, familyMemberNames != null);
+				if (familyMemberNames != null) {
+					this.writeName(familyMemberNames[giverId]);
+					this.writeNameSeparator();
+					this.writeName(familyMemberNames[receiverId]);
+				}
+				this.endPair(familyMemberNames != null);
+			}
+			this.flush();
+		}
+		finally {
+			this.channel = null;
+		}
+	}
+
+	public void export(Map<Integer, Integer> giverReceiverMap, String[] familyMemberNames, OutputStream outputStream)
+			throws IOException {
+		this.export(giverReceiverMap, familyMemberNames, Channels.newChannel(outputStream));
+		outputStream.flush();
+	}
+
+	private void writeHeader(int pairCount, boolean withNames) throws IOException {
+		switch (this.format) {
+		case CSV:
+			this.writeBytes(withNames ? CSV_HEADER : CSV_HEADER_WITHOUT_NAMES, 0, withNames ? CSV_HEADER.length : CSV_HEADER_WITHOUT_NAMES.length);
+			break;
+		case BINARY:
+			this.ensureRemaining(8);
+			this.buffer.putInt(BINARY_MAGIC).putInt(pairCount);
+			break;
+		default:
+			break;
+		}
+	}
+
+	private void startPair(int giverId, int receiverId, boolean withNames) throws IOException {
+		switch (this.format) {
+		case BINARY:
+			this.ensureRemaining(8);
+			this.buffer.putInt(giverId).putInt(receiverId);
+			break;
+		case NDJSON:
+			this.writeAscii("{\"giverId\":");
+			this.writeDecimal(giverId);
+			this.writeAscii(",\"receiverId\":");
+			this.writeDecimal(receiverId);
+			if (withNames) {
+				this.writeAscii(",\"giverName\":\"");
+			}
+			break;
+		default:
+			this.writeDecimal(giverId);
+			this.writeByte(',');
+			this.writeDecimal(receiverId);
+			if (withNames) {
+				this.writeByte(',');
+			}
+			break;
+		}
+	}
+
+	private void writeNameSeparator() throws IOException {
+		if (this.format == Format.NDJSON) {
+			this.writeAscii("\",\"receiverName\":\"");
+		}
+		else if (this.format == Format.CSV) {
+			this.writeByte(',');
+		}
+	}
+
+	private void endPair(boolean withNames) throws IOException {
+		if (this.format == Format.NDJSON) {
+			this.writeAscii(withNames ? "\"}\n" : "}\n");
+		}
+		else if (this.format == Format.CSV) {
+			this.writeByte('\n');
+		}
+	}
+
+	private void writeName(String name) throws IOException {
+		if (this.format == Format.BINARY) {
+			return;
+		}
+		this.nameBuffer.clear();
+		this.encoder.reset();
+		CharBuffer chars = CharBuffer.wrap(name);
+		while (true) {
+			CoderResult result = this.encoder.encode(chars, this.nameBuffer, true);
+			if (result.isUnderflow()) {
+				result = this.encoder.flush(this.nameBuffer);
+			}
+			if (result.isUnderflow()) {
+				break;
+			}
+			if (result.isOverflow()) {
+				ByteBuffer larger = ByteBuffer.allocate(this.nameBuffer.capacity() * 2);
+				this.nameBuffer.flip();
+				this.nameBuffer = larger.put(this.nameBuffer);
+			}
+			else {
+				result.throwException();
+			}
+		}
+		this.writeName(this.nameBuffer.array(), 0, this.nameBuffer.position());
+	}
+
+	// Copies UTF-8 name bytes, escaped for the format. Multi-byte sequences never contain ASCII bytes.
+	private void writeName(byte[] bytes, int offset, int length) throws IOException {
+		if (this.format == Format.BINARY) {
+			return;
+		}
+		if (this.format == Format.CSV) {
+			boolean quote = false;
+			for (int i = offset; i < offset + length; i++) {
+				byte b = bytes[i];
+				if (b == ',' || b == '"' || b == '\n' || b == '\r') {
+					quote = true;
+					break;
+				}
+			}
+			if (!quote) {
+				this.writeBytes(bytes, offset, length);
+				return;
+			}
+			this.writeByte('"');
+			for (int i = offset; i < offset + length; i++) {
+				if (bytes[i] == '"') {
+					this.writeByte('"');
+				}
+				this.writeByte(bytes[i]);
+			}
+			this.writeByte('"');
+			return;
+		}
+		for (int i = offset; i < offset + length; i++) {
+			byte b = bytes[i];
+			if (b == '"' || b == '\\') {
+				this.writeByte('\\');
+				this.writeByte(b);
+			}
+			else if (b >= 0 && b < 0x20) {
+				this.writeAscii("\\u00");
+				this.writeByte(HEX_DIGITS[b >> 4]);
+				this.writeByte(HEX_DIGITS[b & 0xF]);
+			}
+			else {
+				this.writeByte(b);
+			}
+		}
+	}
+
+	private void writeDecimal(int value) throws IOException {
+		this.ensureRemaining(this.digits.length);
+		if (value == Integer.MIN_VALUE) {
+			this.writeAscii(Integer.toString(value));
+			return;
+		}
+		if (value < 0) {
+			this.buffer.put((byte) '-');
+			value = -value;
+		}
+		int position = this.digits.length;
+		do {
+			this.digits[--position] = (byte) ('0' + value % 10);
+			value /= 10;
+		} while (value != 0);
+		this.buffer.put(this.digits, position, this.digits.length - position);
+	}
+
+	private void writeAscii(String ascii) throws IOException {
+		this.ensureRemaining(ascii.length());
+		for (int i = 0; i < ascii.length(); i++) {
+			this.buffer.put((byte) ascii.charAt(i));
+		}
+	}
+
+	private void writeByte(int b) throws IOException {
+		if (!this.buffer.hasRemaining()) {
+			this.flush();
+		}
+		this.buffer.put((byte) b);
+	}
+
+	private void writeBytes(byte[] bytes, int offset, int length) throws IOException {
+		while (length > 0) {
+			if (!this.buffer.hasRemaining()) {
+				this.flush();
+			}
+			int chunk = Math.min(length, this.buffer.remaining());
+			this.buffer.put(bytes, offset, chunk);
+			offset += chunk;
+			length -= chunk;
+		}
+	}
+
+	// Only used for sizes that always fit the buffer.
+	private void ensureRemaining(int length) throws IOException {
+		if (this.buffer.remaining() < length) {
+			this.flush();
+		}
+	}
+
+	private void flush() throws IOException {
+		this.buffer.flip();
+		while (this.buffer.hasRemaining()) {
+			this.channel.write(this.buffer);
+		}
+		this.buffer.clear();
+	}
+
+}
@@ -1,17 +1,30 @@
 package com.dierauf.rachio.familygiftexchange.model;
 
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Random;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.BooleanSupplier;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import com.dierauf.rachio.familygiftexchange.model.GiftExchangeException.Reason;
+
 /**
  *
  * @author Nicholas Dierauf
@@ -20,30 +33,49 @@ import org.apache.logging.log4j.Logger;
  */
 public class GiftExchangeGenerator {
 
+	static final String ROSTER_OPTION = "--roster";
+	static final String SERVE_OPTION = "--serve";
+	static final String DECODE_TRACE_OPTION = "--decode-trace";
+	static final String SHARDS_OPTION = "--shards";
 	static final String INSTRUCTIONS = "First arguement must be a number indicating the number of family members per family unit, followed by a list of family members. "
-			+ "Example: \njava -jar FamilyGiftExchange.jar 2 Nick Trevor Amy Sam";
+			+ "Example: \njava -jar FamilyGiftExchange.jar 2 Nick Trevor Amy Sam\n"
+			+ "Or load family units from a roster file, one family member per line as 'family,name' (.csv) or {\"family\":\"...\",\"name\":\"...\"} (.ndjson): "
+			+ "\njava -jar FamilyGiftExchange.jar " + ROSTER_OPTION + " members.csv [results.csv|results.ndjson|results.bin|results.gxr]"
+			+ "\nOr draw a very large roster in worker processes, one per shard: \njava -jar FamilyGiftExchange.jar " + SHARDS_OPTION
+			+ " 4 members.csv [results.csv|results.ndjson|results.bin|results.gxr]"
+			+ "\nOr serve draws over HTTP (POST " + GiftExchangeServer.DRAW_PATH + "): \njava -jar FamilyGiftExchange.jar " + SERVE_OPTION + " [port]"
+			+ "\nOr render a decision trace (see GiftExchangeTracer) as text: \njava -jar FamilyGiftExchange.jar " + DECODE_TRACE_OPTION + " trace.bin";
 	static final String ERROR_MESSAGE_FAMILY_MEMBER_GIVING_TO_ANOTHER_FAMILY_MEMBER = "Family member giving to another family member. ";
 	static final String ERROR_MESSAGE_DUPLICATE_RECEIVER_ID_FOUND = "Duplicate receiverId found: ";
 	static final String ERROR_MESSAGE_GIVER_ID_AND_RECEIVER_ID_CANNOT_BE_THE_SAME = "GiverId and ReceiverId cannot be the same: ";
 	static final String ERROR_MESSAGE_RECEIVER_ID_CANNOT_BE_NULL = "ReceiverId cannot be null. (GiverId: ";
 	static final String ERROR_MESSAGE_GIVER_ID_CANNOT_BE_NULL = "GiverId cannot be null: ";
+	static final String ERROR_MESSAGE_EXCLUDED_RECEIVER = "Giver is excluded from giving to receiver: ";
+	static final String ERROR_MESSAGE_INVALID_REGIONS = "Expecting one region per family member: ";
+	static final String ERROR_MESSAGE_NOT_A_SINGLE_CYCLE = "Gift exchanges do not form a single cycle. Cycle length: ";
 	static final String ERROR_MESSAGE_FAMILY_UNIT_IS_TOO_LARGE = "Family unit is too large: ";
 	static final String ERROR_MESSAGE_FAMILY_MEMBER_ID_FOUND_IN_MULTIPLE_FAMILY_UNITS = "Family member ID found in multiple family units: ";
 	static final String ERROR_MESSAGE_INVALID_FAMILY_MEMBER_ID_NULL = "Invalid family member ID (null)";
 	static final String ERROR_MESSAGE_INVALID_FAMILY_UNIT_NULL = "Invalid family unit (null).";
+	static final String ERROR_MESSAGE_INVALID_FAMILY_UNIT_ID = "Invalid family unit ID: ";
 	static final String ERROR_MESSAGE_MUST_HAVE_AT_LEAST_TWO_FAMILY_UNITS = "Must have at least two family units to generate gift exchange. ";
 
 	static final int DEFAULT_FAMILYUNIT_SIZE = 5;
+	static final int BITSET_BITS_PER_FAMILY_MEMBER = 16; // Ids below 16 times the pool size use a bitset.
+	static final int MAX_ERROR_MESSAGE_ELEMENTS = 10;
 	static final String[] HAPPY_FAMILY_MEMBER_NAMES = new String[] { "Nick", "Trevor", "Amy", "Sam", "Nancy",
 			"Matsuo-san", "Ingo", "Renato", "Judith", "Neal", "Teymour", "Ryan", "Selim", "Robert", "Claudia",
 			"Kaj-Erik", "Hesham", "Michael Sr.", "Michael Jr.", "Allison", "Brad", "Hitesh", "Khaled" };
 
 	static final Logger LOGGER = LogManager.getLogger(GiftExchangeGenerator.class);
 
-	private static final Random RANDOM = new Random(); // Is thread-safe, but maybe not efficient at high volumes.
+	private static final RandomSource RANDOM_SOURCE = RandomSource.threadLocal(); // One SplittableRandom per draw; no shared seed.
 	private static final GiftExchangeGenerator INSTANCE = new GiftExchangeGenerator(); // Singleton created on class load.
 
 
+	private volatile GiftExchangeMetricsListener metricsListener; // Optional.
+	private volatile GiftExchangeTracer tracer; // Optional.
+
 	// Assures Singleton.
 	private GiftExchangeGenerator() {};
 	public static GiftExchangeGenerator instance() {
@@ -55,95 +87,486 @@ public class GiftExchangeGenerator {
 	 * @throws Exception
 	 */
 	public static void main(String[] args) throws Exception {
+		if (args.length > 0 && SERVE_OPTION.equals(args[0])) {
+			GiftExchangeServer.start(args.length > 1 ? Integer.parseInt(args[1]) : GiftExchangeServer.DEFAULT_PORT);
+			return;
+		}
+		if (args.length > 0 && DECODE_TRACE_OPTION.equals(args[0])) {
+			if (args.length < 2) {
+				throw new Exception(INSTRUCTIONS);
+			}
+			GiftExchangeTracer.decode(Paths.get(args[1]), System.out);
+			return;
+		}
+		if (args.length > 0 && SHARDS_OPTION.equals(args[0])) {
+			// Same arguments as a roster draw, after the shard count.
+			String[] rosterArgs = Arrays.copyOfRange(args, 1, args.length);
+			Roster roster = INSTANCE.retrieveRoster(rosterArgs);
+			int[] receiverOf = INSTANCE.generateShardedGiftExchanges(roster.getFamilyUnitOf(),
+					GiftExchangeShardCoordinator.processes(INSTANCE.retrieveShardCount(args)));
+			INSTANCE.exportGiftExchangeValues(receiverOf, roster, rosterArgs);
+			return;
+		}
+		if (args.length > 0 && ROSTER_OPTION.equals(args[0])) {
+			Roster roster = INSTANCE.retrieveRoster(args);
+			int[] receiverOf = INSTANCE.generateGiftExchanges(roster.getFamilyUnitOf());
+			INSTANCE.exportGiftExchangeValues(receiverOf, roster, args);
+			return;
+		}
 		String[] familyMemberNames = INSTANCE.retrieveFamilyNames(args);
 		Set<Set<Integer>> familyUnits = INSTANCE.generateFamilyUnits(args, familyMemberNames);
 		Map<Integer, Integer> giverReceiverMap = INSTANCE.generateGiftExchanges(familyUnits);
 		LOGGER.info("Results: {}", () -> INSTANCE.printOutGiftExchangeValues(giverReceiverMap, familyMemberNames));
 	}
 
+	/**
+	 * @param metricsListener receives the measurements of every draw; null (the default) disables metrics.
+	 */
+	public void setMetricsListener(GiftExchangeMetricsListener metricsListener) {
+		this.metricsListener = metricsListener;
+	}
+
+	/**
+	 * @param tracer records every assignment and swap of the greedy draws; null (the default) disables tracing.
+	 */
+	public void setTracer(GiftExchangeTracer tracer) {
+		this.tracer = tracer;
+	}
+
 	public Map<Integer, Integer> generateGiftExchanges(Set<Set<Integer>> familyUnits) throws Exception {
+		return this.generateGiftExchanges(familyUnits, RANDOM_SOURCE);
+	}
+
+	/**
+	 * Reproducible draw: the same seed and family units always give the same pairs.
+	 */
+	public Map<Integer, Integer> generateGiftExchanges(Set<Set<Integer>> familyUnits, long seed) throws Exception {
+		return this.generateGiftExchanges(familyUnits, RandomSource.seeded(seed));
+	}
+
+	public Map<Integer, Integer> generateGiftExchanges(Set<Set<Integer>> familyUnits, RandomSource randomSource)
+			throws Exception {
+		return this.generateGiftExchanges(familyUnits, randomSource, this::createGiverReceiverMap);
+	}
+
+	/**
+	 * Like {@link #generateGiftExchanges(Set)}, as a compact immutable {@link GiftAssignment}.
+	 */
+	public GiftAssignment generateGiftAssignment(Set<Set<Integer>> familyUnits) throws Exception {
+		return this.generateGiftAssignment(familyUnits, RANDOM_SOURCE);
+	}
+
+	public GiftAssignment generateGiftAssignment(Set<Set<Integer>> familyUnits, RandomSource randomSource) throws Exception {
+		return this.generateGiftExchanges(familyUnits, randomSource, GiftAssignment::of);
+	}
+
+	public GiftAssignment generateGiftAssignment(int[] familyUnitOf) throws Exception {
+		return GiftAssignment.wrap(this.generateGiftExchanges(familyUnitOf));
+	}
+
+	public GiftAssignment generateGiftAssignment(int[] familyUnitOf, RandomSource randomSource) throws Exception {
+		return GiftAssignment.wrap(this.generateGiftExchanges(familyUnitOf, randomSource));
+	}
+
+	// resultFactory turns the dense receiverOf and the family member id of each dense id into the result.
+	private <T> T generateGiftExchanges(Set<Set<Integer>> familyUnits, RandomSource randomSource,
+			BiFunction<int[], int[], T> resultFactory) throws Exception {
+		GiftExchangeMetricsListener listener = this.metricsListener; // Clock is only read with a listener.
+		try {
+			long start = listener != null ? System.nanoTime() : 0;
+			this.validateParameters(familyUnits); // Assures clean data. Throws exception for bad data.
+			long validated = listener != null ? System.nanoTime() : 0;
+			int[] familyMemberIds = this.retrieveFamilyMemberIds(familyUnits);
+			int[] familyUnitOf = this.retrieveFamilyUnitOf(familyUnits, familyMemberIds.length);
+			GiftExchangeEngine engine = new GiftExchangeEngine(familyUnitOf, familyUnits.size(), randomSource.forDraw());
+			engine.setTracer(this.tracer);
+			int[] receiverOf = engine.generate();
+			long selected = listener != null ? System.nanoTime() : 0;
+			// One linear pass over the primitive arrays; familyMemberIds is one-to-one, so the map is valid too.
+			this.validateGiverReceiverMap(receiverOf, familyUnitOf);
+			if (listener != null) {
+				listener.onDraw(receiverOf.length, validated - start, selected - validated, System.nanoTime() - selected,
+						engine.getSwapCount(), engine.getReceiverIdPoolCapacity());
+			}
+			return resultFactory.apply(receiverOf, familyMemberIds);
+		}
+		catch (Exception e) {
+			if (listener != null) {
+				listener.onDrawFailed();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Like {@link #generateGiftExchanges(Set)}, but every valid assignment is (close to) equally likely,
+	 * whatever the family unit sizes and iteration order. Slower: see {@link GiftExchangeSampler}.
+	 */
+	public Map<Integer, Integer> generateUniformGiftExchanges(Set<Set<Integer>> familyUnits) throws Exception {
+		return this.generateUniformGiftExchanges(familyUnits, RANDOM_SOURCE);
+	}
+
+	public Map<Integer, Integer> generateUniformGiftExchanges(Set<Set<Integer>> familyUnits,
+			RandomSource randomSource) throws Exception {
+		this.validateParameters(familyUnits);
+		int[] familyMemberIds = this.retrieveFamilyMemberIds(familyUnits);
+		int[] receiverOf = this.generateUniformGiftExchanges(this.retrieveFamilyUnitOf(familyUnits, familyMemberIds.length),
+				randomSource);
+		return this.createGiverReceiverMap(receiverOf, familyMemberIds);
+	}
+
+	public int[] generateUniformGiftExchanges(int[] familyUnitOf) throws Exception {
+		return this.generateUniformGiftExchanges(familyUnitOf, RANDOM_SOURCE);
+	}
+
+	public int[] generateUniformGiftExchanges(int[] familyUnitOf, RandomSource randomSource) throws Exception {
+		return this.generateUniformGiftExchanges(familyUnitOf, null,
+				GiftExchangeSampler.defaultMixingSteps(familyUnitOf.length), randomSource);
+	}
+
+	/**
+	 * @param mixingSteps number of Markov chain steps after the greedy draw; more steps, less bias.
+	 */
+	public int[] generateUniformGiftExchanges(int[] familyUnitOf, GiftExclusions exclusions, long mixingSteps,
+			RandomSource randomSource) throws Exception {
+		int familyUnitCount = this.validateParameters(familyUnitOf);
+		SplittableRandom random = randomSource.forDraw();
+		int[] receiverOf = new GiftExchangeEngine(familyUnitOf, familyUnitCount, exclusions, random).generate();
+		new GiftExchangeSampler(familyUnitOf, exclusions, random).mix(receiverOf, mixingSteps);
+		this.validateGiverReceiverMap(receiverOf, familyUnitOf);
+		if (exclusions != null) {
+			this.validateExclusions(receiverOf, exclusions);
+		}
+		return receiverOf;
+	}
 
-		this.validateParameters(familyUnits); // Assures clean data. Throws exception for bad data.
-		Set<Integer> familyMemberIds = familyUnits.stream().flatMap(Set::stream).collect(Collectors.toSet());
+	/**
+	 * Draw under arbitrary pairwise exclusions, solved as a bipartite matching (see {@link GiftExchangeMatchingEngine}):
+	 * finds a draw whenever one exists.
+	 * @param exclusions may be null for family units only.
+	 * @throws InfeasibleGiftExchangeException with a proof if no valid draw exists.
+	 */
+	public int[] generateMatchedGiftExchanges(int[] familyUnitOf, ExclusionGraph exclusions) throws Exception {
+		return this.generateMatchedGiftExchanges(familyUnitOf, exclusions, RANDOM_SOURCE);
+	}
+
+	public int[] generateMatchedGiftExchanges(int[] familyUnitOf, ExclusionGraph exclusions, RandomSource randomSource)
+			throws Exception {
+		int familyUnitCount = this.validateParameters(familyUnitOf);
+		if (exclusions != null && exclusions.getFamilyMemberCount() != familyUnitOf.length) {
+			throw new Exception(ExclusionGraph.ERROR_MESSAGE_INVALID_EXCLUSION + "graph of " + exclusions.getFamilyMemberCount()
+					+ " family members for " + familyUnitOf.length + ".");
+		}
+		int[] receiverOf = new GiftExchangeMatchingEngine(familyUnitOf, familyUnitCount, exclusions, randomSource.forDraw())
+				.generate();
+		this.validateGiverReceiverMap(receiverOf, familyUnitOf);
+		if (exclusions != null) {
+			this.validateExclusions(receiverOf, exclusions);
+		}
+		return receiverOf;
+	}
 
-		Map<Integer, Integer> giverReceiverMap = new HashMap<>();
+	/**
+	 * Draw of (close to) minimal total cost, e.g. shipping distance. See {@link GiftExchangeCostOptimizer}.
+	 * @param regionOf region of each family member, e.g. a grid cell or postal area; members are only paired
+	 * within blocks of nearby region ids.
+	 */
+	public int[] generateCostAwareGiftExchanges(int[] familyUnitOf, int[] regionOf, GiftExchangeCostFunction costFunction)
+			throws Exception {
+		return this.generateCostAwareGiftExchanges(familyUnitOf, regionOf, costFunction, RANDOM_SOURCE);
+	}
+
+	public int[] generateCostAwareGiftExchanges(int[] familyUnitOf, int[] regionOf, GiftExchangeCostFunction costFunction,
+			RandomSource randomSource) throws Exception {
+		int familyUnitCount = this.validateParameters(familyUnitOf);
+		if (regionOf.length != familyUnitOf.length) {
+			throw new Exception(ERROR_MESSAGE_INVALID_REGIONS + regionOf.length + " regions for " + familyUnitOf.length + ".");
+		}
+		int[] receiverOf = new GiftExchangeCostOptimizer(familyUnitOf, familyUnitCount, regionOf, costFunction,
+				randomSource.forDraw()).generate();
+		this.validateGiverReceiverMap(receiverOf, familyUnitOf);
+		return receiverOf;
+	}
+
+	/**
+	 * Draw of a very large pool in independent shards, see {@link GiftExchangeShardCoordinator}.
+	 */
+	public int[] generateShardedGiftExchanges(int[] familyUnitOf, GiftExchangeShardCoordinator coordinator) throws Exception {
+		return this.generateShardedGiftExchanges(familyUnitOf, coordinator, RANDOM_SOURCE);
+	}
+
+	public int[] generateShardedGiftExchanges(int[] familyUnitOf, GiftExchangeShardCoordinator coordinator,
+			RandomSource randomSource) throws Exception {
+		int familyUnitCount = this.validateParameters(familyUnitOf);
+		int[] receiverOf = coordinator.generate(familyUnitOf, familyUnitCount, randomSource.forDraw());
+		this.validateGiverReceiverMap(receiverOf, familyUnitOf);
+		return receiverOf;
+	}
+
+	/**
+	 * Draw for tight inputs: concurrent randomized attempts, the first valid one wins, see
+	 * {@link GiftExchangePortfolio}. Bounds the latency that a single unlucky attempt could take.
+	 * @param exclusions optional.
+	 */
+	public int[] generatePortfolioGiftExchanges(int[] familyUnitOf, GiftExclusions exclusions, GiftExchangePortfolio portfolio)
+			throws Exception {
+		return this.generatePortfolioGiftExchanges(familyUnitOf, exclusions, portfolio, RANDOM_SOURCE);
+	}
+
+	public int[] generatePortfolioGiftExchanges(int[] familyUnitOf, GiftExclusions exclusions, GiftExchangePortfolio portfolio,
+			RandomSource randomSource) throws Exception {
+		int familyUnitCount = this.validateParameters(familyUnitOf);
+		int[] receiverOf = portfolio.generate(familyUnitOf, familyUnitCount, exclusions, randomSource.forDraw());
+		this.validateGiverReceiverMap(receiverOf, familyUnitOf);
+		if (exclusions != null) {
+			this.validateExclusions(receiverOf, exclusions);
+		}
+		return receiverOf;
+	}
+
+	/**
+	 * Draw over nested groupings, e.g. nobody draws their own household and, where possible, their own branch.
+	 * Soft levels are relaxed from the coarsest down only if honoring them would make the draw fail; see
+	 * {@link FamilyHierarchy}. The finest relaxed level still counts as a preference: members outside its one
+	 * group above half of the pool do not draw their own group there. Only if the randomized search finds no
+	 * such draw is that level dropped entirely.
+	 */
+	public int[] generateGiftExchanges(FamilyHierarchy hierarchy) throws Exception {
+		return this.generateGiftExchanges(hierarchy, RANDOM_SOURCE);
+	}
+
+	public int[] generateGiftExchanges(FamilyHierarchy hierarchy, RandomSource randomSource) throws Exception {
+		int level = hierarchy.selectLevel();
+		// Not drawing one's own group at this level implies the same at every finer level.
+		int[] groupOf = hierarchy.getGroupOf(level);
+		if (level == hierarchy.getLevelCount() - 1) {
+			return this.generateGiftExchanges(groupOf, randomSource);
+		}
+		for (int relaxedLevel = hierarchy.getLevelCount() - 1; relaxedLevel > level; relaxedLevel--) {
+			LOGGER.info("Relaxing soft level {}: a draw honoring it is impossible.", relaxedLevel);
+		}
+		int preferredLevel = level + 1;
+		int[] preferredGroupOf = hierarchy.getGroupOf(preferredLevel);
+		int largestGroup = hierarchy.getLargestGroup(preferredLevel);
+		GiftExclusions exclusions = (giverId, receiverId) -> preferredGroupOf[giverId] == preferredGroupOf[receiverId]
+				&& preferredGroupOf[giverId] != largestGroup;
+		try {
+			return this.generateGiftExchanges(groupOf, exclusions, randomSource);
+		}
+		catch (GiftExchangeException e) {
+			if (e.getReason() != Reason.NOT_FOUND) {
+				throw e;
+			}
+			LOGGER.info("Dropping soft level {}: no draw found that keeps its smaller groups apart.", preferredLevel);
+			return this.generateGiftExchanges(groupOf, randomSource);
+		}
+	}
+
+	/**
+	 * Single-cycle ("one big circle") draw: following giver to receiver visits every family member once
+	 * before returning to the first. See {@link GiftExchangeCycleEngine}.
+	 */
+	public Map<Integer, Integer> generateSingleCycleGiftExchanges(Set<Set<Integer>> familyUnits) throws Exception {
+		return this.generateSingleCycleGiftExchanges(familyUnits, RANDOM_SOURCE);
+	}
+
+	public Map<Integer, Integer> generateSingleCycleGiftExchanges(Set<Set<Integer>> familyUnits,
+			RandomSource randomSource) throws Exception {
+		this.validateParameters(familyUnits);
+		int[] familyMemberIds = this.retrieveFamilyMemberIds(familyUnits);
+		int[] receiverOf = this.generateSingleCycleGiftExchanges(
+				this.retrieveFamilyUnitOf(familyUnits, familyMemberIds.length), randomSource);
+		Map<Integer, Integer> giverReceiverMap = this.createGiverReceiverMap(receiverOf, familyMemberIds);
+		this.validateGiverReceiverMap(giverReceiverMap, familyUnits);
+		return giverReceiverMap;
+	}
+
+	public int[] generateSingleCycleGiftExchanges(int[] familyUnitOf) throws Exception {
+		return this.generateSingleCycleGiftExchanges(familyUnitOf, RANDOM_SOURCE);
+	}
+
+	public int[] generateSingleCycleGiftExchanges(int[] familyUnitOf, RandomSource randomSource) throws Exception {
+		int familyUnitCount = this.validateParameters(familyUnitOf);
+		int[] receiverOf = new GiftExchangeCycleEngine(familyUnitOf, familyUnitCount, randomSource.forDraw()).generate();
+		this.validateGiverReceiverMap(receiverOf, familyUnitOf);
+		this.validateSingleCycle(receiverOf);
+		return receiverOf;
+	}
+
+	// Maps the family member IDs onto dense ids: familyMemberIds[denseId] = familyMemberId.
+	int[] retrieveFamilyMemberIds(Set<Set<Integer>> familyUnits) {
+		int[] familyMemberIds = new int[familyUnits.stream().mapToInt(Set::size).sum()];
+		int denseId = 0;
 		for (Set<Integer> familyUnit : familyUnits) {
-			Set<Integer> receiverIdPool = this.createReceiverIdPool(familyMemberIds, giverReceiverMap, familyUnit);
-			// receiverIds is now guaranteed not to have giverId.
-			for (Integer giverId : familyUnit) {
-				if (receiverIdPool.isEmpty()) {
-					// If receiverIds.isEmpty() then we need to 'swap' an eligible receiverId from a
-					// previous selection with the current giverId. Returns the swapped receiverId.
-					this.swapWithAnExistingNonFamilyMember(giverId, giverReceiverMap, familyUnit, familyMemberIds);
+			for (Integer familyMemberId : familyUnit) {
+				familyMemberIds[denseId++] = familyMemberId;
+			}
+		}
+		return familyMemberIds;
+	}
+
+	// Family unit id of each dense id, in the same iteration order as retrieveFamilyMemberIds.
+	int[] retrieveFamilyUnitOf(Set<Set<Integer>> familyUnits, int familyMemberCount) {
+		int[] familyUnitOf = new int[familyMemberCount];
+		int denseId = 0;
+		int familyUnitId = 0;
+		for (Set<Integer> familyUnit : familyUnits) {
+			for (int i = 0; i < familyUnit.size(); i++) {
+				familyUnitOf[denseId++] = familyUnitId;
+			}
+			familyUnitId++;
+		}
+		return familyUnitOf;
+	}
+
+	Map<Integer, Integer> createGiverReceiverMap(int[] receiverOf, int[] familyMemberIds) {
+		Map<Integer, Integer> giverReceiverMap = new HashMap<>(receiverOf.length * 4 / 3 + 1);
+		for (int giverId = 0; giverId < receiverOf.length; giverId++) {
+			giverReceiverMap.put(familyMemberIds[giverId], familyMemberIds[receiverOf[giverId]]);
+		}
+		return giverReceiverMap;
+	}
+
+	/**
+	 * Dense variant of {@link #generateGiftExchanges(Set)} for large pools.
+	 * @param familyUnitOf family unit id (0..k-1) of each family member, indexed by family member id (0..n-1).
+	 * @return receiverOf: the receiver id of each giver, indexed by giver id.
+	 * @throws Exception
+	 */
+	public int[] generateGiftExchanges(int[] familyUnitOf) throws Exception {
+		return this.generateGiftExchanges(familyUnitOf, RANDOM_SOURCE);
+	}
+
+	public int[] generateGiftExchanges(int[] familyUnitOf, long seed) throws Exception {
+		return this.generateGiftExchanges(familyUnitOf, RandomSource.seeded(seed));
+	}
+
+	public int[] generateGiftExchanges(int[] familyUnitOf, RandomSource randomSource) throws Exception {
+		return this.generateGiftExchanges(familyUnitOf, null, randomSource);
+	}
+
+	/**
+	 * Draw that also avoids excluded pairs, e.g. last years' receivers from an {@link ExclusionHistoryIndex}.
+	 * Unlike family units alone, exclusions can make a draw impossible. The randomized search then gives up with a
+	 * {@link GiftExchangeException} whose reason is NOT_FOUND; it may also give up although a draw exists.
+	 */
+	public int[] generateGiftExchanges(int[] familyUnitOf, GiftExclusions exclusions) throws Exception {
+		return this.generateGiftExchanges(familyUnitOf, exclusions, RANDOM_SOURCE);
+	}
+
+	public int[] generateGiftExchanges(int[] familyUnitOf, GiftExclusions exclusions, RandomSource randomSource)
+			throws Exception {
+		return this.generateGiftExchanges(familyUnitOf, exclusions, randomSource, null, 0, GiftExchangeEngine.NO_DEADLINE);
+	}
+
+	/**
+	 * Non-blocking draw on the given executor, for callers with a deadline. The time budget counts from this
+	 * call, so time spent queued on the executor is included. Cancelling the returned future (not a stage
+	 * derived from it) stops the draw within a few microseconds of work.
+	 * @param exclusions optional.
+	 * @return a future completed with receiverOf, or exceptionally with a {@link GiftExchangeException}
+	 * whose reason is INVALID_INPUT, NOT_FOUND or TIMED_OUT. The randomized search cannot prove that no draw
+	 * exists, so it never reports INFEASIBLE; see {@link GiftExchangeException.Reason#NOT_FOUND}.
+	 */
+	public CompletableFuture<int[]> generateGiftExchangesAsync(int[] familyUnitOf, GiftExclusions exclusions, long timeBudget,
+			TimeUnit unit, Executor executor) {
+		return this.generateGiftExchangesAsync(familyUnitOf, exclusions, timeBudget, unit, executor, RANDOM_SOURCE);
+	}
+
+	public CompletableFuture<int[]> generateGiftExchangesAsync(int[] familyUnitOf, GiftExclusions exclusions, long timeBudget,
+			TimeUnit unit, Executor executor, RandomSource randomSource) {
+		long startNanos = System.nanoTime();
+		long timeBudgetNanos = unit.toNanos(timeBudget);
+		CompletableFuture<int[]> future = new CompletableFuture<>();
+		try {
+			executor.execute(() -> {
+				if (future.isDone()) {
+					return; // Cancelled while queued.
 				}
-				else {
-					Integer receiverId = this.randomSelection(receiverIdPool);
-					giverReceiverMap.put(giverId, receiverId);
-					receiverIdPool.remove(receiverId);
+				try {
+					future.complete(this.generateGiftExchanges(familyUnitOf, exclusions, randomSource, future::isCancelled,
+							startNanos, timeBudgetNanos));
 				}
-				if (LOGGER.isDebugEnabled()) {
-					this.validateGiverReceiverMap(giverReceiverMap, familyUnits);
+				catch (Exception e) {
+					future.completeExceptionally(e);
 				}
+			});
+		}
+		catch (RejectedExecutionException e) {
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+
+	private int[] generateGiftExchanges(int[] familyUnitOf, GiftExclusions exclusions, RandomSource randomSource,
+			BooleanSupplier cancelled, long startNanos, long timeBudgetNanos) throws Exception {
+		GiftExchangeMetricsListener listener = this.metricsListener;
+		try {
+			long start = listener != null ? System.nanoTime() : 0;
+			int familyUnitCount = this.validateParameters(familyUnitOf);
+			long validated = listener != null ? System.nanoTime() : 0;
+			GiftExchangeEngine engine = new GiftExchangeEngine(familyUnitOf, familyUnitCount, exclusions, randomSource.forDraw());
+			engine.setTracer(this.tracer);
+			engine.setCancelled(cancelled);
+			if (timeBudgetNanos != GiftExchangeEngine.NO_DEADLINE) {
+				engine.setDeadline(startNanos, timeBudgetNanos);
+			}
+			int[] receiverOf = engine.generate();
+			long selected = listener != null ? System.nanoTime() : 0;
+			this.validateGiverReceiverMap(receiverOf, familyUnitOf);
+			if (exclusions != null) {
+				this.validateExclusions(receiverOf, exclusions);
+			}
+			if (listener != null) {
+				listener.onDraw(receiverOf.length, validated - start, selected - validated, System.nanoTime() - selected,
+						engine.getSwapCount(), engine.getReceiverIdPoolCapacity());
+			}
+			return receiverOf;
+		}
+		catch (Exception e) {
+			if (listener != null) {
+				listener.onDrawFailed();
 			}
+			throw e;
 		}
+	}
 
-		this.validateGiverReceiverMap(giverReceiverMap, familyUnits);
-		return giverReceiverMap;
+	/**
+	 * Generates many independent gift exchanges in parallel, one per family unit configuration.
+	 * @param familyUnitConfigurations
+	 * @param parallelism number of ForkJoin worker threads.
+	 * @return one result per configuration, in input order. A failed configuration is reported in its
+	 * own result and does not fail the batch.
+	 */
+	public List<GiftExchangeResult> generateGiftExchangesBatch(Collection<Set<Set<Integer>>> familyUnitConfigurations,
+			int parallelism) {
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		Set<Set<Integer>>[] configurations = familyUnitConfigurations.toArray(new Set[0]);
+		GiftExchangeResult[] results = new GiftExchangeResult[configurations.length];
+		if (configurations.length > 0) {
+			ForkJoinPool pool = new ForkJoinPool(parallelism);
+			try {
+				pool.invoke(new GiftExchangeBatchTask(configurations, results, 0, configurations.length));
+			}
+			finally {
+				pool.shutdown();
+			}
+		}
+		return Arrays.asList(results);
 	}
 
-	private void swapWithAnExistingNonFamilyMember(Integer giverId, Map<Integer, Integer> giverReceiverMap,
-			Set<Integer> familyUnit, Set<Integer> familyMemberIds) {
-		LOGGER.debug("giverId: {}. familyUnit: {}.", giverId, familyUnit);
-		LOGGER.debug(() -> this.printGiverReceiverMap("Before swap", giverReceiverMap));
-		Integer existingGiverId = this.retrieveEligibleExistingGiverId(giverReceiverMap, familyUnit);
-		Integer existingReceiverId = giverReceiverMap.get(existingGiverId);
-		Integer remainingReceiverId = this.retrieveRemainingReceiverId(giverReceiverMap, familyMemberIds, giverId);
-		LOGGER.debug(
-				"Selected random existingGiverId: {}; existingReceiverId: {}; remainingReceiverId: {}. Adding: [{}:{}]; Updating: [{}:{}]. ",
-				existingGiverId, existingReceiverId, remainingReceiverId, giverId, existingReceiverId, existingGiverId,
-				remainingReceiverId);
-		// Make the swap.
-		giverReceiverMap.put(existingGiverId, remainingReceiverId);
-		giverReceiverMap.put(giverId, existingReceiverId);
-		LOGGER.debug(() -> this.printGiverReceiverMap("After swap", giverReceiverMap));
-	}
-
-	private Integer retrieveEligibleExistingGiverId(Map<Integer, Integer> giverReceiverMap, Set<Integer> familyUnit) {
-		// Filter out any current entries that have giverIds or receiverIds that belong to familyUnit.
-		Set<Integer> eligibleGiverIds = giverReceiverMap.keySet().stream()
-				.filter(x -> !familyUnit.contains(x) && !familyUnit.contains(giverReceiverMap.get(x)))
-				.collect(Collectors.toSet());
-		Integer selectedEligibleExistingGiverId = this.randomSelection(eligibleGiverIds);
-		LOGGER.debug("eligibleGiverIds: {}", () -> this.pringEligibleGiverIds(eligibleGiverIds, selectedEligibleExistingGiverId));
-		return selectedEligibleExistingGiverId;
-	}
-
-	private Integer retrieveRemainingReceiverId(Map<Integer, Integer> giverReceiverMap, Set<Integer> familyMemberIds, Integer giverId) {
-		Set<Integer> remainingReceiverIds = new HashSet<>(familyMemberIds);
-		remainingReceiverIds.removeAll(giverReceiverMap.values());
-		Integer remainingReceiverId = this.randomSelection(remainingReceiverIds);
-		LOGGER.debug("remainingReceiverIds: {}", () -> this.printRemainingReceiverIds(remainingReceiverIds, remainingReceiverId));
-		return remainingReceiverId;
-	}
-
-	private Set<Integer> createReceiverIdPool(Set<Integer> familyMemberIds, Map<Integer, Integer> giverReceiverMap,
-			Set<Integer> familyUnit) {
-		Set<Integer> receiverIdPool = new HashSet<>(familyMemberIds);
-		receiverIdPool.removeAll(giverReceiverMap.values());
-		receiverIdPool.removeAll(familyUnit);
-		return receiverIdPool;
-	}
-
-	private Integer randomSelection(Collection<Integer> collection) {
-		Integer[] array = collection.toArray(new Integer[0]);
-		int index = RANDOM.nextInt(array.length);
-		Integer existingGiverId = array[index];
-		return existingGiverId;
+	public List<GiftExchangeResult> generateGiftExchangesBatch(Collection<Set<Set<Integer>>> familyUnitConfigurations) {
+		return this.generateGiftExchangesBatch(familyUnitConfigurations, Runtime.getRuntime().availableProcessors());
 	}
 
 	// Basic validation. Thorough validation performed in unit tests.
-	private void validateGiverReceiverMap(Map<Integer, Integer> giverReceiverMap, Set<Set<Integer>> familyUnits)
+	void validateGiverReceiverMap(Map<Integer, Integer> giverReceiverMap, Set<Set<Integer>> familyUnits)
 			throws Exception {
+		GiftAssignment giftAssignment = GiftAssignment.backing(giverReceiverMap);
+		if (giftAssignment != null) {
+			this.validateGiverReceiverMap(giftAssignment, familyUnits);
+			return;
+		}
 		this.validateNoNullGiverOrReceiverValues(giverReceiverMap);
 		// Verify gifter is not gifting themself.
 		this.validateGiverNotSameAsReceiver(giverReceiverMap);
@@ -152,6 +575,74 @@ public class GiftExchangeGenerator {
 		this.validateNotGiftingFamilyUnitMembers(giverReceiverMap, familyUnits);
 	}
 
+	// Same checks as validateGiverReceiverMap(Map, Set), in a single pass over the dense arrays.
+	void validateGiverReceiverMap(int[] receiverOf, int[] familyUnitOf) throws Exception {
+		boolean[] received = new boolean[receiverOf.length];
+		for (int giverId = 0; giverId < receiverOf.length; giverId++) {
+			int receiverId = receiverOf[giverId];
+			if (receiverId < 0 || receiverId >= receiverOf.length) {
+				throw new Exception(ERROR_MESSAGE_RECEIVER_ID_CANNOT_BE_NULL + giverId + ").");
+			}
+			if (giverId == receiverId) {
+				throw new Exception(
+						ERROR_MESSAGE_GIVER_ID_AND_RECEIVER_ID_CANNOT_BE_THE_SAME + "[" + giverId + ":" + receiverId + "]");
+			}
+			if (received[receiverId]) {
+				throw new Exception(ERROR_MESSAGE_DUPLICATE_RECEIVER_ID_FOUND + receiverId + ". ");
+			}
+			received[receiverId] = true;
+			if (familyUnitOf[giverId] == familyUnitOf[receiverId]) {
+				throw new Exception(ERROR_MESSAGE_FAMILY_MEMBER_GIVING_TO_ANOTHER_FAMILY_MEMBER + "giverId: " + giverId
+						+ "; receiverId: " + receiverId + "; familyUnit: " + familyUnitOf[giverId]);
+			}
+		}
+	}
+
+	// A GiftAssignment is a permutation by construction, so only the family units remain to check; no inverse
+	// set is derived. Also reached through validateGiverReceiverMap(Map, Set) for a GiftAssignment's map view.
+	void validateGiverReceiverMap(GiftAssignment giftAssignment, Set<Set<Integer>> familyUnits) throws Exception {
+		int familyMemberCount = 0;
+		for (Set<Integer> familyUnit : familyUnits) {
+			for (Integer giverId : familyUnit) {
+				if (!giftAssignment.contains(giverId)) {
+					throw new Exception(ERROR_MESSAGE_RECEIVER_ID_CANNOT_BE_NULL + giverId + ").");
+				}
+				int receiverId = giftAssignment.getReceiverId(giverId);
+				if (familyUnit.contains(receiverId)) {
+					throw new Exception(ERROR_MESSAGE_FAMILY_MEMBER_GIVING_TO_ANOTHER_FAMILY_MEMBER + "giverId: " + giverId
+							+ "; receiverId: " + receiverId + "; familyUnit: " + familyUnit);
+				}
+			}
+			familyMemberCount += familyUnit.size();
+		}
+		if (familyMemberCount != giftAssignment.size()) {
+			throw new Exception(ERROR_MESSAGE_RECEIVER_ID_CANNOT_BE_NULL + giftAssignment.size() + " pairs for "
+					+ familyMemberCount + " family members).");
+		}
+	}
+
+	// Assumes a valid permutation (see validateGiverReceiverMap).
+	void validateSingleCycle(int[] receiverOf) throws Exception {
+		int cycleLength = 0;
+		int giverId = 0;
+		do {
+			giverId = receiverOf[giverId];
+			cycleLength++;
+		}
+		while (giverId != 0 && cycleLength <= receiverOf.length);
+		if (cycleLength != receiverOf.length) {
+			throw new Exception(ERROR_MESSAGE_NOT_A_SINGLE_CYCLE + cycleLength + " of " + receiverOf.length + ".");
+		}
+	}
+
+	void validateExclusions(int[] receiverOf, GiftExclusions exclusions) throws Exception {
+		for (int giverId = 0; giverId < receiverOf.length; giverId++) {
+			if (exclusions.isExcluded(giverId, receiverOf[giverId])) {
+				throw new Exception(ERROR_MESSAGE_EXCLUDED_RECEIVER + "[" + giverId + ":" + receiverOf[giverId] + "]");
+			}
+		}
+	}
+
 	void validateNoNullGiverOrReceiverValues(Map<Integer, Integer> giverReceiverMap) throws Exception {
 		Set<Integer> giverIds = giverReceiverMap.keySet();
 		for (Integer giverId : giverIds) {
@@ -199,17 +690,68 @@ public class GiftExchangeGenerator {
 	}
 
 	// Parameter validation.
-	private void validateParameters(Set<Set<Integer>> familyUnits) throws Exception {
+	void validateParameters(Set<Set<Integer>> familyUnits) throws Exception {
 		if (familyUnits == null || familyUnits.size() < 2) {
 			LOGGER.error(ERROR_MESSAGE_MUST_HAVE_AT_LEAST_TWO_FAMILY_UNITS);
 			throw new Exception(ERROR_MESSAGE_MUST_HAVE_AT_LEAST_TWO_FAMILY_UNITS);
 		}
-		Set<Integer> familyIds = new HashSet<>();
+		// Family unit sizes are O(1) each, so this pass does not touch the members.
+		int familyMemberCount = 0;
+		Set<Integer> largestFamilyUnit = null;
 		for (Set<Integer> familyUnit : familyUnits) {
 			if (familyUnit == null) {
 				LOGGER.error(ERROR_MESSAGE_INVALID_FAMILY_UNIT_NULL);
 				throw new Exception(ERROR_MESSAGE_INVALID_FAMILY_UNIT_NULL);
 			}
+			familyMemberCount += familyUnit.size();
+			if (largestFamilyUnit == null || familyUnit.size() > largestFamilyUnit.size()) {
+				largestFamilyUnit = familyUnit;
+			}
+		}
+		// Small non-negative ids (the usual case) are checked for duplicates in a bitset instead of a HashSet<Integer>.
+		if (!this.validateUniqueFamilyMemberIds(familyUnits, (long) familyMemberCount * BITSET_BITS_PER_FAMILY_MEMBER)) {
+			this.validateUniqueFamilyMemberIds(familyUnits);
+		}
+		// Need to make sure that there are enough receivers for a large family of givers, and vice-versa.
+		if (largestFamilyUnit.size() * 2L > familyMemberCount) {
+			String message = ERROR_MESSAGE_FAMILY_UNIT_IS_TOO_LARGE + largestFamilyUnit.size()
+					+ ". Current family pool size is: " + familyMemberCount + ". ";
+			LOGGER.error(message);
+			throw new Exception(message);
+		}
+	}
+
+	// Returns false, without a verdict, as soon as an id is negative or not below maximumIdExclusive.
+	private boolean validateUniqueFamilyMemberIds(Set<Set<Integer>> familyUnits, long maximumIdExclusive)
+			throws Exception {
+		long[] familyIds = new long[(int) (maximumIdExclusive / BITSET_BITS_PER_FAMILY_MEMBER / Long.SIZE) + 1]; // Ids 0..n-1 fit.
+		for (Set<Integer> familyUnit : familyUnits) {
+			for (Integer id : familyUnit) {
+				if (id == null) {
+					LOGGER.error(ERROR_MESSAGE_INVALID_FAMILY_MEMBER_ID_NULL);
+					throw new Exception(ERROR_MESSAGE_INVALID_FAMILY_MEMBER_ID_NULL);
+				}
+				if (id < 0 || id >= maximumIdExclusive) {
+					return false;
+				}
+				int word = id >>> 6;
+				if (word >= familyIds.length) {
+					familyIds = Arrays.copyOf(familyIds, (int) Math.min(Math.max(word + 1L, familyIds.length * 2L),
+							maximumIdExclusive / Long.SIZE + 1));
+				}
+				long mask = 1L << id; // Shift uses the low six bits.
+				if ((familyIds[word] & mask) != 0) {
+					this.throwFamilyMemberIdFoundInMultipleFamilyUnits(id, familyUnit, familyUnits);
+				}
+				familyIds[word] |= mask;
+			}
+		}
+		return true;
+	}
+
+	private void validateUniqueFamilyMemberIds(Set<Set<Integer>> familyUnits) throws Exception {
+		Set<Integer> familyIds = new HashSet<>();
+		for (Set<Integer> familyUnit : familyUnits) {
 			for (Integer id : familyUnit) {
 				if (id == null) {
 					LOGGER.error(ERROR_MESSAGE_INVALID_FAMILY_MEMBER_ID_NULL);
@@ -217,22 +759,69 @@ public class GiftExchangeGenerator {
 				}
 				// Use boolean from set.add() to determine if ID already exists in different family unit.
 				if (!familyIds.add(id)) {
-					String message = ERROR_MESSAGE_FAMILY_MEMBER_ID_FOUND_IN_MULTIPLE_FAMILY_UNITS + id
-							+ ". familyUnit: " + familyUnit + ". familyUnits: " + familyUnits;
-					LOGGER.error(message);
-					throw new Exception(message);
+					this.throwFamilyMemberIdFoundInMultipleFamilyUnits(id, familyUnit, familyUnits);
 				}
 			}
 		}
-		// Need to make sure that there are enough receivers for a large family of givers, and vice-versa.
-		for (Set<Integer> familyUnit : familyUnits) {
-			if (familyUnit.size() * 2 > familyIds.size()) {
-				String message = ERROR_MESSAGE_FAMILY_UNIT_IS_TOO_LARGE + familyUnit.size()
-						+ ". Current family pool size is: " + familyIds.size() + ". ";
+	}
+
+	private void throwFamilyMemberIdFoundInMultipleFamilyUnits(Integer id, Set<Integer> familyUnit,
+			Set<Set<Integer>> familyUnits) throws Exception {
+		String message = ERROR_MESSAGE_FAMILY_MEMBER_ID_FOUND_IN_MULTIPLE_FAMILY_UNITS + id + ". familyUnit: "
+				+ abbreviate(familyUnit) + ". familyUnits: " + abbreviate(familyUnits);
+		LOGGER.error(message);
+		throw new Exception(message);
+	}
+
+	// Like toString(), with at most MAX_ERROR_MESSAGE_ELEMENTS elements per collection, for error messages.
+	static String abbreviate(Collection<?> collection) {
+		StringBuilder sb = new StringBuilder("[");
+		int count = 0;
+		for (Object element : collection) {
+			if (count == MAX_ERROR_MESSAGE_ELEMENTS) {
+				sb.append(", ... (").append(collection.size()).append(" in total)");
+				break;
+			}
+			if (count++ > 0) {
+				sb.append(", ");
+			}
+			sb.append(element instanceof Collection ? abbreviate((Collection<?>) element) : String.valueOf(element));
+		}
+		return sb.append(']').toString();
+	}
+
+	// Parameter validation for dense ids. Returns the number of family units.
+	private int validateParameters(int[] familyUnitOf) throws Exception {
+		if (familyUnitOf == null) {
+			LOGGER.error(ERROR_MESSAGE_MUST_HAVE_AT_LEAST_TWO_FAMILY_UNITS);
+			throw new GiftExchangeException(Reason.INVALID_INPUT, ERROR_MESSAGE_MUST_HAVE_AT_LEAST_TWO_FAMILY_UNITS);
+		}
+		int familyUnitCount = 0;
+		for (int familyUnitId : familyUnitOf) {
+			if (familyUnitId < 0) {
+				String message = ERROR_MESSAGE_INVALID_FAMILY_UNIT_ID + familyUnitId + ". ";
 				LOGGER.error(message);
-				throw new Exception(message);
+				throw new GiftExchangeException(Reason.INVALID_INPUT, message);
 			}
+			familyUnitCount = Math.max(familyUnitCount, familyUnitId + 1);
 		}
+		if (familyUnitCount < 2) {
+			LOGGER.error(ERROR_MESSAGE_MUST_HAVE_AT_LEAST_TWO_FAMILY_UNITS);
+			throw new GiftExchangeException(Reason.INVALID_INPUT, ERROR_MESSAGE_MUST_HAVE_AT_LEAST_TWO_FAMILY_UNITS);
+		}
+		int[] familyUnitSizes = new int[familyUnitCount];
+		for (int familyUnitId : familyUnitOf) {
+			familyUnitSizes[familyUnitId]++;
+		}
+		for (int familyUnitSize : familyUnitSizes) {
+			if (familyUnitSize * 2L > familyUnitOf.length) {
+				String message = ERROR_MESSAGE_FAMILY_UNIT_IS_TOO_LARGE + familyUnitSize
+						+ ". Current family pool size is: " + familyUnitOf.length + ". ";
+				LOGGER.error(message);
+				throw new GiftExchangeException(Reason.INVALID_INPUT, message);
+			}
+		}
+		return familyUnitCount;
 	}
 
 	private Set<Set<Integer>> generateFamilyUnits(String[] args, String[] familyMemberNames) throws Exception {
@@ -303,18 +892,40 @@ public class GiftExchangeGenerator {
 		return HAPPY_FAMILY_MEMBER_NAMES;
 	}
 
-	private String pringEligibleGiverIds(Set<Integer> eligibleGiverIds, Integer selectedEligibleExistingGiverId) {
-		StringBuilder sb = new StringBuilder("[");
-		eligibleGiverIds.stream().sorted().collect(Collectors.toList()).forEach(x -> sb.append(x + " "));
-		sb.append("]. Selected eligibleGiverId: " + selectedEligibleExistingGiverId + ". ");
-		return sb.toString();
+	private int retrieveShardCount(String[] args) throws Exception {
+		try {
+			return Integer.parseInt(args[1]);
+		}
+		catch (NumberFormatException e) {
+			throw new Exception(INSTRUCTIONS, e);
+		}
 	}
 
-	private String printRemainingReceiverIds(Set<Integer> remainingReceiverIds, Integer remainingReceiverId) {
-		StringBuilder sb = new StringBuilder("[");
-		remainingReceiverIds.forEach(x -> sb.append(x + " "));
-		sb.append("]. Selected remainingReceiverId: " + remainingReceiverId + ". ");
-		return sb.toString();
+	private Roster retrieveRoster(String[] args) throws Exception {
+		if (args.length < 2 || args.length > 3) {
+			throw new Exception(INSTRUCTIONS);
+		}
+		Roster roster = RosterLoader.load(Paths.get(args[1]));
+		LOGGER.info("Roster: {} family members; {} family units.", roster.getFamilyMemberCount(), roster.getFamilyUnitCount());
+		return roster;
+	}
+
+	// Streams the results to the optional output file (format from its extension), or as CSV to stdout.
+	private void exportGiftExchangeValues(int[] receiverOf, Roster roster, String[] args) throws Exception {
+		if (args.length == 3 && args[2].toLowerCase().endsWith(GiftExchangeResultStore.FILE_EXTENSION)) {
+			GiftExchangeResultStore.write(Paths.get(args[2]), receiverOf);
+			LOGGER.info("Results: {} gift exchanges stored in {}.", receiverOf.length, args[2]);
+		}
+		else if (args.length == 3) {
+			try (FileChannel channel = FileChannel.open(Paths.get(args[2]), StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+				new GiftExchangeExporter(GiftExchangeExporter.Format.of(args[2])).export(receiverOf, roster, channel);
+			}
+			LOGGER.info("Results: {} gift exchanges written to {}.", receiverOf.length, args[2]);
+		}
+		else {
+			new GiftExchangeExporter(GiftExchangeExporter.Format.CSV).export(receiverOf, roster, System.out);
+		}
 	}
 
 	private String printFamiyUnits(Set<Set<Integer>> familyUnits, String[] familyMemberNames) {
@@ -331,12 +942,6 @@ public class GiftExchangeGenerator {
 		return sb.toString();
 	}
 
-	private String printGiverReceiverMap(String message, Map<Integer, Integer> giverReceiverMap) {
-		StringBuilder sb = new StringBuilder(message + ": ");
-		giverReceiverMap.entrySet().forEach(x -> sb.append("[" + x.getKey() + ":" + x.getValue() + "] "));
-		return sb.toString();
-	}
-
 	// Print out values.
 	String printOutGiftExchangeValues(Map<Integer, Integer> giftExchangePairs, String[] familyMemberNames) {
 		StringBuilder sb = new StringBuilder("\n");
@@ -346,4 +951,3 @@ public class GiftExchangeGenerator {
 	}
 
 }
-
@@ -0,0 +1,51 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import java.util.Arrays;
+
+/**
+ * Incremental validation of a draw in progress. Each mutation is checked in O(1) for the no-self,
+ * unique-receiver, no-same-family and exclusion rules, instead of re-walking the whole assignment.
+ */
+final class GiftExchangeInvariantChecker {
+
+	private final int[] familyUnitOf;
+	private final GiftExclusions exclusions; // Optional.
+	private final int[] giverOf; // Inverse of receiverOf; UNASSIGNED while nobody gives to the receiver.
+
+	GiftExchangeInvariantChecker(int[] familyUnitOf) {
+		this(familyUnitOf, null);
+	}
+
+	GiftExchangeInvariantChecker(int[] familyUnitOf, GiftExclusions exclusions) {
+		this.familyUnitOf = familyUnitOf;
+		this.exclusions = exclusions;
+		this.giverOf = new int[familyUnitOf.length];
+		Arrays.fill(this.giverOf, GiftExchangeEngine.UNASSIGNED);
+	}
+
+	// giverId starts giving to receiverId.
+	void onAssign(int giverId, int receiverId) throws Exception {
+		if (giverId == receiverId) {
+			throw new Exception(GiftExchangeGenerator.ERROR_MESSAGE_GIVER_ID_AND_RECEIVER_ID_CANNOT_BE_THE_SAME
+					+ "[" + giverId + ":" + receiverId + "]");
+		}
+		if (this.giverOf[receiverId] != GiftExchangeEngine.UNASSIGNED) {
+			throw new Exception(GiftExchangeGenerator.ERROR_MESSAGE_DUPLICATE_RECEIVER_ID_FOUND + receiverId + ". ");
+		}
+		if (this.familyUnitOf[giverId] == this.familyUnitOf[receiverId]) {
+			throw new Exception(GiftExchangeGenerator.ERROR_MESSAGE_FAMILY_MEMBER_GIVING_TO_ANOTHER_FAMILY_MEMBER
+					+ "giverId: " + giverId + "; receiverId: " + receiverId + "; familyUnit: " + this.familyUnitOf[giverId]);
+		}
+		if (this.exclusions != null && this.exclusions.isExcluded(giverId, receiverId)) {
+			throw new Exception(GiftExchangeGenerator.ERROR_MESSAGE_EXCLUDED_RECEIVER + "[" + giverId + ":" + receiverId + "]");
+		}
+		this.giverOf[receiverId] = giverId;
+	}
+
+	// giverId stops giving to previousReceiverId and gives to receiverId instead.
+	void onReassign(int giverId, int previousReceiverId, int receiverId) throws Exception {
+		this.giverOf[previousReceiverId] = GiftExchangeEngine.UNASSIGNED;
+		this.onAssign(giverId, receiverId);
+	}
+
+}
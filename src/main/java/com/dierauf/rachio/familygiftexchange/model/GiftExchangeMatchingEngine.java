@@ -0,0 +1,279 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Draw under arbitrary exclusions, as a perfect matching of givers to receivers in the compatibility graph
+ * (different family unit, not excluded). Unlike greedy selection plus swaps, it finds a draw whenever one
+ * exists, and otherwise proves that none does ({@link InfeasibleGiftExchangeException}).
+ * <p>
+ * A randomized greedy pass, largest family units first, matches almost everybody. Phases in the spirit of
+ * Hopcroft-Karp then augment the rest: each phase searches an augmenting path from every unmatched giver,
+ * depth-first, with visited receivers shared across the phase, so the paths found are vertex-disjoint and a
+ * phase costs O(n + family units + exclusions). The compatibility graph is nearly complete, so it is never
+ * built: the search keeps the unvisited receivers per family unit, skips the giver's own family unit as a
+ * whole, and only re-checks receivers the giver excludes. Giver order, receiver order and greedy picks are
+ * random.
+ */
+final class GiftExchangeMatchingEngine {
+
+	static final int GREEDY_ATTEMPTS = 8;
+	private static final int UNASSIGNED = -1;
+
+	private final int[] familyUnitOf;
+	private final int familyUnitCount;
+	private final ExclusionGraph exclusions; // Optional.
+	private final SplittableRandom random;
+	private final int[] receiverOf;
+	private final int[] giverOf;
+
+	// Search state. The unvisited receivers of family unit f are familyMembers[familyOffsets[f], + unvisitedCount[f]).
+	private final int[] familyOffsets;
+	private final int[] familyMembers;
+	private final int[] unvisitedCount;
+	private final int[] unvisitedFamilyUnitIds;
+	private int unvisitedFamilyUnitCount;
+	private final int[] familyMemberIndex; // Position of each member in familyMembers.
+	private final int[] receiverPhase; // Phase in which a receiver was visited.
+	private final int[] visitedGiverIds; // Unmatched givers, then every giver the phase's searches entered.
+	private final int[] freeReceiverIds; // Receivers unmatched at the start of the phase.
+	private int freeReceiverCount;
+	private final int[] giverStack;
+	private final int[] receiverStack;
+	private final int[] excludedStamp; // excludedStamp[r] == stamp: the giver being expanded excludes r.
+	private int stamp;
+	private int phaseCount;
+
+	GiftExchangeMatchingEngine(int[] familyUnitOf, int familyUnitCount, ExclusionGraph exclusions, SplittableRandom random) {
+		int familyMemberCount = familyUnitOf.length;
+		this.familyUnitOf = familyUnitOf;
+		this.familyUnitCount = familyUnitCount;
+		this.exclusions = exclusions;
+		this.random = random;
+		this.receiverOf = new int[familyMemberCount];
+		this.giverOf = new int[familyMemberCount];
+		this.familyOffsets = new int[familyUnitCount + 1];
+		this.familyMembers = new int[familyMemberCount];
+		this.unvisitedCount = new int[familyUnitCount];
+		this.unvisitedFamilyUnitIds = new int[familyUnitCount];
+		this.familyMemberIndex = new int[familyMemberCount];
+		this.receiverPhase = new int[familyMemberCount];
+		this.visitedGiverIds = new int[familyMemberCount];
+		this.freeReceiverIds = new int[familyMemberCount];
+		this.giverStack = new int[familyMemberCount];
+		this.receiverStack = new int[familyMemberCount];
+		this.excludedStamp = new int[familyMemberCount];
+		// Counting sort on family unit id.
+		for (int familyUnitId : familyUnitOf) {
+			this.familyOffsets[familyUnitId + 1]++;
+		}
+		for (int f = 0; f < familyUnitCount; f++) {
+			this.familyOffsets[f + 1] += this.familyOffsets[f];
+		}
+		int[] next = Arrays.copyOf(this.familyOffsets, familyUnitCount);
+		for (int memberId = 0; memberId < familyMemberCount; memberId++) {
+			this.familyMembers[next[familyUnitOf[memberId]]++] = memberId;
+		}
+	}
+
+	/**
+	 * @return receiverOf, indexed by giver id.
+	 * @throws InfeasibleGiftExchangeException if no valid draw exists.
+	 */
+	int[] generate() throws InfeasibleGiftExchangeException {
+		Arrays.fill(this.receiverOf, UNASSIGNED);
+		Arrays.fill(this.giverOf, UNASSIGNED);
+		Arrays.fill(this.receiverPhase, 0);
+		this.phaseCount = 0;
+		int unmatchedGiverCount = this.matchGreedily();
+		while (unmatchedGiverCount > 0) {
+			this.phaseCount++;
+			unmatchedGiverCount -= this.augment();
+		}
+		return this.receiverOf;
+	}
+
+	int getPhaseCount() {
+		return this.phaseCount;
+	}
+
+	// Each giver tries a few random unmatched receivers; the most constrained givers, of the largest family
+	// units, go first. Returns the number of unmatched givers.
+	private int matchGreedily() {
+		int familyMemberCount = this.receiverOf.length;
+		int[] familyUnitSizes = new int[this.familyUnitCount];
+		for (int f = 0; f < this.familyUnitCount; f++) {
+			familyUnitSizes[f] = this.familyOffsets[f + 1] - this.familyOffsets[f];
+		}
+		int[] giverIds = this.visitedGiverIds; // Not in use yet.
+		int[] orderedFamilyUnitIds = FamilyUnitOrder.bySizeDescending(familyUnitSizes, this.random);
+		int giverCount = 0;
+		for (int f : orderedFamilyUnitIds) {
+			int familyUnitSize = this.familyOffsets[f + 1] - this.familyOffsets[f];
+			System.arraycopy(this.familyMembers, this.familyOffsets[f], giverIds, giverCount, familyUnitSize);
+			FamilyUnitOrder.shuffle(giverIds, giverCount, familyUnitSize, this.random);
+			giverCount += familyUnitSize;
+		}
+
+		int[] receiverIdPool = this.freeReceiverIds;
+		for (int memberId = 0; memberId < familyMemberCount; memberId++) {
+			receiverIdPool[memberId] = memberId;
+		}
+		int receiverIdPoolSize = familyMemberCount;
+		for (int giverId : giverIds) {
+			for (int attempt = 0; attempt < GREEDY_ATTEMPTS && receiverIdPoolSize > 0; attempt++) {
+				int index = this.random.nextInt(receiverIdPoolSize);
+				int receiverId = receiverIdPool[index];
+				if (this.isAllowed(giverId, receiverId)) {
+					this.receiverOf[giverId] = receiverId;
+					this.giverOf[receiverId] = giverId;
+					receiverIdPool[index] = receiverIdPool[--receiverIdPoolSize];
+					break;
+				}
+			}
+		}
+		return receiverIdPoolSize;
+	}
+
+	// One phase. Returns the number of augmenting paths flipped; throws if there are none.
+	private int augment() throws InfeasibleGiftExchangeException {
+		int visitedGiverCount = 0;
+		this.freeReceiverCount = 0;
+		for (int memberId = 0; memberId < this.receiverOf.length; memberId++) {
+			if (this.receiverOf[memberId] == UNASSIGNED) {
+				this.visitedGiverIds[visitedGiverCount++] = memberId;
+			}
+			if (this.giverOf[memberId] == UNASSIGNED) {
+				this.freeReceiverIds[this.freeReceiverCount++] = memberId;
+			}
+		}
+		int unmatchedGiverCount = visitedGiverCount;
+		FamilyUnitOrder.shuffle(this.visitedGiverIds, 0, unmatchedGiverCount, this.random);
+		this.unvisitedFamilyUnitCount = 0;
+		for (int f = 0; f < this.familyUnitCount; f++) {
+			this.unvisitedCount[f] = this.familyOffsets[f + 1] - this.familyOffsets[f];
+			FamilyUnitOrder.shuffle(this.familyMembers, this.familyOffsets[f], this.unvisitedCount[f], this.random);
+			for (int index = this.familyOffsets[f]; index < this.familyOffsets[f + 1]; index++) {
+				this.familyMemberIndex[this.familyMembers[index]] = index;
+			}
+			if (this.unvisitedCount[f] > 0) {
+				this.unvisitedFamilyUnitIds[this.unvisitedFamilyUnitCount++] = f;
+			}
+		}
+		FamilyUnitOrder.shuffle(this.unvisitedFamilyUnitIds, 0, this.unvisitedFamilyUnitCount, this.random);
+
+		int augmentedCount = 0;
+		for (int root = 0; root < unmatchedGiverCount; root++) {
+			// Iterative depth-first search: giverStack[i] takes receiverStack[i], whose giver is giverStack[i + 1].
+			int stackSize = 0;
+			this.giverStack[stackSize++] = this.visitedGiverIds[root];
+			while (stackSize > 0) {
+				int giverId = this.giverStack[stackSize - 1];
+				int receiverId = this.visitUnvisitedReceiver(giverId);
+				if (receiverId == UNASSIGNED) {
+					stackSize--; // Dead end, for the rest of the phase.
+					continue;
+				}
+				this.receiverStack[stackSize - 1] = receiverId;
+				if (this.giverOf[receiverId] == UNASSIGNED) {
+					for (int i = 0; i < stackSize; i++) {
+						this.receiverOf[this.giverStack[i]] = this.receiverStack[i];
+						this.giverOf[this.receiverStack[i]] = this.giverStack[i];
+					}
+					augmentedCount++;
+					break;
+				}
+				this.giverStack[stackSize++] = this.giverOf[receiverId];
+				this.visitedGiverIds[visitedGiverCount++] = this.giverOf[receiverId];
+			}
+		}
+		if (augmentedCount == 0) {
+			throw this.createCertificate(visitedGiverCount);
+		}
+		return augmentedCount;
+	}
+
+	// Marks and returns an unvisited receiver the giver may give to, or UNASSIGNED. Unmatched receivers are
+	// tried first, which keeps augmenting paths short.
+	private int visitUnvisitedReceiver(int giverId) {
+		for (int attempt = 0; attempt < GREEDY_ATTEMPTS && this.freeReceiverCount > 0; attempt++) {
+			int receiverId = this.freeReceiverIds[this.random.nextInt(this.freeReceiverCount)];
+			if (this.receiverPhase[receiverId] != this.phaseCount && this.isAllowed(giverId, receiverId)) {
+				this.visit(receiverId);
+				return receiverId;
+			}
+		}
+		this.stampExclusions(giverId);
+		int ownFamilyUnitId = this.familyUnitOf[giverId];
+		for (int i = 0; i < this.unvisitedFamilyUnitCount;) {
+			int f = this.unvisitedFamilyUnitIds[i];
+			if (this.unvisitedCount[f] == 0) {
+				this.unvisitedFamilyUnitIds[i] = this.unvisitedFamilyUnitIds[--this.unvisitedFamilyUnitCount];
+				continue;
+			}
+			if (f != ownFamilyUnitId) {
+				int offset = this.familyOffsets[f];
+				for (int j = 0; j < this.unvisitedCount[f]; j++) {
+					int receiverId = this.familyMembers[offset + j];
+					if (this.excludedStamp[receiverId] != this.stamp) {
+						this.visit(receiverId);
+						return receiverId;
+					}
+				}
+			}
+			i++;
+		}
+		return UNASSIGNED;
+	}
+
+	// Swaps the receiver behind the unvisited members of its family unit.
+	private void visit(int receiverId) {
+		this.receiverPhase[receiverId] = this.phaseCount;
+		int f = this.familyUnitOf[receiverId];
+		int index = this.familyMemberIndex[receiverId];
+		int last = this.familyOffsets[f] + --this.unvisitedCount[f];
+		int lastReceiverId = this.familyMembers[last];
+		this.familyMembers[index] = lastReceiverId;
+		this.familyMemberIndex[lastReceiverId] = index;
+		this.familyMembers[last] = receiverId;
+		this.familyMemberIndex[receiverId] = last;
+	}
+
+	// No search found an unmatched receiver, so each visited giver was expanded to the end: every receiver the
+	// visited givers may give to was visited, and is matched to one of them. The unmatched givers are among the
+	// visited givers too, so the receivers are fewer than the givers.
+	private InfeasibleGiftExchangeException createCertificate(int visitedGiverCount) {
+		int[] giverIds = Arrays.copyOf(this.visitedGiverIds, visitedGiverCount);
+		int[] receiverIds = new int[visitedGiverCount];
+		int receiverCount = 0;
+		for (int receiverId = 0; receiverId < this.giverOf.length && receiverCount < visitedGiverCount; receiverId++) {
+			if (this.receiverPhase[receiverId] == this.phaseCount) {
+				receiverIds[receiverCount++] = receiverId;
+			}
+		}
+		receiverIds = Arrays.copyOf(receiverIds, receiverCount);
+		Arrays.sort(giverIds);
+		Arrays.sort(receiverIds);
+		return new InfeasibleGiftExchangeException(giverIds, receiverIds);
+	}
+
+	private void stampExclusions(int giverId) {
+		if (++this.stamp == Integer.MAX_VALUE) {
+			Arrays.fill(this.excludedStamp, 0);
+			this.stamp = 1;
+		}
+		if (this.exclusions == null) {
+			return;
+		}
+		for (int index = this.exclusions.getExclusionsOffset(giverId); index < this.exclusions.getExclusionsEnd(giverId); index++) {
+			this.excludedStamp[this.exclusions.getExcludedReceiverId(index)] = this.stamp;
+		}
+	}
+
+	private boolean isAllowed(int giverId, int receiverId) {
+		return this.familyUnitOf[giverId] != this.familyUnitOf[receiverId]
+				&& (this.exclusions == null || !this.exclusions.isExcluded(giverId, receiverId));
+	}
+
+}
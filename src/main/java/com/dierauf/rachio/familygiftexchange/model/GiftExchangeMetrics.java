@@ -0,0 +1,140 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters and latency histograms of the draws, exposed through JMX. Enable with
+ * <pre>
+ * GiftExchangeMetrics metrics = new GiftExchangeMetrics();
+ * metrics.register();
+ * GiftExchangeGenerator.instance().setMetricsListener(metrics);
+ * </pre>
+ * Without a listener the generator does not even read the clock.
+ */
+public final class GiftExchangeMetrics implements GiftExchangeMetricsListener, GiftExchangeMetricsMBean {
+
+	static final String OBJECT_NAME = "com.dierauf.rachio.familygiftexchange:type=GiftExchangeMetrics";
+
+	private final AtomicLong failedDrawCount = new AtomicLong();
+	private final AtomicLong swapCount = new AtomicLong();
+	private final Log2Histogram validateParametersNanos = new Log2Histogram();
+	private final Log2Histogram selectionNanos = new Log2Histogram();
+	private final Log2Histogram validateGiverReceiverMapNanos = new Log2Histogram();
+	private final Log2Histogram receiverPoolSizes = new Log2Histogram();
+
+	@Override
+	public void onDraw(int familyMemberCount, long validateParametersNanos, long selectionNanos,
+			long validateGiverReceiverMapNanos, int swapCount, int receiverPoolSize) {
+		this.validateParametersNanos.record(validateParametersNanos);
+		this.selectionNanos.record(selectionNanos);
+		this.validateGiverReceiverMapNanos.record(validateGiverReceiverMapNanos);
+		this.receiverPoolSizes.record(receiverPoolSize);
+		this.swapCount.addAndGet(swapCount);
+	}
+
+	@Override
+	public void onDrawFailed() {
+		this.failedDrawCount.incrementAndGet();
+	}
+
+	/**
+	 * Registers this instance with the platform MBean server under {@value #OBJECT_NAME}.
+	 */
+	public void register() throws JMException {
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+	}
+
+	public void unregister() throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(OBJECT_NAME);
+		if (server.isRegistered(name)) {
+			server.unregisterMBean(name);
+		}
+	}
+
+	@Override
+	public long getDrawCount() {
+		return this.selectionNanos.getCount();
+	}
+
+	@Override
+	public long getFailedDrawCount() {
+		return this.failedDrawCount.get();
+	}
+
+	@Override
+	public long getSwapCount() {
+		return this.swapCount.get();
+	}
+
+	@Override
+	public long getValidateParametersNanosTotal() {
+		return this.validateParametersNanos.getTotal();
+	}
+
+	@Override
+	public long getValidateParametersNanosP50() {
+		return this.validateParametersNanos.getPercentile(50);
+	}
+
+	@Override
+	public long getValidateParametersNanosP99() {
+		return this.validateParametersNanos.getPercentile(99);
+	}
+
+	@Override
+	public long getSelectionNanosTotal() {
+		return this.selectionNanos.getTotal();
+	}
+
+	@Override
+	public long getSelectionNanosP50() {
+		return this.selectionNanos.getPercentile(50);
+	}
+
+	@Override
+	public long getSelectionNanosP99() {
+		return this.selectionNanos.getPercentile(99);
+	}
+
+	@Override
+	public long getValidateGiverReceiverMapNanosTotal() {
+		return this.validateGiverReceiverMapNanos.getTotal();
+	}
+
+	@Override
+	public long getValidateGiverReceiverMapNanosP50() {
+		return this.validateGiverReceiverMapNanos.getPercentile(50);
+	}
+
+	@Override
+	public long getValidateGiverReceiverMapNanosP99() {
+		return this.validateGiverReceiverMapNanos.getPercentile(99);
+	}
+
+	@Override
+	public long getReceiverPoolSizeP50() {
+		return this.receiverPoolSizes.getPercentile(50);
+	}
+
+	@Override
+	public long getReceiverPoolSizeMax() {
+		return this.receiverPoolSizes.getMax();
+	}
+
+	@Override
+	public void reset() {
+		this.failedDrawCount.set(0);
+		this.swapCount.set(0);
+		this.validateParametersNanos.reset();
+		this.selectionNanos.reset();
+		this.validateGiverReceiverMapNanos.reset();
+		this.receiverPoolSizes.reset();
+	}
+
+}
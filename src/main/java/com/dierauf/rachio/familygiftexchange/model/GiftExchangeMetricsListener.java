@@ -0,0 +1,24 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+/**
+ * Receives the measurements of every draw, see {@link GiftExchangeGenerator#setMetricsListener}. Called on the
+ * drawing thread, so implementations must be thread-safe and cheap. {@link GiftExchangeMetrics} publishes them
+ * through JMX.
+ */
+public interface GiftExchangeMetricsListener {
+
+	/**
+	 * @param familyMemberCount
+	 * @param validateParametersNanos time spent in validateParameters.
+	 * @param selectionNanos time spent selecting receivers, swaps included.
+	 * @param validateGiverReceiverMapNanos time spent in validateGiverReceiverMap.
+	 * @param swapCount swaps with an existing non-family member.
+	 * @param receiverPoolSize size of the receiver pool allocated.
+	 */
+	void onDraw(int familyMemberCount, long validateParametersNanos, long selectionNanos,
+			long validateGiverReceiverMapNanos, int swapCount, int receiverPoolSize);
+
+	default void onDrawFailed() {
+	}
+
+}
@@ -0,0 +1,38 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+/**
+ * JMX view of {@link GiftExchangeMetrics}. Percentiles are upper bounds of power-of-two buckets.
+ */
+public interface GiftExchangeMetricsMBean {
+
+	long getDrawCount();
+
+	long getFailedDrawCount();
+
+	long getSwapCount();
+
+	long getValidateParametersNanosTotal();
+
+	long getValidateParametersNanosP50();
+
+	long getValidateParametersNanosP99();
+
+	long getSelectionNanosTotal();
+
+	long getSelectionNanosP50();
+
+	long getSelectionNanosP99();
+
+	long getValidateGiverReceiverMapNanosTotal();
+
+	long getValidateGiverReceiverMapNanosP50();
+
+	long getValidateGiverReceiverMapNanosP99();
+
+	long getReceiverPoolSizeP50();
+
+	long getReceiverPoolSizeMax();
+
+	void reset();
+
+}
@@ -0,0 +1,288 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Renders one personalized message per giver, e.g. "{giver} gifts to {receiver} on {date}.", in parallel.
+ * The template is compiled once: event details are folded into its literal UTF-8 byte segments, leaving
+ * only the per-giver fields. Each message is then a sequence of byte copies into a reused buffer, with
+ * names taken straight from the {@link Roster}'s UTF-8 bytes; no String is created per message.
+ * Per-giver placeholders: {giver}, {receiver}, {giverFamily}, {receiverFamily}, {giverId}, {receiverId}.
+ * Any other {name} must be an event detail. "{{" renders as "{".
+ */
+public final class GiftExchangeNotificationRenderer {
+
+	static final String ERROR_MESSAGE_UNKNOWN_PLACEHOLDER = "Unknown template placeholder: ";
+	static final String ERROR_MESSAGE_UNCLOSED_PLACEHOLDER = "Unclosed template placeholder at index: ";
+	static final String FILE_EXTENSION = ".txt";
+	static final int CHUNK_SIZE = 4096; // Givers per task; each task reuses one buffer.
+
+	private static final String[] FIELD_NAMES = new String[] { "giver", "receiver", "giverFamily", "receiverFamily",
+			"giverId", "receiverId" };
+	private static final int GIVER = 0;
+	private static final int RECEIVER = 1;
+	private static final int GIVER_FAMILY = 2;
+	private static final int RECEIVER_FAMILY = 3;
+	private static final int GIVER_ID = 4;
+	private static final int RECEIVER_ID = 5;
+	private static final int MAX_DECIMAL_LENGTH = 11;
+
+	/**
+	 * Receives rendered messages, concurrently from several threads.
+	 */
+	@FunctionalInterface
+	public interface NotificationSink {
+		/**
+		 * @param message the rendered UTF-8 message, from position to limit; only valid during the call.
+		 */
+		void accept(int giverId, ByteBuffer message) throws IOException;
+	}
+
+	// Rendered as literals[0] fields[0] literals[1] ... fields[n - 1] literals[n].
+	private final byte[][] literals;
+	private final int[] fields;
+	private final int literalLength;
+
+	/**
+	 * @param template message template, see the class comment.
+	 * @param eventDetails values of the event placeholders, e.g. "date" or "budget"; may be empty.
+	 */
+	public GiftExchangeNotificationRenderer(String template, Map<String, String> eventDetails) throws Exception {
+		List<byte[]> literals = new ArrayList<>();
+		List<Integer> fields = new ArrayList<>();
+		StringBuilder literal = new StringBuilder();
+		int i = 0;
+		while (i < template.length()) {
+			char c = template.charAt(i);
+			if (c != '{') {
+				literal.append(c);
+				i++;
+				continue;
+			}
+			if (i + 1 < template.length() && template.charAt(i + 1) == '{') {
+				literal.append('{');
+				i += 2;
+				continue;
+			}
+			int end = template.indexOf('}', i);
+			if (end < 0) {
+				throw new Exception(ERROR_MESSAGE_UNCLOSED_PLACEHOLDER + i + ".");
+			}
+			String name = template.substring(i + 1, end);
+			int field = indexOfField(name);
+			if (field >= 0) {
+				literals.add(literal.toString().getBytes(StandardCharsets.UTF_8));
+				fields.add(field);
+				literal.setLength(0);
+			}
+			else if (eventDetails.containsKey(name)) {
+				literal.append(eventDetails.get(name));
+			}
+			else {
+				throw new Exception(ERROR_MESSAGE_UNKNOWN_PLACEHOLDER + name + ".");
+			}
+			i = end + 1;
+		}
+		literals.add(literal.toString().getBytes(StandardCharsets.UTF_8));
+		this.literals = literals.toArray(new byte[0][]);
+		this.fields = new int[fields.size()];
+		int literalLength = 0;
+		for (int f = 0; f < this.fields.length; f++) {
+			this.fields[f] = fields.get(f);
+		}
+		for (byte[] bytes : this.literals) {
+			literalLength += bytes.length;
+		}
+		this.literalLength = literalLength;
+	}
+
+	public GiftExchangeNotificationRenderer(String template) throws Exception {
+		this(template, Collections.<String, String> emptyMap());
+	}
+
+	private static int indexOfField(String name) {
+		for (int field = 0; field < FIELD_NAMES.length; field++) {
+			if (FIELD_NAMES[field].equals(name)) {
+				return field;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Writes each message to its own file, named by giver id, e.g. 42.txt. The directory is created if needed.
+	 */
+	public static NotificationSink directory(Path directory) throws IOException {
+		Files.createDirectories(directory);
+		return (giverId, message) -> {
+			try (FileChannel channel = FileChannel.open(directory.resolve(giverId + FILE_EXTENSION), StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+				while (message.hasRemaining()) {
+					channel.write(message);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Renders one message per giver.
+	 * @param receiverOf receiver id of each giver id.
+	 * @param parallelism number of ForkJoin worker threads.
+	 * @throws IOException the first failure of the sink; no message is started after it, though messages
+	 *         already being written by other workers are finished.
+	 */
+	public void render(int[] receiverOf, Roster roster, NotificationSink sink, int parallelism) throws IOException {
+		if (receiverOf.length == 0) {
+			return;
+		}
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			pool.invoke(new RenderTask(receiverOf, roster, sink, new AtomicBoolean(), 0, receiverOf.length));
+		}
+		catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+
+	public void render(int[] receiverOf, Roster roster, NotificationSink sink) throws IOException {
+		this.render(receiverOf, roster, sink, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Renders one message into the buffer, which is cleared first and grown when needed.
+	 * @return the buffer holding the message, ready to be read: possibly a new, larger one.
+	 */
+	ByteBuffer render(int giverId, int receiverId, Roster roster, ByteBuffer buffer) {
+		ByteStringDictionary names = roster.getFamilyMemberNames();
+		ByteStringDictionary familyUnitNames = roster.getFamilyUnitNames();
+		int[] familyUnitOf = roster.getFamilyUnitOf();
+		int giverFamilyUnitId = familyUnitOf[giverId];
+		int receiverFamilyUnitId = familyUnitOf[receiverId];
+		int length = this.literalLength;
+		for (int field : this.fields) {
+			switch (field) {
+			case GIVER:
+				length += names.length(giverId);
+				break;
+			case RECEIVER:
+				length += names.length(receiverId);
+				break;
+			case GIVER_FAMILY:
+				length += familyUnitNames.length(giverFamilyUnitId);
+				break;
+			case RECEIVER_FAMILY:
+				length += familyUnitNames.length(receiverFamilyUnitId);
+				break;
+			default:
+				length += MAX_DECIMAL_LENGTH;
+				break;
+			}
+		}
+		ByteBuffer target = buffer.capacity() >= length ? buffer : ByteBuffer.allocate(Math.max(length, buffer.capacity() * 2));
+		target.clear();
+		target.put(this.literals[0]);
+		for (int f = 0; f < this.fields.length; f++) {
+			switch (this.fields[f]) {
+			case GIVER:
+				target.put(names.bytes(), names.offset(giverId), names.length(giverId));
+				break;
+			case RECEIVER:
+				target.put(names.bytes(), names.offset(receiverId), names.length(receiverId));
+				break;
+			case GIVER_FAMILY:
+				target.put(familyUnitNames.bytes(), familyUnitNames.offset(giverFamilyUnitId),
+						familyUnitNames.length(giverFamilyUnitId));
+				break;
+			case RECEIVER_FAMILY:
+				target.put(familyUnitNames.bytes(), familyUnitNames.offset(receiverFamilyUnitId),
+						familyUnitNames.length(receiverFamilyUnitId));
+				break;
+			case GIVER_ID:
+				putDecimal(target, giverId);
+				break;
+			default:
+				putDecimal(target, receiverId);
+				break;
+			}
+			target.put(this.literals[f + 1]);
+		}
+		target.flip();
+		return target;
+	}
+
+	// Ids are never negative.
+	private static void putDecimal(ByteBuffer target, int value) {
+		int start = target.position();
+		int digitCount = 1;
+		for (int rest = value / 10; rest > 0; rest /= 10) {
+			digitCount++;
+		}
+		int remaining = value;
+		for (int i = digitCount - 1; i >= 0; i--) {
+			target.put(start + i, (byte) ('0' + remaining % 10));
+			remaining /= 10;
+		}
+		target.position(start + digitCount);
+	}
+
+	private final class RenderTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int[] receiverOf;
+		private final Roster roster;
+		private final NotificationSink sink;
+		// Shared by all tasks of one render call; set by the first failure of the sink.
+		private final AtomicBoolean failed;
+		private final int from;
+		private final int to;
+
+		RenderTask(int[] receiverOf, Roster roster, NotificationSink sink, AtomicBoolean failed, int from, int to) {
+			this.receiverOf = receiverOf;
+			this.roster = roster;
+			this.sink = sink;
+			this.failed = failed;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.to - this.from > CHUNK_SIZE) {
+				int middle = (this.from + this.to) >>> 1;
+				invokeAll(new RenderTask(this.receiverOf, this.roster, this.sink, this.failed, this.from, middle),
+						new RenderTask(this.receiverOf, this.roster, this.sink, this.failed, middle, this.to));
+				return;
+			}
+			ByteBuffer buffer = ByteBuffer.allocate(256);
+			try {
+				for (int giverId = this.from; giverId < this.to && !this.failed.get(); giverId++) {
+					buffer = GiftExchangeNotificationRenderer.this.render(giverId, this.receiverOf[giverId], this.roster, buffer);
+					this.sink.accept(giverId, buffer);
+				}
+			}
+			catch (IOException e) {
+				this.failed.set(true);
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,128 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.dierauf.rachio.familygiftexchange.model.GiftExchangeException.Reason;
+
+/**
+ * Randomized-restart portfolio for tight inputs, where one family unit is close to half of the pool or
+ * exclusions leave few allowed receivers, and a single greedy draw runs into long swap chains or fails.
+ * Several {@link GiftExchangeEngine} attempts race on their own threads, each with its own seed and family
+ * unit drawing order: the first attempt draws the largest family units first, which keeps the tightest
+ * family unit clear of swaps; the others draw in random order. Failed attempts are restarted with a fresh
+ * seed until maxAttempts have been started. The first valid draw wins and cancels the rest.
+ * With a seed the attempts are reproducible, but which one wins depends on timing.
+ */
+public final class GiftExchangePortfolio {
+
+	static final String ERROR_MESSAGE_INVALID_PORTFOLIO = "Portfolio needs at least one thread and as many attempts: ";
+	static final String ERROR_MESSAGE_NO_ATTEMPT_SUCCEEDED = "No portfolio attempt succeeded. Attempts: ";
+	static final int DEFAULT_ATTEMPTS_PER_THREAD = 4;
+
+	private final int parallelism;
+	private final int maxAttempts;
+
+	private GiftExchangePortfolio(int parallelism, int maxAttempts) {
+		if (parallelism < 1 || maxAttempts < parallelism) {
+			throw new IllegalArgumentException(ERROR_MESSAGE_INVALID_PORTFOLIO + parallelism + ", " + maxAttempts + ".");
+		}
+		this.parallelism = parallelism;
+		this.maxAttempts = maxAttempts;
+	}
+
+	/**
+	 * @param parallelism concurrent attempts, e.g. the number of cores.
+	 */
+	public static GiftExchangePortfolio of(int parallelism) {
+		return new GiftExchangePortfolio(parallelism, parallelism * DEFAULT_ATTEMPTS_PER_THREAD);
+	}
+
+	/**
+	 * @param parallelism concurrent attempts, e.g. the number of cores.
+	 * @param maxAttempts attempts started in total, including restarts after failed attempts.
+	 */
+	public static GiftExchangePortfolio of(int parallelism, int maxAttempts) {
+		return new GiftExchangePortfolio(parallelism, maxAttempts);
+	}
+
+	/**
+	 * @param familyUnitOf already validated.
+	 * @param exclusions optional.
+	 * @return receiverOf of the first attempt to finish.
+	 * @throws Exception the failure of the first attempt, if every attempt failed.
+	 */
+	int[] generate(int[] familyUnitOf, int familyUnitCount, GiftExclusions exclusions, SplittableRandom random)
+			throws Exception {
+		long[] seeds = new long[this.maxAttempts];
+		for (int attempt = 0; attempt < this.maxAttempts; attempt++) {
+			seeds[attempt] = random.nextLong();
+		}
+		int[] familyUnitSizes = new int[familyUnitCount];
+		for (int familyUnitId : familyUnitOf) {
+			familyUnitSizes[familyUnitId]++;
+		}
+		AtomicBoolean cancelled = new AtomicBoolean();
+		AtomicInteger nextAttempt = new AtomicInteger();
+		AtomicReference<int[]> result = new AtomicReference<>();
+		AtomicReference<Exception> firstFailure = new AtomicReference<>();
+		AtomicInteger winningAttempt = new AtomicInteger(-1);
+		Runnable worker = () -> {
+			int attempt;
+			while (!cancelled.get() && (attempt = nextAttempt.getAndIncrement()) < this.maxAttempts) {
+				SplittableRandom attemptRandom = new SplittableRandom(seeds[attempt]);
+				GiftExchangeEngine engine = new GiftExchangeEngine(familyUnitOf, familyUnitCount, exclusions, attemptRandom);
+				engine.setFamilyUnitOrder(attempt == 0 ? FamilyUnitOrder.bySizeDescending(familyUnitSizes, attemptRandom)
+						: FamilyUnitOrder.shuffled(familyUnitCount, attemptRandom));
+				engine.setCancelled(cancelled::get);
+				try {
+					int[] receiverOf = engine.generate();
+					if (result.compareAndSet(null, receiverOf)) {
+						winningAttempt.set(attempt);
+						cancelled.set(true);
+					}
+				}
+				catch (GiftExchangeException e) {
+					if (e.getReason() == Reason.CANCELLED) {
+						return;
+					}
+					firstFailure.compareAndSet(null, e);
+				}
+				catch (Exception e) {
+					firstFailure.compareAndSet(null, e);
+				}
+			}
+		};
+
+		ExecutorService executor = Executors.newFixedThreadPool(this.parallelism);
+		try {
+			for (int thread = 0; thread < this.parallelism; thread++) {
+				executor.execute(worker);
+			}
+			executor.shutdown();
+			// Attempts stop on their own: on success, on failure, or once cancelled.
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		}
+		catch (InterruptedException e) {
+			cancelled.set(true);
+			Thread.currentThread().interrupt();
+			throw e;
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		if (result.get() == null) {
+			Exception failure = firstFailure.get();
+			throw failure != null ? failure : new Exception(ERROR_MESSAGE_NO_ATTEMPT_SUCCEEDED + this.maxAttempts + ".");
+		}
+		GiftExchangeGenerator.LOGGER.info("Portfolio draw: attempt {} of {} won.", winningAttempt.get() + 1,
+				Math.min(nextAttempt.get(), this.maxAttempts));
+		return result.get();
+	}
+
+}
@@ -0,0 +1,301 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Draw request of the {@link GiftExchangeServer}: {"familyUnits": [[1, 2], [3, 4], ...], "seed": 42}. The seed
+ * is optional; other keys are ignored. Family units are normalized on parsing (members and family units
+ * sorted, empty family units dropped), so equal requests map onto the same draw and cache entry whatever
+ * their order.
+ */
+final class GiftExchangeRequest {
+
+	static final String ERROR_MESSAGE_INVALID_REQUEST = "Invalid draw request: ";
+
+	private final int[] familyMemberIds; // Normalized: family units back to back.
+	private final int[] familyUnitOf;
+	private final Long seed; // Optional.
+	private final int hashCode;
+
+	private GiftExchangeRequest(int[] familyMemberIds, int[] familyUnitOf, Long seed) {
+		this.familyMemberIds = familyMemberIds;
+		this.familyUnitOf = familyUnitOf;
+		this.seed = seed;
+		this.hashCode = 31 * (31 * Arrays.hashCode(familyMemberIds) + Arrays.hashCode(familyUnitOf)) + Long.hashCode(seed == null ? 0 : seed);
+	}
+
+	static GiftExchangeRequest parse(String json) throws Exception {
+		Parser parser = new Parser(json);
+		List<int[]> familyUnits = null;
+		Long seed = null;
+		parser.expect('{');
+		if (!parser.consume('}')) {
+			do {
+				String key = parser.readString();
+				parser.expect(':');
+				if ("familyUnits".equals(key)) {
+					familyUnits = parser.readFamilyUnits();
+				}
+				else if ("seed".equals(key) && !parser.consumeLiteral("null")) {
+					seed = parser.readLong();
+				}
+				else {
+					parser.skipValue();
+				}
+			}
+			while (parser.consume(','));
+			parser.expect('}');
+		}
+		parser.expectEnd();
+		if (familyUnits == null) {
+			throw new Exception(ERROR_MESSAGE_INVALID_REQUEST + "missing familyUnits.");
+		}
+		return normalize(familyUnits, seed);
+	}
+
+	private static GiftExchangeRequest normalize(List<int[]> familyUnits, Long seed) throws Exception {
+		List<int[]> nonEmptyFamilyUnits = new ArrayList<>(familyUnits.size());
+		int familyMemberCount = 0;
+		for (int[] familyUnit : familyUnits) {
+			if (familyUnit.length > 0) {
+				Arrays.sort(familyUnit);
+				nonEmptyFamilyUnits.add(familyUnit);
+				familyMemberCount += familyUnit.length;
+			}
+		}
+		// Family units are disjoint once checked below, so their smallest members order them.
+		nonEmptyFamilyUnits.sort((a, b) -> Integer.compare(a[0], b[0]));
+		int[] familyMemberIds = new int[familyMemberCount];
+		int[] familyUnitOf = new int[familyMemberCount];
+		int denseId = 0;
+		for (int familyUnitId = 0; familyUnitId < nonEmptyFamilyUnits.size(); familyUnitId++) {
+			for (int familyMemberId : nonEmptyFamilyUnits.get(familyUnitId)) {
+				familyMemberIds[denseId] = familyMemberId;
+				familyUnitOf[denseId++] = familyUnitId;
+			}
+		}
+		int[] sortedFamilyMemberIds = familyMemberIds.clone();
+		Arrays.sort(sortedFamilyMemberIds);
+		for (int i = 1; i < sortedFamilyMemberIds.length; i++) {
+			if (sortedFamilyMemberIds[i] == sortedFamilyMemberIds[i - 1]) {
+				throw new Exception(GiftExchangeGenerator.ERROR_MESSAGE_FAMILY_MEMBER_ID_FOUND_IN_MULTIPLE_FAMILY_UNITS
+						+ sortedFamilyMemberIds[i] + ".");
+			}
+		}
+		return new GiftExchangeRequest(familyMemberIds, familyUnitOf, seed);
+	}
+
+	int[] getFamilyMemberIds() {
+		return this.familyMemberIds;
+	}
+
+	int[] getFamilyUnitOf() {
+		return this.familyUnitOf;
+	}
+
+	Long getSeed() {
+		return this.seed;
+	}
+
+	// Equal requests give equal draws when seeded, so requests double as cache keys.
+	@Override
+	public boolean equals(Object object) {
+		if (this == object) {
+			return true;
+		}
+		if (!(object instanceof GiftExchangeRequest)) {
+			return false;
+		}
+		GiftExchangeRequest other = (GiftExchangeRequest) object;
+		return this.hashCode == other.hashCode && (this.seed == null ? other.seed == null : this.seed.equals(other.seed))
+				&& Arrays.equals(this.familyUnitOf, other.familyUnitOf) && Arrays.equals(this.familyMemberIds, other.familyMemberIds);
+	}
+
+	@Override
+	public int hashCode() {
+		return this.hashCode;
+	}
+
+	// Just enough JSON for the request; strings are only needed for keys.
+	private static final class Parser {
+
+		private final String json;
+		private int position;
+
+		Parser(String json) {
+			this.json = json;
+		}
+
+		List<int[]> readFamilyUnits() throws Exception {
+			List<int[]> familyUnits = new ArrayList<>();
+			this.expect('[');
+			if (!this.consume(']')) {
+				do {
+					familyUnits.add(this.readIntArray());
+				}
+				while (this.consume(','));
+				this.expect(']');
+			}
+			return familyUnits;
+		}
+
+		int[] readIntArray() throws Exception {
+			int[] values = new int[8];
+			int count = 0;
+			this.expect('[');
+			if (!this.consume(']')) {
+				do {
+					long value = this.readLong();
+					if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+						throw this.error("family member ID out of range");
+					}
+					if (count == values.length) {
+						values = Arrays.copyOf(values, count * 2);
+					}
+					values[count++] = (int) value;
+				}
+				while (this.consume(','));
+				this.expect(']');
+			}
+			return Arrays.copyOf(values, count);
+		}
+
+		long readLong() throws Exception {
+			this.skipWhitespace();
+			int start = this.position;
+			if (this.position < this.json.length() && this.json.charAt(this.position) == '-') {
+				this.position++;
+			}
+			while (this.position < this.json.length() && Character.isDigit(this.json.charAt(this.position))) {
+				this.position++;
+			}
+			try {
+				return Long.parseLong(this.json.substring(start, this.position));
+			}
+			catch (NumberFormatException e) {
+				throw this.error("integer expected");
+			}
+		}
+
+		String readString() throws Exception {
+			this.expect('"');
+			StringBuilder sb = new StringBuilder();
+			while (this.position < this.json.length()) {
+				char c = this.json.charAt(this.position++);
+				if (c == '"') {
+					return sb.toString();
+				}
+				if (c == '\\') {
+					if (this.position >= this.json.length()) {
+						break;
+					}
+					c = this.json.charAt(this.position++);
+					switch (c) {
+					case 'b': sb.append('\b'); break;
+					case 'f': sb.append('\f'); break;
+					case 'n': sb.append('\n'); break;
+					case 'r': sb.append('\r'); break;
+					case 't': sb.append('\t'); break;
+					case 'u':
+						if (this.position + 4 > this.json.length()) {
+							throw this.error("invalid escape");
+						}
+						try {
+							sb.append((char) Integer.parseInt(this.json.substring(this.position, this.position + 4), 16));
+						}
+						catch (NumberFormatException e) {
+							throw this.error("invalid escape");
+						}
+						this.position += 4;
+						break;
+					default: sb.append(c);
+					}
+				}
+				else {
+					sb.append(c);
+				}
+			}
+			throw this.error("unterminated string");
+		}
+
+		void skipValue() throws Exception {
+			this.skipWhitespace();
+			if (this.position >= this.json.length()) {
+				throw this.error("value expected");
+			}
+			char c = this.json.charAt(this.position);
+			if (c == '"') {
+				this.readString();
+			}
+			else if (c == '[' || c == '{') {
+				char close = c == '[' ? ']' : '}';
+				this.position++;
+				if (!this.consume(close)) {
+					do {
+						if (close == '}') {
+							this.readString();
+							this.expect(':');
+						}
+						this.skipValue();
+					}
+					while (this.consume(','));
+					this.expect(close);
+				}
+			}
+			else if (!this.consumeLiteral("true") && !this.consumeLiteral("false") && !this.consumeLiteral("null")) {
+				int start = this.position;
+				while (this.position < this.json.length() && "+-.eE0123456789".indexOf(this.json.charAt(this.position)) >= 0) {
+					this.position++;
+				}
+				if (start == this.position) {
+					throw this.error("value expected");
+				}
+			}
+		}
+
+		boolean consumeLiteral(String literal) {
+			this.skipWhitespace();
+			if (this.json.startsWith(literal, this.position)) {
+				this.position += literal.length();
+				return true;
+			}
+			return false;
+		}
+
+		boolean consume(char c) {
+			this.skipWhitespace();
+			if (this.position < this.json.length() && this.json.charAt(this.position) == c) {
+				this.position++;
+				return true;
+			}
+			return false;
+		}
+
+		void expect(char c) throws Exception {
+			if (!this.consume(c)) {
+				throw this.error("'" + c + "' expected");
+			}
+		}
+
+		void expectEnd() throws Exception {
+			this.skipWhitespace();
+			if (this.position != this.json.length()) {
+				throw this.error("end of request expected");
+			}
+		}
+
+		private void skipWhitespace() {
+			while (this.position < this.json.length() && Character.isWhitespace(this.json.charAt(this.position))) {
+				this.position++;
+			}
+		}
+
+		private Exception error(String reason) {
+			return new Exception(ERROR_MESSAGE_INVALID_REQUEST + reason + " at position " + this.position + ".");
+		}
+
+	}
+
+}
@@ -0,0 +1,50 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import java.util.Map;
+
+/**
+ * Outcome of one gift exchange in a batch: either the giver/receiver pairs, or the exception that
+ * prevented them. A failure never fails the rest of the batch.
+ */
+public final class GiftExchangeResult {
+
+	private final Map<Integer, Integer> giverReceiverMap;
+	private final Exception exception;
+
+	private GiftExchangeResult(Map<Integer, Integer> giverReceiverMap, Exception exception) {
+		this.giverReceiverMap = giverReceiverMap;
+		this.exception = exception;
+	}
+
+	static GiftExchangeResult success(Map<Integer, Integer> giverReceiverMap) {
+		return new GiftExchangeResult(giverReceiverMap, null);
+	}
+
+	static GiftExchangeResult failure(Exception exception) {
+		return new GiftExchangeResult(null, exception);
+	}
+
+	public boolean isSuccess() {
+		return this.exception == null;
+	}
+
+	/**
+	 * @return the giver/receiver pairs, or null if this exchange failed.
+	 */
+	public Map<Integer, Integer> getGiverReceiverMap() {
+		return this.giverReceiverMap;
+	}
+
+	/**
+	 * @return the reason this exchange failed, or null if it succeeded.
+	 */
+	public Exception getException() {
+		return this.exception;
+	}
+
+	@Override
+	public String toString() {
+		return this.isSuccess() ? "Success: " + this.giverReceiverMap : "Failure: " + this.exception.getMessage();
+	}
+
+}
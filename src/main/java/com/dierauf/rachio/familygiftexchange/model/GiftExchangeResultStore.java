@@ -0,0 +1,156 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent, memory-mapped draw result, for "who does X give to" and "who gives to X" lookups at any rate:
+ * each is one offset computation and one int read, and opening only reads the header, so the result is
+ * never loaded onto the heap and is available right after a restart.
+ * Layout (big-endian int32): "GXR1", familyMemberCount, CRC32 of the rest, 0, then receiverOf and
+ * giverOf, indexed by family member id (0..familyMemberCount-1).
+ */
+public final class GiftExchangeResultStore {
+
+	static final int MAGIC = 0x47585231; // "GXR1"
+	static final int HEADER_SIZE = 16;
+	static final String FILE_EXTENSION = ".gxr";
+	static final int UNKNOWN = -1;
+	static final String ERROR_MESSAGE_INVALID_RESULT_STORE = "Invalid result store: ";
+	static final String ERROR_MESSAGE_CHECKSUM_MISMATCH = "Result store checksum mismatch: ";
+
+	private static final int MAX_FAMILY_MEMBER_COUNT = (Integer.MAX_VALUE - HEADER_SIZE) / (2 * Integer.BYTES);
+
+	private final MappedByteBuffer buffer;
+	private final int familyMemberCount;
+	private final Path path;
+
+	private GiftExchangeResultStore(MappedByteBuffer buffer, int familyMemberCount, Path path) {
+		this.buffer = buffer;
+		this.familyMemberCount = familyMemberCount;
+		this.path = path;
+	}
+
+	/**
+	 * Maps a store read-only. Only the header is read; see {@link #verify()} for the checksum.
+	 */
+	public static GiftExchangeResultStore open(Path path) throws Exception {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (channel.size() < HEADER_SIZE) {
+				throw new Exception(ERROR_MESSAGE_INVALID_RESULT_STORE + path);
+			}
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			int familyMemberCount = buffer.getInt(4);
+			if (buffer.getInt(0) != MAGIC || familyMemberCount < 0
+					|| channel.size() != HEADER_SIZE + 2L * familyMemberCount * Integer.BYTES) {
+				throw new Exception(ERROR_MESSAGE_INVALID_RESULT_STORE + path);
+			}
+			return new GiftExchangeResultStore(buffer, familyMemberCount, path);
+		}
+	}
+
+	/**
+	 * Writes a store next to the path and then moves it in place, so readers never see a partial store.
+	 * On Windows the move fails while the store at path is open in any process, since a mapping is only
+	 * released by garbage collection; write each draw to a new (e.g. dated) file name there instead.
+	 * @param receiverOf receiver id of each giver id; must be a permutation of 0..n-1.
+	 */
+	public static void write(Path path, int[] receiverOf) throws Exception {
+		int familyMemberCount = receiverOf.length;
+		if (familyMemberCount > MAX_FAMILY_MEMBER_COUNT) {
+			throw new Exception(ERROR_MESSAGE_INVALID_RESULT_STORE + "too many family members: " + familyMemberCount + ".");
+		}
+		int[] giverOf = new int[familyMemberCount];
+		Arrays.fill(giverOf, UNKNOWN);
+		for (int giverId = 0; giverId < familyMemberCount; giverId++) {
+			int receiverId = receiverOf[giverId];
+			if (receiverId < 0 || receiverId >= familyMemberCount) {
+				throw new Exception(ERROR_MESSAGE_INVALID_RESULT_STORE + "receiverId out of range: " + receiverId + ".");
+			}
+			if (giverOf[receiverId] != UNKNOWN) {
+				throw new Exception(GiftExchangeGenerator.ERROR_MESSAGE_DUPLICATE_RECEIVER_ID_FOUND + receiverId + ".");
+			}
+			giverOf[receiverId] = giverId;
+		}
+		Path temporaryPath = path.resolveSibling(path.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			CRC32 crc = new CRC32();
+			ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+			channel.position(HEADER_SIZE);
+			writeInts(channel, buffer, crc, receiverOf);
+			writeInts(channel, buffer, crc, giverOf);
+			buffer.putInt(MAGIC).putInt(familyMemberCount).putInt((int) crc.getValue()).putInt(0);
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer, buffer.position());
+			}
+			channel.force(false);
+		}
+		Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static void writeInts(FileChannel channel, ByteBuffer buffer, CRC32 crc, int[] values) throws Exception {
+		for (int value : values) {
+			if (!buffer.hasRemaining()) {
+				writeFully(channel, buffer, crc);
+			}
+			buffer.putInt(value);
+		}
+		writeFully(channel, buffer, crc);
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer, CRC32 crc) throws Exception {
+		buffer.flip();
+		crc.update(buffer.duplicate());
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Checks the stored result against its checksum. Reads the whole file, so call it once, e.g. after a copy.
+	 */
+	public void verify() throws Exception {
+		CRC32 crc = new CRC32();
+		ByteBuffer body = this.buffer.duplicate();
+		body.position(HEADER_SIZE);
+		crc.update(body);
+		if ((int) crc.getValue() != this.buffer.getInt(8)) {
+			throw new Exception(ERROR_MESSAGE_CHECKSUM_MISMATCH + this.path);
+		}
+	}
+
+	/**
+	 * @return the receiver of the giver, or -1 for an unknown giver id.
+	 */
+	public int getReceiverId(int giverId) {
+		if (giverId < 0 || giverId >= this.familyMemberCount) {
+			return UNKNOWN;
+		}
+		return this.buffer.getInt(HEADER_SIZE + giverId * Integer.BYTES);
+	}
+
+	/**
+	 * @return the giver of the receiver, or -1 for an unknown receiver id.
+	 */
+	public int getGiverId(int receiverId) {
+		if (receiverId < 0 || receiverId >= this.familyMemberCount) {
+			return UNKNOWN;
+		}
+		return this.buffer.getInt(HEADER_SIZE + (this.familyMemberCount + receiverId) * Integer.BYTES);
+	}
+
+	public int getFamilyMemberCount() {
+		return this.familyMemberCount;
+	}
+
+}
@@ -0,0 +1,95 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import java.util.SplittableRandom;
+
+/**
+ * Markov chain over valid assignments, used to turn a (biased) greedy draw into a uniform one. Each step
+ * proposes either swapping the receivers of two random givers or rotating the receivers of three, and keeps
+ * the proposal only if every new pair is allowed. Each proposal is as likely as its reverse, so the chain
+ * converges to the uniform distribution over valid assignments; the greedy draw is only the starting point.
+ * Rotations are needed besides swaps: e.g. the two valid assignments of three singles are not one swap apart.
+ */
+final class GiftExchangeSampler {
+
+	static final long MINIMUM_MIXING_STEPS = 1024;
+	static final int MIXING_STEPS_FACTOR = 4;
+
+	private final int[] familyUnitOf;
+	private final GiftExclusions exclusions; // Optional.
+	private final SplittableRandom random;
+	private long acceptedStepCount;
+
+	GiftExchangeSampler(int[] familyUnitOf, GiftExclusions exclusions, SplittableRandom random) {
+		this.familyUnitOf = familyUnitOf;
+		this.exclusions = exclusions;
+		this.random = random;
+	}
+
+	// A few multiples of n log n steps, in line with the mixing time of random transpositions.
+	static long defaultMixingSteps(int familyMemberCount) {
+		int log2 = 32 - Integer.numberOfLeadingZeros(familyMemberCount);
+		return Math.max(MINIMUM_MIXING_STEPS, (long) MIXING_STEPS_FACTOR * familyMemberCount * log2);
+	}
+
+	/**
+	 * Mixes a valid assignment in place.
+	 * @param receiverOf valid assignment, indexed by giver id.
+	 * @param mixingSteps number of proposals.
+	 * @return receiverOf.
+	 */
+	int[] mix(int[] receiverOf, long mixingSteps) {
+		int familyMemberCount = receiverOf.length;
+		for (long step = 0; step < mixingSteps; step++) {
+			int a = this.random.nextInt(familyMemberCount);
+			int b = this.random.nextInt(familyMemberCount);
+			if (a == b) {
+				continue;
+			}
+			if (this.random.nextBoolean()) {
+				this.swap(receiverOf, a, b);
+			}
+			else {
+				int c = this.random.nextInt(familyMemberCount);
+				if (c != a && c != b) {
+					this.rotate(receiverOf, a, b, c);
+				}
+			}
+		}
+		return receiverOf;
+	}
+
+	long getAcceptedStepCount() {
+		return this.acceptedStepCount;
+	}
+
+	// a takes b's receiver and b takes a's.
+	private void swap(int[] receiverOf, int a, int b) {
+		int receiverOfA = receiverOf[a];
+		int receiverOfB = receiverOf[b];
+		if (this.isAllowed(a, receiverOfB) && this.isAllowed(b, receiverOfA)) {
+			receiverOf[a] = receiverOfB;
+			receiverOf[b] = receiverOfA;
+			this.acceptedStepCount++;
+		}
+	}
+
+	// a takes b's receiver, b takes c's and c takes a's. The reverse is the rotation (a, c, b).
+	private void rotate(int[] receiverOf, int a, int b, int c) {
+		int receiverOfA = receiverOf[a];
+		int receiverOfB = receiverOf[b];
+		int receiverOfC = receiverOf[c];
+		if (this.isAllowed(a, receiverOfB) && this.isAllowed(b, receiverOfC) && this.isAllowed(c, receiverOfA)) {
+			receiverOf[a] = receiverOfB;
+			receiverOf[b] = receiverOfC;
+			receiverOf[c] = receiverOfA;
+			this.acceptedStepCount++;
+		}
+	}
+
+	// Different family units also rules out giving to oneself.
+	private boolean isAllowed(int giverId, int receiverId) {
+		return this.familyUnitOf[giverId] != this.familyUnitOf[receiverId]
+				&& (this.exclusions == null || !this.exclusions.isExcluded(giverId, receiverId));
+	}
+
+}
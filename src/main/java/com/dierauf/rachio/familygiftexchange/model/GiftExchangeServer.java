@@ -0,0 +1,217 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Embedded HTTP endpoint for draws, on the JDK's built-in HttpServer, so callers skip JVM startup per draw.
+ * POST {@value #DRAW_PATH} with a {@link GiftExchangeRequest} body returns {"pairs": [[giver, receiver], ...]}.
+ * Seeded requests are idempotent, and their responses are kept in an LRU cache bounded by total bytes.
+ * Requests run on virtual threads where the JDK has them (21+), otherwise on a cached thread pool.
+ * Run the JVM with -Dsun.net.httpserver.nodelay=true: headers and body go out in separate writes, and with
+ * Nagle on each response waits for a delayed ACK (~40 ms). The property is read once, when the JDK's
+ * server configuration loads, so it cannot be set from here.
+ */
+public final class GiftExchangeServer implements AutoCloseable {
+
+	static final String DRAW_PATH = "/draw";
+	static final int DEFAULT_PORT = 8080;
+	static final long DEFAULT_CACHE_SIZE = 1 << 26;
+	static final int MAX_REQUEST_SIZE = 1 << 26;
+	static final String ERROR_MESSAGE_REQUEST_TOO_LARGE = "Request too large. Maximum size: ";
+	private static final int HTTP_OK = 200;
+	private static final int HTTP_BAD_REQUEST = 400;
+	private static final int HTTP_METHOD_NOT_ALLOWED = 405;
+	private static final int HTTP_PAYLOAD_TOO_LARGE = 413;
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+	// Access order, so the eldest entry is the least recently used. Guarded by itself, with cacheBytes.
+	private final LinkedHashMap<GiftExchangeRequest, byte[]> cache = new LinkedHashMap<>(16, 0.75f, true);
+	private final long cacheSize;
+	private long cacheBytes;
+	private final AtomicLong cacheHitCount = new AtomicLong();
+
+	private GiftExchangeServer(HttpServer server, ExecutorService executor, long cacheSize) {
+		this.server = server;
+		this.executor = executor;
+		this.cacheSize = cacheSize;
+	}
+
+	public static GiftExchangeServer start(int port) throws IOException {
+		return start(new InetSocketAddress(port), DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * @param address port 0 picks a free port, see {@link #getPort()}.
+	 * @param cacheSize maximum bytes of cached requests and responses, see {@link #cacheWeight}; 0 disables the cache.
+	 */
+	public static GiftExchangeServer start(InetSocketAddress address, long cacheSize) throws IOException {
+		HttpServer server = HttpServer.create(address, 0);
+		ExecutorService executor = newRequestExecutor();
+		GiftExchangeServer giftExchangeServer = new GiftExchangeServer(server, executor, cacheSize);
+		server.createContext(DRAW_PATH, giftExchangeServer::handle);
+		server.setExecutor(executor);
+		server.start();
+		GiftExchangeGenerator.LOGGER.info("Gift exchange server listening on port {}.", giftExchangeServer.getPort());
+		return giftExchangeServer;
+	}
+
+	// Virtual threads through reflection, as the code targets Java 8.
+	static ExecutorService newRequestExecutor() {
+		try {
+			Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) method.invoke(null);
+		}
+		catch (ReflectiveOperationException e) {
+			return Executors.newCachedThreadPool();
+		}
+	}
+
+	public int getPort() {
+		return this.server.getAddress().getPort();
+	}
+
+	long getCacheHitCount() {
+		return this.cacheHitCount.get();
+	}
+
+	@Override
+	public void close() {
+		this.server.stop(0);
+		this.executor.shutdown();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			if (!"POST".equals(exchange.getRequestMethod())) {
+				this.send(exchange, HTTP_METHOD_NOT_ALLOWED, this.error("Use POST."));
+				return;
+			}
+			byte[] body = this.readRequestBody(exchange.getRequestBody());
+			if (body == null) {
+				this.send(exchange, HTTP_PAYLOAD_TOO_LARGE, this.error(ERROR_MESSAGE_REQUEST_TOO_LARGE + MAX_REQUEST_SIZE + " bytes."));
+				return;
+			}
+			byte[] response;
+			try {
+				response = this.draw(GiftExchangeRequest.parse(new String(body, StandardCharsets.UTF_8)));
+			}
+			catch (Exception e) {
+				this.send(exchange, HTTP_BAD_REQUEST, this.error(e.getMessage()));
+				return;
+			}
+			this.send(exchange, HTTP_OK, response);
+		}
+		finally {
+			exchange.close();
+		}
+	}
+
+	private byte[] draw(GiftExchangeRequest request) throws Exception {
+		if (request.getSeed() == null) {
+			return this.createResponse(request, RandomSource.threadLocal());
+		}
+		byte[] response;
+		synchronized (this.cache) {
+			response = this.cache.get(request);
+		}
+		if (response != null) {
+			this.cacheHitCount.incrementAndGet();
+			return response;
+		}
+		// Drawn outside the lock; concurrent misses on the same request compute the same response.
+		response = this.createResponse(request, RandomSource.seeded(request.getSeed()));
+		this.cache(request, response);
+		return response;
+	}
+
+	private void cache(GiftExchangeRequest request, byte[] response) {
+		long weight = cacheWeight(request, response);
+		if (weight > this.cacheSize) {
+			return;
+		}
+		synchronized (this.cache) {
+			byte[] previous = this.cache.put(request, response);
+			this.cacheBytes += weight - (previous != null ? cacheWeight(request, previous) : 0);
+			Iterator<Map.Entry<GiftExchangeRequest, byte[]>> eldest = this.cache.entrySet().iterator();
+			while (this.cacheBytes > this.cacheSize) {
+				Map.Entry<GiftExchangeRequest, byte[]> entry = eldest.next();
+				this.cacheBytes -= cacheWeight(entry.getKey(), entry.getValue());
+				eldest.remove();
+			}
+		}
+	}
+
+	// Approximate heap cost of a cache entry: the response, plus the key's two int arrays.
+	static long cacheWeight(GiftExchangeRequest request, byte[] response) {
+		return response.length + 2L * Integer.BYTES * request.getFamilyMemberIds().length;
+	}
+
+	private byte[] createResponse(GiftExchangeRequest request, RandomSource randomSource) throws Exception {
+		int[] familyMemberIds = request.getFamilyMemberIds();
+		int[] receiverOf = GiftExchangeGenerator.instance().generateGiftExchanges(request.getFamilyUnitOf(), randomSource);
+		StringBuilder sb = new StringBuilder(16 + familyMemberIds.length * 16).append("{\"pairs\":[");
+		for (int giverId = 0; giverId < receiverOf.length; giverId++) {
+			if (giverId > 0) {
+				sb.append(',');
+			}
+			sb.append('[').append(familyMemberIds[giverId]).append(',').append(familyMemberIds[receiverOf[giverId]]).append(']');
+		}
+		return sb.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private byte[] error(String message) {
+		StringBuilder sb = new StringBuilder("{\"error\":\"");
+		for (int i = 0; i < message.length(); i++) {
+			char c = message.charAt(i);
+			if (c == '"' || c == '\\') {
+				sb.append('\\').append(c);
+			}
+			else if (c < 0x20) {
+				sb.append(String.format("\\u%04x", (int) c));
+			}
+			else {
+				sb.append(c);
+			}
+		}
+		return sb.append("\"}").toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	// Returns null if the body exceeds MAX_REQUEST_SIZE.
+	private byte[] readRequestBody(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			if (out.size() + read > MAX_REQUEST_SIZE) {
+				return null;
+			}
+			out.write(buffer, 0, read);
+		}
+		return out.toByteArray();
+	}
+
+	private void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		exchange.sendResponseHeaders(status, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+}
@@ -0,0 +1,224 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Sharded draw for very large populations. Family units are partitioned into shards that are feasible
+ * on their own, each shard is drawn independently by a {@link GiftExchangeShardWorker} (a thread, or a
+ * separate JVM), and the shards are then joined by one cross-shard rotation. No worker ever holds more
+ * than its shard, and the coordinator only holds flat int arrays.
+ * Family units never span shards, so pairs across shards are limited to the rotation: the draw is valid,
+ * but far from uniform across shards.
+ */
+public final class GiftExchangeShardCoordinator {
+
+	static final String ERROR_MESSAGE_SHARD_FAILED = "Shard failed: ";
+	static final String ERROR_MESSAGE_INVALID_SHARD_COUNT = "Shard count must be greater than 0: ";
+
+	private final int shardCount;
+	private final boolean workerProcesses;
+
+	private GiftExchangeShardCoordinator(int shardCount, boolean workerProcesses) {
+		if (shardCount < 1) {
+			throw new IllegalArgumentException(ERROR_MESSAGE_INVALID_SHARD_COUNT + shardCount + ".");
+		}
+		this.shardCount = shardCount;
+		this.workerProcesses = workerProcesses;
+	}
+
+	/**
+	 * Solves the shards on a thread pool of this JVM.
+	 * @param shardCount upper bound; fewer shards are used when more would not all be feasible.
+	 */
+	public static GiftExchangeShardCoordinator threads(int shardCount) {
+		return new GiftExchangeShardCoordinator(shardCount, false);
+	}
+
+	/**
+	 * Solves each shard in its own worker JVM, started with this JVM's java binary and class path.
+	 * @param shardCount upper bound; fewer shards are used when more would not all be feasible.
+	 */
+	public static GiftExchangeShardCoordinator processes(int shardCount) {
+		return new GiftExchangeShardCoordinator(shardCount, true);
+	}
+
+	/**
+	 * @param familyUnitOf already validated.
+	 * @return receiverOf, indexed by giver id.
+	 */
+	int[] generate(int[] familyUnitOf, int familyUnitCount, SplittableRandom random) throws Exception {
+		int[] familyUnitSizes = new int[familyUnitCount];
+		for (int familyUnitId : familyUnitOf) {
+			familyUnitSizes[familyUnitId]++;
+		}
+		int[] shardOf = partition(familyUnitSizes, this.shardCount, random);
+		int shards = 0;
+		for (int shard : shardOf) {
+			shards = Math.max(shards, shard + 1);
+		}
+		// Local ids: family units and members are numbered per shard, in global order.
+		int[] localFamilyUnitIdOf = new int[familyUnitCount];
+		int[] localFamilyUnitCounts = new int[shards];
+		int[] localFamilyMemberCounts = new int[shards];
+		for (int f = 0; f < familyUnitCount; f++) {
+			localFamilyUnitIdOf[f] = localFamilyUnitCounts[shardOf[f]]++;
+			localFamilyMemberCounts[shardOf[f]] += familyUnitSizes[f];
+		}
+		int[][] memberIds = new int[shards][];
+		int[][] localFamilyUnitOf = new int[shards][];
+		long[] seeds = new long[shards];
+		for (int shard = 0; shard < shards; shard++) {
+			memberIds[shard] = new int[localFamilyMemberCounts[shard]];
+			localFamilyUnitOf[shard] = new int[localFamilyMemberCounts[shard]];
+			seeds[shard] = random.nextLong();
+		}
+		int[] next = new int[shards];
+		for (int memberId = 0; memberId < familyUnitOf.length; memberId++) {
+			int shard = shardOf[familyUnitOf[memberId]];
+			memberIds[shard][next[shard]] = memberId;
+			localFamilyUnitOf[shard][next[shard]++] = localFamilyUnitIdOf[familyUnitOf[memberId]];
+		}
+
+		int[][] localReceiverOf = this.workerProcesses ? solveInProcesses(localFamilyUnitOf, localFamilyUnitCounts, seeds)
+				: solveInThreads(localFamilyUnitOf, localFamilyUnitCounts, seeds);
+		int[] receiverOf = new int[familyUnitOf.length];
+		for (int shard = 0; shard < shards; shard++) {
+			for (int localId = 0; localId < memberIds[shard].length; localId++) {
+				receiverOf[memberIds[shard][localId]] = memberIds[shard][localReceiverOf[shard][localId]];
+			}
+		}
+		stitch(receiverOf, memberIds, random);
+		GiftExchangeGenerator.LOGGER.info("Sharded draw: {} family members in {} shards.", familyUnitOf.length, shards);
+		return receiverOf;
+	}
+
+	// Longest processing time first: family units, largest first (random order among equal sizes), each go to
+	// the least loaded shard. A shard is feasible with at least two family units, none larger than half of it.
+	// If a shard is not, one shard fewer is tried; a single shard is the whole, already validated, pool.
+	static int[] partition(int[] familyUnitSizes, int shardCount, SplittableRandom random) {
+		int familyUnitCount = familyUnitSizes.length;
+		int[] sortedFamilyUnitIds = FamilyUnitOrder.bySizeDescending(familyUnitSizes, random);
+
+		int[] shardOf = new int[familyUnitCount];
+		for (int shards = Math.min(shardCount, familyUnitCount / 2); shards > 1; shards--) {
+			long[] loads = new long[shards];
+			int[] largest = new int[shards];
+			int[] familyUnitCounts = new int[shards];
+			for (int f : sortedFamilyUnitIds) {
+				int leastLoadedShard = 0;
+				for (int shard = 1; shard < shards; shard++) {
+					if (loads[shard] < loads[leastLoadedShard]) {
+						leastLoadedShard = shard;
+					}
+				}
+				shardOf[f] = leastLoadedShard;
+				loads[leastLoadedShard] += familyUnitSizes[f];
+				largest[leastLoadedShard] = Math.max(largest[leastLoadedShard], familyUnitSizes[f]);
+				familyUnitCounts[leastLoadedShard]++;
+			}
+			boolean feasible = true;
+			for (int shard = 0; shard < shards && feasible; shard++) {
+				feasible = familyUnitCounts[shard] >= 2 && largest[shard] * 2L <= loads[shard];
+			}
+			if (feasible) {
+				return shardOf;
+			}
+		}
+		return new int[familyUnitCount];
+	}
+
+	// Each shard's draw is valid on its own. Rotating the receivers of one random giver per shard, each taking
+	// the next shard's, keeps every receiver exactly once and joins the shards; a receiver from another shard
+	// is always from another family unit.
+	static void stitch(int[] receiverOf, int[][] memberIds, SplittableRandom random) {
+		int shards = memberIds.length;
+		if (shards < 2) {
+			return;
+		}
+		int[] giverIds = new int[shards];
+		for (int shard = 0; shard < shards; shard++) {
+			giverIds[shard] = memberIds[shard][random.nextInt(memberIds[shard].length)];
+		}
+		int firstReceiverId = receiverOf[giverIds[0]];
+		for (int shard = 0; shard < shards - 1; shard++) {
+			receiverOf[giverIds[shard]] = receiverOf[giverIds[shard + 1]];
+		}
+		receiverOf[giverIds[shards - 1]] = firstReceiverId;
+	}
+
+	private static int[][] solveInThreads(int[][] localFamilyUnitOf, int[] localFamilyUnitCounts, long[] seeds)
+			throws Exception {
+		int shards = localFamilyUnitOf.length;
+		ExecutorService executor = Executors.newFixedThreadPool(shards);
+		try {
+			List<Future<int[]>> futures = new ArrayList<>(shards);
+			for (int shard = 0; shard < shards; shard++) {
+				int s = shard;
+				futures.add(executor.submit(
+						() -> GiftExchangeShardWorker.solve(localFamilyUnitOf[s], localFamilyUnitCounts[s], seeds[s])));
+			}
+			int[][] localReceiverOf = new int[shards][];
+			for (int shard = 0; shard < shards; shard++) {
+				try {
+					localReceiverOf[shard] = futures.get(shard).get();
+				}
+				catch (ExecutionException e) {
+					throw new Exception(ERROR_MESSAGE_SHARD_FAILED + e.getCause().getMessage(), e.getCause());
+				}
+			}
+			return localReceiverOf;
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	// All workers are started first, then fed in turn; each reads its whole request before drawing, so the
+	// shards are drawn concurrently.
+	private static int[][] solveInProcesses(int[][] localFamilyUnitOf, int[] localFamilyUnitCounts, long[] seeds)
+			throws Exception {
+		int shards = localFamilyUnitOf.length;
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		Process[] processes = new Process[shards];
+		try {
+			for (int shard = 0; shard < shards; shard++) {
+				processes[shard] = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+						GiftExchangeShardWorker.class.getName()).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+			}
+			for (int shard = 0; shard < shards; shard++) {
+				try (DataOutputStream out = new DataOutputStream(
+						new BufferedOutputStream(processes[shard].getOutputStream(), 1 << 16))) {
+					GiftExchangeShardWorker.writeRequest(out, localFamilyUnitOf[shard], localFamilyUnitCounts[shard], seeds[shard]);
+				}
+			}
+			int[][] localReceiverOf = new int[shards][];
+			for (int shard = 0; shard < shards; shard++) {
+				try (DataInputStream in = new DataInputStream(
+						new BufferedInputStream(processes[shard].getInputStream(), 1 << 16))) {
+					localReceiverOf[shard] = GiftExchangeShardWorker.readResponse(in, localFamilyUnitOf[shard].length);
+				}
+				processes[shard].waitFor();
+			}
+			return localReceiverOf;
+		}
+		finally {
+			for (Process process : processes) {
+				if (process != null) {
+					process.destroy();
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,89 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.SplittableRandom;
+
+/**
+ * Solves one shard of a {@link GiftExchangeShardCoordinator} draw, in a worker thread or in its own JVM.
+ * As a process, it reads one request from stdin and writes one response to stdout (big-endian):
+ * request: familyMemberCount, familyUnitCount, long seed, then familyUnitOf;
+ * response: 0 then receiverOf, or 1 then the error message (modified UTF-8).
+ */
+public final class GiftExchangeShardWorker {
+
+	static final int STATUS_OK = 0;
+	static final int STATUS_FAILED = 1;
+
+	private GiftExchangeShardWorker() {}
+
+	/**
+	 * Worker process entry point. Logging goes to stderr, so that stdout only carries the response.
+	 */
+	public static void main(String[] args) throws Exception {
+		PrintStream stdout = System.out;
+		System.setOut(System.err);
+		DataInputStream in = new DataInputStream(new BufferedInputStream(System.in, 1 << 16));
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stdout, 1 << 16));
+		int[] familyUnitOf = new int[in.readInt()];
+		int familyUnitCount = in.readInt();
+		long seed = in.readLong();
+		for (int memberId = 0; memberId < familyUnitOf.length; memberId++) {
+			familyUnitOf[memberId] = in.readInt();
+		}
+		try {
+			int[] receiverOf = solve(familyUnitOf, familyUnitCount, seed);
+			out.writeInt(STATUS_OK);
+			for (int receiverId : receiverOf) {
+				out.writeInt(receiverId);
+			}
+		}
+		catch (Exception e) {
+			out.writeInt(STATUS_FAILED);
+			out.writeUTF(String.valueOf(e.getMessage()));
+		}
+		out.flush();
+	}
+
+	/**
+	 * @return receiverOf of a valid draw of the shard, indexed by local member id.
+	 */
+	static int[] solve(int[] familyUnitOf, int familyUnitCount, long seed) throws Exception {
+		int[] receiverOf = new GiftExchangeEngine(familyUnitOf, familyUnitCount, new SplittableRandom(seed)).generate();
+		GiftExchangeGenerator.instance().validateGiverReceiverMap(receiverOf, familyUnitOf);
+		return receiverOf;
+	}
+
+	static void writeRequest(DataOutput out, int[] familyUnitOf, int familyUnitCount, long seed) throws IOException {
+		out.writeInt(familyUnitOf.length);
+		out.writeInt(familyUnitCount);
+		out.writeLong(seed);
+		for (int familyUnitId : familyUnitOf) {
+			out.writeInt(familyUnitId);
+		}
+	}
+
+	static int[] readResponse(DataInput in, int familyMemberCount) throws Exception {
+		try {
+			if (in.readInt() != STATUS_OK) {
+				throw new Exception(GiftExchangeShardCoordinator.ERROR_MESSAGE_SHARD_FAILED + in.readUTF());
+			}
+			int[] receiverOf = new int[familyMemberCount];
+			for (int memberId = 0; memberId < familyMemberCount; memberId++) {
+				receiverOf[memberId] = in.readInt();
+			}
+			return receiverOf;
+		}
+		catch (EOFException e) {
+			throw new Exception(GiftExchangeShardCoordinator.ERROR_MESSAGE_SHARD_FAILED + "worker exited early.", e);
+		}
+	}
+
+}
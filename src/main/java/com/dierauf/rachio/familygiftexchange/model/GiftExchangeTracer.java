@@ -0,0 +1,191 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Low-overhead record of the engine's decisions, to debug a bad draw without DEBUG logging. Every
+ * event is a fixed-size binary record in a preallocated ring buffer, on the heap or memory-mapped to
+ * a file; writing one is an atomic increment and a few absolute puts, with nothing formatted or
+ * allocated. {@link #decode(Path, Appendable)} renders a trace as text, offline.
+ * Layout (big-endian): "GXT1", record size, capacity, 0, then capacity records of: long type (top
+ * byte) and sequence + 1 (0 for an empty slot), int drawId, giverId, poolSize, receiverId,
+ * partnerGiverId, partnerReceiverId. The oldest records are overwritten once the ring is full.
+ * Thread-safe: concurrent draws interleave, told apart by their draw id.
+ */
+public final class GiftExchangeTracer implements AutoCloseable {
+
+	static final int MAGIC = 0x47585431; // "GXT1"
+	static final int HEADER_SIZE = 16;
+	static final int RECORD_SIZE = 32;
+	static final String ERROR_MESSAGE_INVALID_TRACE = "Invalid trace: ";
+
+	// Event types.
+	static final int DRAW = 1; // giverId: family member count; poolSize: family unit count.
+	static final int ASSIGN = 2; // giverId gives to receiverId, drawn from a pool of poolSize receivers.
+	static final int SWAP = 3; // giverId takes over receiverId from partnerGiverId, who gives to partnerReceiverId instead.
+
+	private static final long SEQUENCE_MASK = (1L << 56) - 1;
+
+	private final ByteBuffer buffer;
+	private final int capacity;
+	private final AtomicLong sequence = new AtomicLong();
+	private final AtomicInteger drawCount = new AtomicInteger();
+
+	private GiftExchangeTracer(ByteBuffer buffer, int capacity) {
+		this.buffer = buffer;
+		this.capacity = capacity;
+		buffer.putInt(0, MAGIC).putInt(4, RECORD_SIZE).putInt(8, capacity).putInt(12, 0);
+	}
+
+	/**
+	 * Ring buffer on the heap, e.g. to decode after a failing draw in a test.
+	 * @param capacity number of most recent events kept.
+	 */
+	public static GiftExchangeTracer inMemory(int capacity) {
+		return new GiftExchangeTracer(ByteBuffer.allocate(HEADER_SIZE + checkCapacity(capacity) * RECORD_SIZE), capacity);
+	}
+
+	/**
+	 * Ring buffer mapped to a file, which survives the process and is decoded offline. The file is replaced.
+	 * @param capacity number of most recent events kept.
+	 */
+	public static GiftExchangeTracer mapped(Path path, int capacity) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+					HEADER_SIZE + (long) checkCapacity(capacity) * RECORD_SIZE);
+			return new GiftExchangeTracer(buffer, capacity);
+		}
+	}
+
+	private static int checkCapacity(int capacity) {
+		if (capacity < 1 || capacity > (Integer.MAX_VALUE - HEADER_SIZE) / RECORD_SIZE) {
+			throw new IllegalArgumentException(ERROR_MESSAGE_INVALID_TRACE + "capacity " + capacity + ".");
+		}
+		return capacity;
+	}
+
+	/**
+	 * @return the id of the new draw, which tags its events.
+	 */
+	int beginDraw(int familyMemberCount, int familyUnitCount) {
+		int drawId = this.drawCount.getAndIncrement();
+		this.write(DRAW, drawId, familyMemberCount, familyUnitCount, GiftExchangeEngine.UNASSIGNED,
+				GiftExchangeEngine.UNASSIGNED, GiftExchangeEngine.UNASSIGNED);
+		return drawId;
+	}
+
+	void onAssign(int drawId, int giverId, int poolSize, int receiverId) {
+		this.write(ASSIGN, drawId, giverId, poolSize, receiverId, GiftExchangeEngine.UNASSIGNED, GiftExchangeEngine.UNASSIGNED);
+	}
+
+	void onSwap(int drawId, int giverId, int poolSize, int receiverId, int partnerGiverId, int partnerReceiverId) {
+		this.write(SWAP, drawId, giverId, poolSize, receiverId, partnerGiverId, partnerReceiverId);
+	}
+
+	// The sequence goes last, so a slot never looks complete before its fields are.
+	private void write(int type, int drawId, int giverId, int poolSize, int receiverId, int partnerGiverId,
+			int partnerReceiverId) {
+		long sequence = this.sequence.getAndIncrement();
+		int offset = HEADER_SIZE + (int) (sequence % this.capacity) * RECORD_SIZE;
+		this.buffer.putInt(offset + 8, drawId).putInt(offset + 12, giverId).putInt(offset + 16, poolSize)
+				.putInt(offset + 20, receiverId).putInt(offset + 24, partnerGiverId).putInt(offset + 28, partnerReceiverId);
+		this.buffer.putLong(offset, (long) type << 56 | ((sequence + 1) & SEQUENCE_MASK));
+	}
+
+	/**
+	 * @return number of events written, including overwritten ones.
+	 */
+	public long getEventCount() {
+		return this.sequence.get();
+	}
+
+	/**
+	 * Renders the events still in the ring, oldest first.
+	 */
+	public void decode(Appendable out) throws Exception {
+		decode(this.buffer, out);
+	}
+
+	/**
+	 * Renders a trace file written by {@link #mapped(Path, int)}, oldest event first.
+	 */
+	public static void decode(Path path, Appendable out) throws Exception {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			decode(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), out);
+		}
+	}
+
+	static void decode(ByteBuffer buffer, Appendable out) throws Exception {
+		int capacity = buffer.capacity() >= HEADER_SIZE ? buffer.getInt(8) : -1;
+		if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != RECORD_SIZE || capacity < 1
+				|| buffer.capacity() != HEADER_SIZE + (long) capacity * RECORD_SIZE) {
+			throw new Exception(ERROR_MESSAGE_INVALID_TRACE + "bad header.");
+		}
+		// A record's slot follows from its sequence, so sorting the sequences orders the ring.
+		long[] sequences = new long[capacity];
+		int count = 0;
+		for (int slot = 0; slot < capacity; slot++) {
+			long sequence = buffer.getLong(HEADER_SIZE + slot * RECORD_SIZE) & SEQUENCE_MASK;
+			if (sequence != 0) {
+				sequences[count++] = sequence;
+			}
+		}
+		Arrays.sort(sequences, 0, count);
+		if (count > 0 && sequences[0] > 1) {
+			out.append("... ").append(Long.toString(sequences[0] - 1)).append(" earlier events overwritten\n");
+		}
+		for (int i = 0; i < count; i++) {
+			decodeRecord(buffer, HEADER_SIZE + (int) ((sequences[i] - 1) % capacity) * RECORD_SIZE, out);
+		}
+	}
+
+	private static void decodeRecord(ByteBuffer buffer, int offset, Appendable out) throws IOException {
+		long header = buffer.getLong(offset);
+		int type = (int) (header >>> 56);
+		int drawId = buffer.getInt(offset + 8);
+		int giverId = buffer.getInt(offset + 12);
+		int poolSize = buffer.getInt(offset + 16);
+		int receiverId = buffer.getInt(offset + 20);
+		out.append('#').append(Long.toString((header & SEQUENCE_MASK) - 1)).append(" draw ").append(Integer.toString(drawId))
+				.append(": ");
+		switch (type) {
+		case DRAW:
+			out.append("begin, ").append(Integer.toString(giverId)).append(" family members in ")
+					.append(Integer.toString(poolSize)).append(" family units");
+			break;
+		case ASSIGN:
+			out.append("giver ").append(Integer.toString(giverId)).append(" -> receiver ").append(Integer.toString(receiverId))
+					.append(" (pool ").append(Integer.toString(poolSize)).append(')');
+			break;
+		case SWAP:
+			out.append("giver ").append(Integer.toString(giverId)).append(" -> receiver ").append(Integer.toString(receiverId))
+					.append(", taken from giver ").append(Integer.toString(buffer.getInt(offset + 24)))
+					.append(" -> receiver ").append(Integer.toString(buffer.getInt(offset + 28)))
+					.append(" (pool ").append(Integer.toString(poolSize)).append(')');
+			break;
+		default:
+			out.append("unknown event type ").append(Integer.toString(type));
+		}
+		out.append('\n');
+	}
+
+	/**
+	 * Flushes a mapped trace to its file.
+	 */
+	@Override
+	public void close() {
+		if (this.buffer instanceof MappedByteBuffer) {
+			((MappedByteBuffer) this.buffer).force();
+		}
+	}
+
+}
@@ -0,0 +1,12 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+/**
+ * Giver/receiver pairs that must not be drawn, on top of the family unit rule.
+ * Implementations must answer in O(1); the engine asks while selecting and swapping.
+ */
+@FunctionalInterface
+public interface GiftExclusions {
+
+	boolean isExcluded(int giverId, int receiverId);
+
+}
@@ -0,0 +1,418 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.function.IntConsumer;
+
+/**
+ * Keeps a published draw up to date as family members join or drop out, without re-drawing everybody.
+ * A leaving member's giver takes over their receiver; joining members are linked in between the givers
+ * and receivers left open; only when a family unit rule gets in the way is one existing pair swapped.
+ * Building the index is O(n) once; each {@link #apply(GiftExchangeDelta)} is proportional to the delta,
+ * except when {@link #MAX_RANDOM_ATTEMPTS} random picks find no existing pair to swap with: a scan over all
+ * members, O(n), then finds one. That needs almost every pair to touch the joining member's family unit.
+ * Not thread-safe.
+ */
+public final class IncrementalGiftExchange {
+
+	static final String ERROR_MESSAGE_UNKNOWN_FAMILY_MEMBER_ID = "Unknown family member ID: ";
+	static final String ERROR_MESSAGE_GIFT_EXCHANGES_DO_NOT_MATCH_FAMILY_UNITS = "Gift exchanges do not match the family units. Giver: ";
+	static final int MAX_RANDOM_ATTEMPTS = 64;
+	private static final int UNASSIGNED = -1;
+	private static final int MINIMUM_CAPACITY = 16;
+
+	private final SplittableRandom random;
+	private final Map<Integer, Integer> denseIdOf = new HashMap<>();
+	// Indexed by dense id. Dense ids of removed members are not reused.
+	private int[] familyMemberIds;
+	private int[] familyUnitOf;
+	private int[] receiverOf;
+	private int[] giverOf;
+	private int familyMemberSlotCount;
+	// Current members, for random picks.
+	private int[] activeIds;
+	private int[] activeIndex;
+	private int activeCount;
+	private int[] familyUnitSizes;
+	private int familyUnitSlotCount;
+	private final TreeMap<Integer, Integer> familyUnitSizeCounts = new TreeMap<>(); // Non-empty family units by size.
+	private int nonEmptyFamilyUnitCount;
+	private IntConsumer swapHook; // Optional; see setSwapHook(IntConsumer).
+
+	public IncrementalGiftExchange(Map<Integer, Integer> giverReceiverMap, Set<Set<Integer>> familyUnits)
+			throws Exception {
+		this(giverReceiverMap, familyUnits, RandomSource.threadLocal());
+	}
+
+	public IncrementalGiftExchange(Map<Integer, Integer> giverReceiverMap, Set<Set<Integer>> familyUnits,
+			RandomSource randomSource) throws Exception {
+		GiftExchangeGenerator generator = GiftExchangeGenerator.instance();
+		generator.validateParameters(familyUnits);
+		generator.validateGiverReceiverMap(giverReceiverMap, familyUnits);
+		this.random = randomSource.forDraw();
+		int capacity = Math.max(MINIMUM_CAPACITY, familyUnits.stream().mapToInt(Set::size).sum());
+		this.familyMemberIds = new int[capacity];
+		this.familyUnitOf = new int[capacity];
+		this.receiverOf = new int[capacity];
+		this.giverOf = new int[capacity];
+		this.activeIds = new int[capacity];
+		this.activeIndex = new int[capacity];
+		this.familyUnitSizes = new int[Math.max(MINIMUM_CAPACITY, familyUnits.size())];
+		for (Set<Integer> familyUnit : familyUnits) {
+			int familyUnitId = this.addFamilyUnitSlot();
+			for (Integer familyMemberId : familyUnit) {
+				this.addFamilyMemberSlot(familyMemberId, familyUnitId);
+			}
+		}
+		if (giverReceiverMap.size() != this.activeCount) {
+			throw new Exception(ERROR_MESSAGE_GIFT_EXCHANGES_DO_NOT_MATCH_FAMILY_UNITS + giverReceiverMap.size()
+					+ " givers for " + this.activeCount + " family members.");
+		}
+		for (Entry<Integer, Integer> entry : giverReceiverMap.entrySet()) {
+			Integer giverId = this.denseIdOf.get(entry.getKey());
+			Integer receiverId = this.denseIdOf.get(entry.getValue());
+			if (giverId == null || receiverId == null) {
+				throw new Exception(ERROR_MESSAGE_GIFT_EXCHANGES_DO_NOT_MATCH_FAMILY_UNITS + entry.getKey() + ".");
+			}
+			this.receiverOf[giverId] = receiverId;
+			this.giverOf[receiverId] = giverId;
+		}
+	}
+
+	/**
+	 * Applies the delta and repairs the draw around it.
+	 * @return the pairs that changed: giver -> new receiver, including every added member. Removed members
+	 * are not included. Nothing is changed if the delta is invalid or would make the draw impossible.
+	 * @throws Exception
+	 */
+	public Map<Integer, Integer> apply(GiftExchangeDelta delta) throws Exception {
+		this.validateDelta(delta);
+		Map<Integer, Integer> previousReceiverOf = new LinkedHashMap<>(); // Dense ids, before the delta.
+		Set<Integer> openGiverIds = new LinkedHashSet<>();
+		Set<Integer> openReceiverIds = new LinkedHashSet<>();
+		int familyMemberSlotCount = this.familyMemberSlotCount;
+		int familyUnitSlotCount = this.familyUnitSlotCount;
+		int[] removedIds = delta.getRemovedFamilyMembers().stream().mapToInt(this.denseIdOf::get).toArray();
+		try {
+			for (Set<Integer> familyUnit : delta.getAddedFamilyUnits()) {
+				int familyUnitId = this.addFamilyUnitSlot();
+				for (Integer familyMemberId : familyUnit) {
+					this.open(this.addFamilyMemberSlot(familyMemberId, familyUnitId), previousReceiverOf, openGiverIds, openReceiverIds);
+				}
+			}
+			for (Entry<Integer, Integer> entry : delta.getAddedFamilyMembers().entrySet()) {
+				int familyUnitId = this.familyUnitOf[this.denseIdOf.get(entry.getValue())];
+				this.open(this.addFamilyMemberSlot(entry.getKey(), familyUnitId), previousReceiverOf, openGiverIds, openReceiverIds);
+			}
+			for (int familyMemberId : removedIds) {
+				this.denseIdOf.remove(this.familyMemberIds[familyMemberId]);
+				this.removeFamilyMember(familyMemberId, previousReceiverOf, openGiverIds, openReceiverIds);
+			}
+			this.linkOpenGiversAndReceivers(openGiverIds, openReceiverIds, previousReceiverOf);
+		}
+		catch (Exception e) {
+			this.rollBack(familyMemberSlotCount, familyUnitSlotCount, removedIds, previousReceiverOf);
+			throw e;
+		}
+
+		Map<Integer, Integer> changedPairs = new LinkedHashMap<>();
+		for (Entry<Integer, Integer> entry : previousReceiverOf.entrySet()) {
+			int giverId = entry.getKey();
+			if (this.activeIndex[giverId] != UNASSIGNED && this.receiverOf[giverId] != entry.getValue()) {
+				changedPairs.put(this.familyMemberIds[giverId], this.familyMemberIds[this.receiverOf[giverId]]);
+			}
+		}
+		return changedPairs;
+	}
+
+	/**
+	 * @return the current draw. O(n).
+	 */
+	public Map<Integer, Integer> getGiverReceiverMap() {
+		Map<Integer, Integer> giverReceiverMap = new HashMap<>(this.activeCount * 4 / 3 + 1);
+		for (int i = 0; i < this.activeCount; i++) {
+			int giverId = this.activeIds[i];
+			giverReceiverMap.put(this.familyMemberIds[giverId], this.familyMemberIds[this.receiverOf[giverId]]);
+		}
+		return giverReceiverMap;
+	}
+
+	public int getFamilyMemberCount() {
+		return this.activeCount;
+	}
+
+	/**
+	 * Called with the family member id of the giver before each swap with an existing pair. A runtime
+	 * exception thrown from it fails the delta midway, as a failed swap would.
+	 */
+	void setSwapHook(IntConsumer swapHook) {
+		this.swapHook = swapHook;
+	}
+
+	// Undoes a partly applied delta. previousReceiverOf holds the original receiver of every existing giver
+	// that changed, and every receiver that changed had one of them as its original giver. O(delta).
+	private void rollBack(int familyMemberSlotCount, int familyUnitSlotCount, int[] removedIds,
+			Map<Integer, Integer> previousReceiverOf) {
+		for (int familyMemberId = familyMemberSlotCount; familyMemberId < this.familyMemberSlotCount; familyMemberId++) {
+			if (this.activeIndex[familyMemberId] != UNASSIGNED) {
+				this.deactivate(familyMemberId);
+				this.changeFamilyUnitSize(this.familyUnitOf[familyMemberId], -1);
+			}
+			this.denseIdOf.remove(this.familyMemberIds[familyMemberId]);
+		}
+		for (int familyMemberId : removedIds) {
+			if (this.activeIndex[familyMemberId] == UNASSIGNED) {
+				this.activeIds[this.activeCount] = familyMemberId;
+				this.activeIndex[familyMemberId] = this.activeCount++;
+				this.changeFamilyUnitSize(this.familyUnitOf[familyMemberId], 1);
+			}
+			this.denseIdOf.put(this.familyMemberIds[familyMemberId], familyMemberId);
+		}
+		for (Entry<Integer, Integer> entry : previousReceiverOf.entrySet()) {
+			if (entry.getKey() < familyMemberSlotCount) {
+				this.receiverOf[entry.getKey()] = entry.getValue();
+				this.giverOf[entry.getValue()] = entry.getKey();
+			}
+		}
+		this.familyMemberSlotCount = familyMemberSlotCount;
+		this.familyUnitSlotCount = familyUnitSlotCount;
+	}
+
+	// The leaving member's giver takes over their receiver when the family units allow it: one changed pair.
+	private void removeFamilyMember(int familyMemberId, Map<Integer, Integer> previousReceiverOf,
+			Set<Integer> openGiverIds, Set<Integer> openReceiverIds) {
+		int giverId = this.giverOf[familyMemberId];
+		int receiverId = this.receiverOf[familyMemberId];
+		previousReceiverOf.putIfAbsent(familyMemberId, receiverId);
+		openGiverIds.remove(familyMemberId);
+		openReceiverIds.remove(familyMemberId);
+		this.receiverOf[familyMemberId] = UNASSIGNED;
+		this.giverOf[familyMemberId] = UNASSIGNED;
+		this.deactivate(familyMemberId);
+		this.changeFamilyUnitSize(this.familyUnitOf[familyMemberId], -1);
+		if (giverId != UNASSIGNED) {
+			previousReceiverOf.putIfAbsent(giverId, familyMemberId);
+			this.receiverOf[giverId] = UNASSIGNED;
+			openGiverIds.add(giverId);
+		}
+		if (receiverId != UNASSIGNED) {
+			this.giverOf[receiverId] = UNASSIGNED;
+			openReceiverIds.add(receiverId);
+		}
+		if (giverId != UNASSIGNED && receiverId != UNASSIGNED && this.familyUnitOf[giverId] != this.familyUnitOf[receiverId]) {
+			this.link(giverId, receiverId, previousReceiverOf);
+			openGiverIds.remove(giverId);
+			openReceiverIds.remove(receiverId);
+		}
+	}
+
+	// Pairs up open givers and receivers at random; a giver whose open receivers are all family swaps with an existing pair.
+	private void linkOpenGiversAndReceivers(Set<Integer> openGiverIds, Set<Integer> openReceiverIds,
+			Map<Integer, Integer> previousReceiverOf) throws Exception {
+		int[] receiverIds = openReceiverIds.stream().mapToInt(Integer::intValue).toArray();
+		int receiverCount = receiverIds.length;
+		for (int giverId : openGiverIds) {
+			int index = UNASSIGNED;
+			for (int attempt = 0; attempt < MAX_RANDOM_ATTEMPTS && index == UNASSIGNED; attempt++) {
+				int candidate = this.random.nextInt(receiverCount);
+				if (this.familyUnitOf[receiverIds[candidate]] != this.familyUnitOf[giverId]) {
+					index = candidate;
+				}
+			}
+			if (index != UNASSIGNED) {
+				this.link(giverId, receiverIds[index], previousReceiverOf);
+			}
+			else {
+				index = this.random.nextInt(receiverCount);
+				this.swapWithAnExistingPair(giverId, receiverIds[index], previousReceiverOf);
+			}
+			receiverIds[index] = receiverIds[--receiverCount];
+		}
+	}
+
+	// giverId takes over an existing giver's receiver, and that giver gives to receiverId instead.
+	private void swapWithAnExistingPair(int giverId, int receiverId, Map<Integer, Integer> previousReceiverOf)
+			throws Exception {
+		if (this.swapHook != null) {
+			this.swapHook.accept(this.familyMemberIds[giverId]);
+		}
+		int existingGiverId = UNASSIGNED;
+		for (int attempt = 0; attempt < MAX_RANDOM_ATTEMPTS && existingGiverId == UNASSIGNED; attempt++) {
+			int candidate = this.activeIds[this.random.nextInt(this.activeCount)];
+			if (this.isEligibleExistingGiver(candidate, giverId, receiverId)) {
+				existingGiverId = candidate;
+			}
+		}
+		for (int i = 0; i < this.activeCount && existingGiverId == UNASSIGNED; i++) {
+			if (this.isEligibleExistingGiver(this.activeIds[i], giverId, receiverId)) {
+				existingGiverId = this.activeIds[i];
+			}
+		}
+		if (existingGiverId == UNASSIGNED) {
+			throw new Exception(GiftExchangeEngine.ERROR_MESSAGE_NO_ELIGIBLE_EXISTING_GIVER + this.familyMemberIds[giverId] + ".");
+		}
+		int existingReceiverId = this.receiverOf[existingGiverId];
+		this.link(giverId, existingReceiverId, previousReceiverOf);
+		this.link(existingGiverId, receiverId, previousReceiverOf);
+	}
+
+	private boolean isEligibleExistingGiver(int existingGiverId, int giverId, int receiverId) {
+		int existingReceiverId = this.receiverOf[existingGiverId];
+		return existingReceiverId != UNASSIGNED && this.familyUnitOf[existingReceiverId] != this.familyUnitOf[giverId]
+				&& this.familyUnitOf[existingGiverId] != this.familyUnitOf[receiverId];
+	}
+
+	private void link(int giverId, int receiverId, Map<Integer, Integer> previousReceiverOf) {
+		previousReceiverOf.putIfAbsent(giverId, this.receiverOf[giverId]);
+		this.receiverOf[giverId] = receiverId;
+		this.giverOf[receiverId] = giverId;
+	}
+
+	private void open(int familyMemberId, Map<Integer, Integer> previousReceiverOf, Set<Integer> openGiverIds,
+			Set<Integer> openReceiverIds) {
+		previousReceiverOf.put(familyMemberId, UNASSIGNED);
+		openGiverIds.add(familyMemberId);
+		openReceiverIds.add(familyMemberId);
+	}
+
+	// Checks ids and the family unit rules on the outcome before anything is changed. O(delta).
+	private void validateDelta(GiftExchangeDelta delta) throws Exception {
+		Set<Integer> addedFamilyMemberIds = new HashSet<>();
+		Map<Integer, Integer> addedFamilyUnitOf = new HashMap<>(); // Added family units get negative ids here.
+		Map<Integer, Integer> familyUnitSizeChanges = new HashMap<>();
+		int addedFamilyUnitId = -1;
+		for (Set<Integer> familyUnit : delta.getAddedFamilyUnits()) {
+			if (familyUnit == null) {
+				this.fail(GiftExchangeGenerator.ERROR_MESSAGE_INVALID_FAMILY_UNIT_NULL);
+			}
+			for (Integer familyMemberId : familyUnit) {
+				this.validateAddedFamilyMemberId(familyMemberId, addedFamilyMemberIds);
+				addedFamilyUnitOf.put(familyMemberId, addedFamilyUnitId);
+			}
+			familyUnitSizeChanges.put(addedFamilyUnitId--, familyUnit.size());
+		}
+		for (Entry<Integer, Integer> entry : delta.getAddedFamilyMembers().entrySet()) {
+			this.validateAddedFamilyMemberId(entry.getKey(), addedFamilyMemberIds);
+			Integer relatedFamilyMemberId = this.denseIdOf.get(entry.getValue());
+			Integer familyUnitId = relatedFamilyMemberId != null ? Integer.valueOf(this.familyUnitOf[relatedFamilyMemberId])
+					: addedFamilyUnitOf.get(entry.getValue());
+			if (familyUnitId == null) {
+				this.fail(ERROR_MESSAGE_UNKNOWN_FAMILY_MEMBER_ID + entry.getValue() + ".");
+			}
+			addedFamilyUnitOf.put(entry.getKey(), familyUnitId);
+			familyUnitSizeChanges.merge(familyUnitId, 1, Integer::sum);
+		}
+		for (Integer familyMemberId : delta.getRemovedFamilyMembers()) {
+			Integer denseId = this.denseIdOf.get(familyMemberId);
+			if (denseId == null) {
+				this.fail(ERROR_MESSAGE_UNKNOWN_FAMILY_MEMBER_ID + familyMemberId + ".");
+			}
+			familyUnitSizeChanges.merge(this.familyUnitOf[denseId], -1, Integer::sum);
+		}
+
+		int familyMemberCount = this.activeCount + addedFamilyMemberIds.size() - delta.getRemovedFamilyMembers().size();
+		int nonEmptyFamilyUnitCount = this.nonEmptyFamilyUnitCount;
+		int largestFamilyUnitSize = 0;
+		Map<Integer, Integer> changedFamilyUnitSizeCounts = new HashMap<>(); // Current sizes of the changed family units.
+		for (Entry<Integer, Integer> entry : familyUnitSizeChanges.entrySet()) {
+			int currentSize = entry.getKey() >= 0 ? this.familyUnitSizes[entry.getKey()] : 0;
+			int size = currentSize + entry.getValue();
+			if (currentSize > 0) {
+				changedFamilyUnitSizeCounts.merge(currentSize, 1, Integer::sum);
+				nonEmptyFamilyUnitCount--;
+			}
+			if (size > 0) {
+				nonEmptyFamilyUnitCount++;
+			}
+			largestFamilyUnitSize = Math.max(largestFamilyUnitSize, size);
+		}
+		// Largest unchanged family unit: skips at most one size per changed family unit.
+		for (Entry<Integer, Integer> entry : this.familyUnitSizeCounts.descendingMap().entrySet()) {
+			if (entry.getValue() > changedFamilyUnitSizeCounts.getOrDefault(entry.getKey(), 0)) {
+				largestFamilyUnitSize = Math.max(largestFamilyUnitSize, entry.getKey());
+				break;
+			}
+		}
+		if (nonEmptyFamilyUnitCount < 2) {
+			this.fail(GiftExchangeGenerator.ERROR_MESSAGE_MUST_HAVE_AT_LEAST_TWO_FAMILY_UNITS);
+		}
+		if (largestFamilyUnitSize * 2L > familyMemberCount) {
+			this.fail(GiftExchangeGenerator.ERROR_MESSAGE_FAMILY_UNIT_IS_TOO_LARGE + largestFamilyUnitSize
+					+ ". Current family pool size is: " + familyMemberCount + ". ");
+		}
+	}
+
+	private void validateAddedFamilyMemberId(Integer familyMemberId, Set<Integer> addedFamilyMemberIds) throws Exception {
+		if (familyMemberId == null) {
+			this.fail(GiftExchangeGenerator.ERROR_MESSAGE_INVALID_FAMILY_MEMBER_ID_NULL);
+		}
+		if (this.denseIdOf.containsKey(familyMemberId) || !addedFamilyMemberIds.add(familyMemberId)) {
+			this.fail(GiftExchangeGenerator.ERROR_MESSAGE_FAMILY_MEMBER_ID_FOUND_IN_MULTIPLE_FAMILY_UNITS + familyMemberId + ".");
+		}
+	}
+
+	private void fail(String message) throws Exception {
+		GiftExchangeGenerator.LOGGER.error(message);
+		throw new Exception(message);
+	}
+
+	private int addFamilyUnitSlot() {
+		if (this.familyUnitSlotCount == this.familyUnitSizes.length) {
+			this.familyUnitSizes = Arrays.copyOf(this.familyUnitSizes, this.familyUnitSlotCount * 2);
+		}
+		return this.familyUnitSlotCount++;
+	}
+
+	private int addFamilyMemberSlot(int familyMemberId, int familyUnitId) {
+		if (this.familyMemberSlotCount == this.familyMemberIds.length) {
+			int capacity = this.familyMemberSlotCount * 2;
+			this.familyMemberIds = Arrays.copyOf(this.familyMemberIds, capacity);
+			this.familyUnitOf = Arrays.copyOf(this.familyUnitOf, capacity);
+			this.receiverOf = Arrays.copyOf(this.receiverOf, capacity);
+			this.giverOf = Arrays.copyOf(this.giverOf, capacity);
+			this.activeIds = Arrays.copyOf(this.activeIds, capacity);
+			this.activeIndex = Arrays.copyOf(this.activeIndex, capacity);
+		}
+		int denseId = this.familyMemberSlotCount++;
+		this.familyMemberIds[denseId] = familyMemberId;
+		this.familyUnitOf[denseId] = familyUnitId;
+		this.receiverOf[denseId] = UNASSIGNED;
+		this.giverOf[denseId] = UNASSIGNED;
+		this.activeIds[this.activeCount] = denseId;
+		this.activeIndex[denseId] = this.activeCount++;
+		this.denseIdOf.put(familyMemberId, denseId);
+		this.changeFamilyUnitSize(familyUnitId, 1);
+		return denseId;
+	}
+
+	private void deactivate(int denseId) {
+		int index = this.activeIndex[denseId];
+		int lastDenseId = this.activeIds[--this.activeCount];
+		this.activeIds[index] = lastDenseId;
+		this.activeIndex[lastDenseId] = index;
+		this.activeIndex[denseId] = UNASSIGNED;
+	}
+
+	private void changeFamilyUnitSize(int familyUnitId, int change) {
+		int size = this.familyUnitSizes[familyUnitId];
+		if (size > 0) {
+			this.familyUnitSizeCounts.merge(size, -1, (count, one) -> count + one == 0 ? null : count + one);
+			this.nonEmptyFamilyUnitCount--;
+		}
+		size += change;
+		this.familyUnitSizes[familyUnitId] = size;
+		if (size > 0) {
+			this.familyUnitSizeCounts.merge(size, 1, Integer::sum);
+			this.nonEmptyFamilyUnitCount++;
+		}
+	}
+
+}
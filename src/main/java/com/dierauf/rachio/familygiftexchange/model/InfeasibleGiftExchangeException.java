@@ -0,0 +1,44 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import java.util.Arrays;
+
+/**
+ * No valid gift exchange exists, with proof: a set of givers whose allowed receivers, taken together, are
+ * fewer than the givers themselves (a violation of Hall's condition), so some giver is always left out.
+ */
+public final class InfeasibleGiftExchangeException extends GiftExchangeException {
+
+	private static final long serialVersionUID = 1L;
+	static final String ERROR_MESSAGE_NO_VALID_GIFT_EXCHANGE = "No valid gift exchange exists. ";
+
+	private final int[] giverIds;
+	private final int[] receiverIds;
+
+	InfeasibleGiftExchangeException(int[] giverIds, int[] receiverIds) {
+		super(Reason.INFEASIBLE, ERROR_MESSAGE_NO_VALID_GIFT_EXCHANGE + giverIds.length + " givers can only give to " + receiverIds.length
+				+ " receivers. Givers: " + abbreviate(giverIds) + "; receivers: " + abbreviate(receiverIds));
+		this.giverIds = giverIds;
+		this.receiverIds = receiverIds;
+	}
+
+	private static String abbreviate(int[] ids) {
+		int count = Math.min(ids.length, GiftExchangeGenerator.MAX_ERROR_MESSAGE_ELEMENTS);
+		String head = Arrays.toString(Arrays.copyOf(ids, count));
+		return count == ids.length ? head : head.substring(0, head.length() - 1) + ", ... (" + ids.length + " in total)]";
+	}
+
+	/**
+	 * @return the givers of the proof, sorted.
+	 */
+	public int[] getGiverIds() {
+		return this.giverIds.clone();
+	}
+
+	/**
+	 * @return every receiver any of {@link #getGiverIds()} may give to, sorted; fewer than the givers.
+	 */
+	public int[] getReceiverIds() {
+		return this.receiverIds.clone();
+	}
+
+}
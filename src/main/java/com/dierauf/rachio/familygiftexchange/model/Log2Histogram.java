@@ -0,0 +1,69 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of non-negative values in power-of-two buckets: bucket b holds values below 2^b.
+ * Recording is a few atomic increments, which keeps it usable on the draw hot path.
+ */
+final class Log2Histogram {
+
+	private static final int BUCKET_COUNT = 64;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+	private final AtomicLong total = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	void record(long value) {
+		long nonNegativeValue = Math.max(0, value);
+		this.counts.incrementAndGet(Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(nonNegativeValue)));
+		this.total.addAndGet(nonNegativeValue);
+		this.max.accumulateAndGet(nonNegativeValue, Math::max);
+	}
+
+	long getCount() {
+		long count = 0;
+		for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+			count += this.counts.get(bucket);
+		}
+		return count;
+	}
+
+	long getTotal() {
+		return this.total.get();
+	}
+
+	long getMax() {
+		return this.max.get();
+	}
+
+	/**
+	 * @param percentile 0..100.
+	 * @return the upper bound of the bucket holding the percentile, capped by the maximum; 0 if empty.
+	 */
+	long getPercentile(double percentile) {
+		long count = this.getCount();
+		if (count == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+		long seen = 0;
+		for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+			seen += this.counts.get(bucket);
+			if (seen >= rank) {
+				return Math.min(this.getMax(), bucket == 0 ? 0 : (1L << bucket) - 1);
+			}
+		}
+		return this.getMax();
+	}
+
+	void reset() {
+		for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+			this.counts.set(bucket, 0);
+		}
+		this.total.set(0);
+		this.max.set(0);
+	}
+
+}
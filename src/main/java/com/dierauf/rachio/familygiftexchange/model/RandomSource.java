@@ -0,0 +1,31 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import java.util.SplittableRandom;
+
+/**
+ * Pluggable randomness for the generator. Every draw gets its own SplittableRandom, so concurrent
+ * draws never contend on a shared seed.
+ */
+public interface RandomSource {
+
+	/**
+	 * @return a generator used by a single draw, on a single thread.
+	 */
+	SplittableRandom forDraw();
+
+	/**
+	 * Default source. Each thread splits its own generator off a common root once, then splits one
+	 * per draw without any shared state.
+	 */
+	static RandomSource threadLocal() {
+		return ThreadLocalRandomSource.INSTANCE;
+	}
+
+	/**
+	 * Reproducible source: the same seed and input always give the same draw, e.g. for audits.
+	 */
+	static RandomSource seeded(long seed) {
+		return () -> new SplittableRandom(seed);
+	}
+
+}
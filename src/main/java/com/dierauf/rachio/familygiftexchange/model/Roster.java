@@ -0,0 +1,51 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+/**
+ * Family members and their family units, dictionary-encoded to dense ids.
+ * Family member ids follow the roster order; family unit ids follow first appearance.
+ * Names are kept as UTF-8 bytes and only turned into Strings on request.
+ */
+public final class Roster {
+
+	private final ByteStringDictionary familyMemberNames;
+	private final ByteStringDictionary familyUnitNames;
+	private final int[] familyUnitOf;
+
+	Roster(ByteStringDictionary familyMemberNames, ByteStringDictionary familyUnitNames, int[] familyUnitOf) {
+		this.familyMemberNames = familyMemberNames;
+		this.familyUnitNames = familyUnitNames;
+		this.familyUnitOf = familyUnitOf;
+	}
+
+	public int getFamilyMemberCount() {
+		return this.familyUnitOf.length;
+	}
+
+	public int getFamilyUnitCount() {
+		return this.familyUnitNames.size();
+	}
+
+	public String getFamilyMemberName(int familyMemberId) {
+		return this.familyMemberNames.get(familyMemberId);
+	}
+
+	public String getFamilyUnitName(int familyUnitId) {
+		return this.familyUnitNames.get(familyUnitId);
+	}
+
+	ByteStringDictionary getFamilyMemberNames() {
+		return this.familyMemberNames;
+	}
+
+	ByteStringDictionary getFamilyUnitNames() {
+		return this.familyUnitNames;
+	}
+
+	/**
+	 * @return the family unit id of each family member, indexed by family member id. Not a copy.
+	 */
+	public int[] getFamilyUnitOf() {
+		return this.familyUnitOf;
+	}
+
+}
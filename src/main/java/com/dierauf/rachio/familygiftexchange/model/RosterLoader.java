@@ -0,0 +1,398 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Streams a roster of family members from a file. One family member per line, either
+ * CSV: family,name (an optional 'family,name' header; fields may be double-quoted) or
+ * NDJSON: {"family":"...","name":"..."}.
+ * The file is read through a fixed-size buffer and names are dictionary-encoded as they are read,
+ * so the heap holds the encoded roster, not the file.
+ */
+public final class RosterLoader {
+
+	static final String ERROR_MESSAGE_INVALID_ROSTER_LINE = "Invalid roster line: ";
+	static final String ERROR_MESSAGE_UNSUPPORTED_ROSTER_FORMAT = "Unsupported roster format (expecting .csv, .ndjson or .jsonl): ";
+	static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+	private static final int JSON_KEY_OTHER = 0;
+	private static final int JSON_KEY_FAMILY = 1;
+	private static final int JSON_KEY_NAME = 2;
+
+	public enum Format {
+		CSV, NDJSON;
+
+		static Format of(Path path) throws Exception {
+			String fileName = path.getFileName().toString().toLowerCase();
+			if (fileName.endsWith(".csv")) {
+				return CSV;
+			}
+			if (fileName.endsWith(".ndjson") || fileName.endsWith(".jsonl")) {
+				return NDJSON;
+			}
+			throw new Exception(ERROR_MESSAGE_UNSUPPORTED_ROSTER_FORMAT + path);
+		}
+	}
+
+	private final Format format;
+	private final int bufferSize;
+	private final ByteStringDictionary familyMemberNames = new ByteStringDictionary();
+	private final ByteStringDictionary familyUnitNames = new ByteStringDictionary();
+	private int[] familyUnitOf = new int[1 << 10];
+	private long lineNumber;
+	// Unescaped field values of the current line.
+	private byte[] familyField = new byte[64];
+	private int familyFieldLength;
+	private byte[] nameField = new byte[64];
+	private int nameFieldLength;
+
+	RosterLoader(Format format, int bufferSize) {
+		this.format = format;
+		this.bufferSize = bufferSize;
+	}
+
+	/**
+	 * Loads a roster; the format is taken from the file extension.
+	 */
+	public static Roster load(Path path) throws Exception {
+		return load(path, Format.of(path));
+	}
+
+	public static Roster load(Path path, Format format) throws Exception {
+		return new RosterLoader(format, DEFAULT_BUFFER_SIZE).read(path);
+	}
+
+	Roster read(Path path) throws Exception {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			ByteBuffer buffer = ByteBuffer.allocate(this.bufferSize);
+			boolean endOfFile = false;
+			while (!endOfFile) {
+				endOfFile = channel.read(buffer) == -1;
+				buffer.flip();
+				int lineStart = this.parseLines(buffer.array(), buffer.limit(), endOfFile);
+				buffer.position(lineStart);
+				buffer.compact();
+				if (!buffer.hasRemaining()) { // A single line longer than the buffer.
+					buffer = ByteBuffer.wrap(Arrays.copyOf(buffer.array(), buffer.capacity() * 2), buffer.position(),
+							buffer.capacity());
+				}
+			}
+		}
+		catch (IOException e) {
+			throw new Exception("Unable to read roster: " + path, e);
+		}
+		int familyMemberCount = this.familyMemberNames.size();
+		return new Roster(this.familyMemberNames, this.familyUnitNames, Arrays.copyOf(this.familyUnitOf, familyMemberCount));
+	}
+
+	// Parses every complete line in bytes[0 .. limit). Returns the start of the first incomplete line.
+	private int parseLines(byte[] bytes, int limit, boolean endOfFile) throws Exception {
+		int lineStart = 0;
+		for (int i = 0; i < limit; i++) {
+			if (bytes[i] == '\n') {
+				this.parseLine(bytes, lineStart, i);
+				lineStart = i + 1;
+			}
+		}
+		if (endOfFile && lineStart < limit) {
+			this.parseLine(bytes, lineStart, limit);
+			lineStart = limit;
+		}
+		return lineStart;
+	}
+
+	private void parseLine(byte[] bytes, int start, int end) throws Exception {
+		this.lineNumber++;
+		if (end > start && bytes[end - 1] == '\r') {
+			end--;
+		}
+		if (this.lineNumber == 1 && end - start >= 3 && bytes[start] == (byte) 0xEF && bytes[start + 1] == (byte) 0xBB
+				&& bytes[start + 2] == (byte) 0xBF) {
+			start += 3; // UTF-8 byte order mark.
+		}
+		start = skipWhitespace(bytes, start, end);
+		if (start == end) {
+			return; // Blank line.
+		}
+		this.familyFieldLength = -1;
+		this.nameFieldLength = -1;
+		if (this.format == Format.CSV) {
+			this.parseCsvLine(bytes, start, end);
+			if (this.lineNumber == 1 && this.isCsvHeader()) {
+				return;
+			}
+		}
+		else {
+			this.parseJsonLine(bytes, start, end);
+		}
+		if (this.familyFieldLength <= 0 || this.nameFieldLength <= 0) {
+			throw this.invalidLine("family and name are required");
+		}
+		this.addFamilyMember();
+	}
+
+	private void addFamilyMember() throws Exception {
+		int familyMemberCount = this.familyMemberNames.size();
+		int familyMemberId = this.familyMemberNames.intern(this.nameField, 0, this.nameFieldLength);
+		if (familyMemberId < familyMemberCount) {
+			throw new Exception(GiftExchangeGenerator.ERROR_MESSAGE_FAMILY_MEMBER_ID_FOUND_IN_MULTIPLE_FAMILY_UNITS
+					+ this.familyMemberNames.get(familyMemberId) + " (line " + this.lineNumber + ").");
+		}
+		if (familyMemberId == this.familyUnitOf.length) {
+			this.familyUnitOf = Arrays.copyOf(this.familyUnitOf, this.familyUnitOf.length * 2);
+		}
+		this.familyUnitOf[familyMemberId] = this.familyUnitNames.intern(this.familyField, 0, this.familyFieldLength);
+	}
+
+	private boolean isCsvHeader() {
+		return "family".equalsIgnoreCase(new String(this.familyField, 0, this.familyFieldLength, StandardCharsets.UTF_8))
+				&& "name".equalsIgnoreCase(new String(this.nameField, 0, this.nameFieldLength, StandardCharsets.UTF_8));
+	}
+
+	// CSV: family,name
+	private void parseCsvLine(byte[] bytes, int start, int end) throws Exception {
+		int position = this.parseCsvField(bytes, start, end, true);
+		if (position >= end || bytes[position] != ',') {
+			throw this.invalidLine("expecting family,name");
+		}
+		position = this.parseCsvField(bytes, position + 1, end, false);
+		if (position != end) {
+			throw this.invalidLine("expecting family,name");
+		}
+	}
+
+	// Returns the position just after the field (a ',' or end).
+	private int parseCsvField(byte[] bytes, int start, int end, boolean family) throws Exception {
+		int position = skipWhitespace(bytes, start, end);
+		this.startField(family);
+		if (position < end && bytes[position] == '"') {
+			position++;
+			while (true) {
+				if (position >= end) {
+					throw this.invalidLine("unterminated quoted field");
+				}
+				byte b = bytes[position++];
+				if (b == '"') {
+					if (position < end && bytes[position] == '"') {
+						position++; // Escaped quote.
+					}
+					else {
+						break;
+					}
+				}
+				this.appendToField(family, b);
+			}
+			return skipWhitespace(bytes, position, end);
+		}
+		int fieldEnd = position;
+		while (fieldEnd < end && bytes[fieldEnd] != ',') {
+			fieldEnd++;
+		}
+		int trimmedEnd = fieldEnd;
+		while (trimmedEnd > position && isWhitespace(bytes[trimmedEnd - 1])) {
+			trimmedEnd--;
+		}
+		for (int i = position; i < trimmedEnd; i++) {
+			this.appendToField(family, bytes[i]);
+		}
+		return fieldEnd;
+	}
+
+	// NDJSON: a flat object with "family" and "name" members. Other members are ignored.
+	private void parseJsonLine(byte[] bytes, int start, int end) throws Exception {
+		int position = start;
+		if (bytes[position++] != '{') {
+			throw this.invalidLine("expecting a JSON object");
+		}
+		position = skipWhitespace(bytes, position, end);
+		if (position < end && bytes[position] == '}') {
+			position++;
+		}
+		else {
+			while (true) {
+				int keyStart = position;
+				position = this.parseJsonString(bytes, position, end, null);
+				int key = jsonKey(bytes, keyStart, position);
+				position = skipWhitespace(bytes, position, end);
+				if (position >= end || bytes[position++] != ':') {
+					throw this.invalidLine("expecting ':'");
+				}
+				position = skipWhitespace(bytes, position, end);
+				position = this.parseJsonValue(bytes, position, end, key);
+				position = skipWhitespace(bytes, position, end);
+				if (position >= end) {
+					throw this.invalidLine("unterminated JSON object");
+				}
+				byte b = bytes[position++];
+				if (b == '}') {
+					break;
+				}
+				if (b != ',') {
+					throw this.invalidLine("expecting ',' or '}'");
+				}
+				position = skipWhitespace(bytes, position, end);
+			}
+		}
+		if (skipWhitespace(bytes, position, end) != end) {
+			throw this.invalidLine("unexpected content after the JSON object");
+		}
+	}
+
+	// bytes[start .. end) is a quoted key, e.g. "family".
+	private static int jsonKey(byte[] bytes, int start, int end) {
+		if (regionEquals(bytes, start, end, "\"family\"")) {
+			return JSON_KEY_FAMILY;
+		}
+		if (regionEquals(bytes, start, end, "\"name\"")) {
+			return JSON_KEY_NAME;
+		}
+		return JSON_KEY_OTHER;
+	}
+
+	private static boolean regionEquals(byte[] bytes, int start, int end, String ascii) {
+		if (end - start != ascii.length()) {
+			return false;
+		}
+		for (int i = 0; i < ascii.length(); i++) {
+			if (bytes[start + i] != ascii.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// Strings are unescaped into the family or name field; numbers, true, false and null are taken as-is.
+	private int parseJsonValue(byte[] bytes, int position, int end, int key) throws Exception {
+		Boolean family = key == JSON_KEY_FAMILY ? Boolean.TRUE : key == JSON_KEY_NAME ? Boolean.FALSE : null;
+		if (position < end && bytes[position] == '"') {
+			return this.parseJsonString(bytes, position, end, family);
+		}
+		int valueEnd = position;
+		while (valueEnd < end && bytes[valueEnd] != ',' && bytes[valueEnd] != '}' && !isWhitespace(bytes[valueEnd])) {
+			byte b = bytes[valueEnd];
+			if (b == '{' || b == '[' || b == '"') {
+				throw this.invalidLine("nested JSON values are not supported");
+			}
+			valueEnd++;
+		}
+		if (valueEnd == position) {
+			throw this.invalidLine("expecting a JSON value");
+		}
+		if (family != null) {
+			this.startField(family);
+			for (int i = position; i < valueEnd; i++) {
+				this.appendToField(family, bytes[i]);
+			}
+		}
+		return valueEnd;
+	}
+
+	// Returns the position just after the closing quote. Appends the unescaped value to the field, if any.
+	private int parseJsonString(byte[] bytes, int position, int end, Boolean family) throws Exception {
+		if (position >= end || bytes[position] != '"') {
+			throw this.invalidLine("expecting a JSON string");
+		}
+		if (family != null) {
+			this.startField(family);
+		}
+		position++;
+		while (true) {
+			if (position >= end) {
+				throw this.invalidLine("unterminated JSON string");
+			}
+			byte b = bytes[position++];
+			if (b == '"') {
+				return position;
+			}
+			if (b == '\\') {
+				if (position >= end) {
+					throw this.invalidLine("unterminated JSON string");
+				}
+				byte escaped = bytes[position++];
+				switch (escaped) {
+				case 'b': b = '\b'; break;
+				case 'f': b = '\f'; break;
+				case 'n': b = '\n'; break;
+				case 'r': b = '\r'; break;
+				case 't': b = '\t'; break;
+				case 'u':
+					if (position + 4 > end) {
+						throw this.invalidLine("invalid \\u escape");
+					}
+					int codeUnit = Integer.parseInt(new String(bytes, position, 4, StandardCharsets.US_ASCII), 16);
+					position += 4;
+					if (family != null) {
+						this.appendUtf8(family, codeUnit);
+					}
+					continue;
+				default: b = escaped; // \" \\ \/
+				}
+			}
+			if (family != null) {
+				this.appendToField(family, b);
+			}
+		}
+	}
+
+	// Single UTF-16 code unit to UTF-8. Surrogate pairs are outside what a roster needs; they are kept as-is.
+	private void appendUtf8(boolean family, int codeUnit) {
+		if (codeUnit < 0x80) {
+			this.appendToField(family, (byte) codeUnit);
+		}
+		else if (codeUnit < 0x800) {
+			this.appendToField(family, (byte) (0xC0 | (codeUnit >> 6)));
+			this.appendToField(family, (byte) (0x80 | (codeUnit & 0x3F)));
+		}
+		else {
+			this.appendToField(family, (byte) (0xE0 | (codeUnit >> 12)));
+			this.appendToField(family, (byte) (0x80 | ((codeUnit >> 6) & 0x3F)));
+			this.appendToField(family, (byte) (0x80 | (codeUnit & 0x3F)));
+		}
+	}
+
+	private void startField(boolean family) {
+		if (family) {
+			this.familyFieldLength = 0;
+		}
+		else {
+			this.nameFieldLength = 0;
+		}
+	}
+
+	private void appendToField(boolean family, byte b) {
+		if (family) {
+			if (this.familyFieldLength == this.familyField.length) {
+				this.familyField = Arrays.copyOf(this.familyField, this.familyField.length * 2);
+			}
+			this.familyField[this.familyFieldLength++] = b;
+		}
+		else {
+			if (this.nameFieldLength == this.nameField.length) {
+				this.nameField = Arrays.copyOf(this.nameField, this.nameField.length * 2);
+			}
+			this.nameField[this.nameFieldLength++] = b;
+		}
+	}
+
+	private Exception invalidLine(String reason) {
+		return new Exception(ERROR_MESSAGE_INVALID_ROSTER_LINE + this.lineNumber + " (" + reason + ").");
+	}
+
+	private static int skipWhitespace(byte[] bytes, int position, int end) {
+		while (position < end && isWhitespace(bytes[position])) {
+			position++;
+		}
+		return position;
+	}
+
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || b == '\t' || b == '\r';
+	}
+
+}
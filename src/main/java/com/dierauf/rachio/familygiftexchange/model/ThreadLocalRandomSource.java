@@ -0,0 +1,26 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import java.util.SplittableRandom;
+
+/**
+ * See {@link RandomSource#threadLocal()}. The root is only touched once per thread.
+ */
+final class ThreadLocalRandomSource implements RandomSource {
+
+	static final ThreadLocalRandomSource INSTANCE = new ThreadLocalRandomSource();
+
+	private final SplittableRandom root = new SplittableRandom();
+	private final ThreadLocal<SplittableRandom> perThread = ThreadLocal.withInitial(this::splitRoot);
+
+	private ThreadLocalRandomSource() {}
+
+	private synchronized SplittableRandom splitRoot() {
+		return this.root.split();
+	}
+
+	@Override
+	public SplittableRandom forDraw() {
+		return this.perThread.get().split();
+	}
+
+}
@@ -0,0 +1,96 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ExclusionHistoryIndexTest {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void test_write_Open() throws Exception {
+		Path path = this.tempDir.resolve("history.gxh");
+		List<int[]> draws = Arrays.asList(new int[] { 1, 2, 0 }, new int[] { 2, 0 }, new int[] { 2, 0, 1 });
+		ExclusionHistoryIndex.write(path, 3, 2, draws);
+		ExclusionHistoryIndex index = ExclusionHistoryIndex.open(path);
+		assertEquals(3, index.getFamilyMemberCount());
+		assertEquals(2, index.getYears());
+		assertTrue(index.isExcluded(0, 2));
+		assertFalse(index.isExcluded(0, 1)); // Oldest draw is beyond the window.
+		assertTrue(index.isExcluded(2, 1));
+		assertFalse(index.isExcluded(2, 0)); // Did not take part in the second draw.
+		assertFalse(index.isExcluded(3, 0)); // Unknown giver.
+	}
+
+	@Test
+	void test_open_InvalidFile() throws Exception {
+		Path path = this.tempDir.resolve("history.gxh");
+		Files.write(path, new byte[] { 'G', 'X', 'H', '0', 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 });
+		try {
+			ExclusionHistoryIndex.open(path);
+			fail("Expected exception");
+		}
+		catch (Exception e) {
+			assertTrue(e.getMessage().contains(ExclusionHistoryIndex.ERROR_MESSAGE_INVALID_EXCLUSION_HISTORY));
+		}
+	}
+
+	@Test // Each year's draw avoids the previous years' receivers.
+	void test_generateGiftExchanges_History() throws Exception {
+		int familyMemberCount = 100000;
+		int years = 5;
+		int[] familyUnitOf = FamilyUnitDistribution.ZIPF.familyUnitOf(familyMemberCount, 7);
+		List<int[]> draws = new ArrayList<>();
+		for (int year = 0; year <= years; year++) {
+			// A new file each year: the previous year's index is still mapped, and Windows cannot truncate a mapped file.
+			Path path = this.tempDir.resolve("history-" + year + ".gxh");
+			ExclusionHistoryIndex.write(path, familyMemberCount, years, draws);
+			ExclusionHistoryIndex index = ExclusionHistoryIndex.open(path);
+			int[] receiverOf = GiftExchangeGenerator.instance().generateGiftExchanges(familyUnitOf, index,
+					RandomSource.seeded(year));
+			for (int[] draw : draws) {
+				for (int giverId = 0; giverId < familyMemberCount; giverId++) {
+					assertNotEquals(draw[giverId], receiverOf[giverId]);
+				}
+			}
+			draws.add(receiverOf);
+		}
+	}
+
+	@Test // A and B in one family, C alone: C can only give to A or B, and both are excluded.
+	void test_generateGiftExchanges_Infeasible() throws Exception {
+		GiftExclusions exclusions = (giverId, receiverId) -> giverId == 2;
+		try {
+			GiftExchangeGenerator.instance().generateGiftExchanges(new int[] { 0, 0, 1, 2 }, exclusions);
+			fail("Expected exception");
+		}
+		catch (Exception e) {
+			assertTrue(e.getMessage().contains(GiftExchangeEngine.ERROR_MESSAGE_NO_ELIGIBLE_EXISTING_GIVER));
+		}
+	}
+
+	@Test // Exclusions force the swap path for most givers.
+	void test_generateGiftExchanges_Swaps() throws Exception {
+		int[] familyUnitOf = FamilyUnitDistribution.UNIFORM.familyUnitOf(1000, 3);
+		GiftExclusions exclusions = (giverId, receiverId) -> Math.abs(giverId - receiverId) % 3 != 1;
+		for (long seed = 0; seed < 20; seed++) {
+			int[] receiverOf = GiftExchangeGenerator.instance().generateGiftExchanges(familyUnitOf, exclusions,
+					RandomSource.seeded(seed));
+			GiftExchangeGenerator.instance().validateExclusions(receiverOf, exclusions);
+		}
+	}
+
+}
@@ -0,0 +1,113 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import org.junit.jupiter.api.Test;
+
+import com.dierauf.rachio.familygiftexchange.model.FamilyHierarchy.Strength;
+
+class FamilyHierarchyTest {
+
+	private static final Strength[] HARD_SOFT = new Strength[] { Strength.HARD, Strength.SOFT };
+
+	// Households of size householdSize; branches of branchSize households, numbered from 100.
+	private static int[][] createGroupOf(int familyMemberCount, int householdSize, int branchSize) {
+		int[][] groupOf = new int[2][familyMemberCount];
+		for (int memberId = 0; memberId < familyMemberCount; memberId++) {
+			groupOf[0][memberId] = memberId / householdSize;
+			groupOf[1][memberId] = 100 + memberId / (householdSize * branchSize);
+		}
+		return groupOf;
+	}
+
+	@Test
+	void test_isSameGroup() throws Exception {
+		FamilyHierarchy hierarchy = new FamilyHierarchy(createGroupOf(12, 2, 3), HARD_SOFT);
+		assertEquals(2, hierarchy.getLevelCount());
+		assertEquals(12, hierarchy.getFamilyMemberCount());
+		assertTrue(hierarchy.isSameGroup(0, 0, 1));
+		assertFalse(hierarchy.isSameGroup(0, 1, 2));
+		assertTrue(hierarchy.isSameGroup(1, 1, 5));
+		assertFalse(hierarchy.isSameGroup(1, 5, 6));
+	}
+
+	@Test
+	void test_generateGiftExchanges_SoftLevelHonored() throws Exception {
+		FamilyHierarchy hierarchy = new FamilyHierarchy(createGroupOf(30_000, 3, 10), HARD_SOFT);
+		assertEquals(1, hierarchy.selectLevel());
+		int[] receiverOf = GiftExchangeGenerator.instance().generateGiftExchanges(hierarchy, RandomSource.seeded(1));
+		for (int giverId = 0; giverId < receiverOf.length; giverId++) {
+			assertFalse(hierarchy.isSameGroup(1, giverId, receiverOf[giverId]));
+		}
+	}
+
+	@Test // One branch holds more than half of the pool; only households can be honored.
+	void test_generateGiftExchanges_SoftLevelRelaxed() throws Exception {
+		int[][] groupOf = createGroupOf(10, 1, 1);
+		for (int memberId = 0; memberId < 6; memberId++) {
+			groupOf[1][memberId] = 0;
+		}
+		FamilyHierarchy hierarchy = new FamilyHierarchy(groupOf, HARD_SOFT);
+		assertEquals(0, hierarchy.selectLevel());
+		int[] receiverOf = GiftExchangeGenerator.instance().generateGiftExchanges(hierarchy, RandomSource.seeded(1));
+		GiftExchangeGenerator.instance().validateGiverReceiverMap(receiverOf, groupOf[0]);
+	}
+
+	@Test // The relaxed branch level is still preferred outside the branch that holds more than half of the pool.
+	void test_generateGiftExchanges_SoftLevelPreferredOutsideLargestGroup() throws Exception {
+		int[][] groupOf = createGroupOf(30_000, 3, 10);
+		for (int memberId = 0; memberId < 18_000; memberId++) {
+			groupOf[1][memberId] = 0;
+		}
+		FamilyHierarchy hierarchy = new FamilyHierarchy(groupOf, HARD_SOFT);
+		assertEquals(0, hierarchy.selectLevel());
+		for (long seed = 0; seed < 5; seed++) {
+			int[] receiverOf = GiftExchangeGenerator.instance().generateGiftExchanges(hierarchy, RandomSource.seeded(seed));
+			GiftExchangeGenerator.instance().validateGiverReceiverMap(receiverOf, hierarchy.getGroupOf(0));
+			for (int giverId = 18_000; giverId < receiverOf.length; giverId++) {
+				assertFalse(hierarchy.isSameGroup(1, giverId, receiverOf[giverId]));
+			}
+		}
+	}
+
+	@Test // A hard level is never relaxed.
+	void test_generateGiftExchanges_HardLevelInfeasible() throws Exception {
+		int[][] groupOf = createGroupOf(10, 1, 1);
+		for (int memberId = 0; memberId < 6; memberId++) {
+			groupOf[1][memberId] = 0;
+		}
+		FamilyHierarchy hierarchy = new FamilyHierarchy(groupOf, new Strength[] { Strength.HARD, Strength.HARD });
+		try {
+			GiftExchangeGenerator.instance().generateGiftExchanges(hierarchy);
+			fail("Expecting exception to be thrown. ");
+		} catch (Exception e) {
+			assertTrue(e.getMessage().contains(GiftExchangeGenerator.ERROR_MESSAGE_FAMILY_UNIT_IS_TOO_LARGE));
+		}
+	}
+
+	@Test
+	void test_FamilyHierarchy_NotNested() {
+		int[][] groupOf = createGroupOf(12, 2, 3);
+		groupOf[1][1] = 101; // Splits household 0.
+		try {
+			new FamilyHierarchy(groupOf, HARD_SOFT);
+			fail("Expecting exception to be thrown. ");
+		} catch (Exception e) {
+			assertTrue(e.getMessage().contains(FamilyHierarchy.ERROR_MESSAGE_INVALID_HIERARCHY));
+		}
+	}
+
+	@Test
+	void test_FamilyHierarchy_SoftHouseholds() {
+		try {
+			new FamilyHierarchy(createGroupOf(12, 2, 3), new Strength[] { Strength.SOFT, Strength.SOFT });
+			fail("Expecting exception to be thrown. ");
+		} catch (Exception e) {
+			assertTrue(e.getMessage().contains(FamilyHierarchy.ERROR_MESSAGE_INVALID_HIERARCHY));
+		}
+	}
+
+}
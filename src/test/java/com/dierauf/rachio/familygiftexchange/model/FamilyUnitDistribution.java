@@ -0,0 +1,92 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Family unit size distributions used by the tests and benchmarks.
+ * Family units are laid out on consecutive member ids, in family unit id order.
+ */
+enum FamilyUnitDistribution {
+
+	// Every family unit has DEFAULT_FAMILYUNIT_SIZE members (the last one may be smaller).
+	UNIFORM {
+		@Override
+		int[] familyUnitSizes(int familyMemberCount, Random random) {
+			return uniformFamilyUnitSizes(familyMemberCount);
+		}
+	},
+	// Half of the pool is one family unit, drawn last; the rest is uniform.
+	NEAR_MAXIMAL {
+		@Override
+		int[] familyUnitSizes(int familyMemberCount, Random random) {
+			int largestFamilyUnitSize = familyMemberCount / 2;
+			int[] others = uniformFamilyUnitSizes(familyMemberCount - largestFamilyUnitSize);
+			int[] familyUnitSizes = Arrays.copyOf(others, others.length + 1);
+			familyUnitSizes[others.length] = largestFamilyUnitSize;
+			return familyUnitSizes;
+		}
+	},
+	// Family unit sizes follow a Zipf distribution (exponent 1.5), capped at a quarter of the pool.
+	ZIPF {
+		@Override
+		int[] familyUnitSizes(int familyMemberCount, Random random) {
+			int maxFamilyUnitSize = Math.max(1, Math.min(familyMemberCount / 4, 10_000));
+			double[] cumulativeWeights = new double[maxFamilyUnitSize];
+			double total = 0;
+			for (int size = 1; size <= maxFamilyUnitSize; size++) {
+				total += 1 / Math.pow(size, 1.5);
+				cumulativeWeights[size - 1] = total;
+			}
+			int[] familyUnitSizes = new int[familyMemberCount];
+			int familyUnitCount = 0;
+			int remaining = familyMemberCount;
+			while (remaining > 0) {
+				int index = Arrays.binarySearch(cumulativeWeights, random.nextDouble() * total);
+				int size = Math.min(remaining, index >= 0 ? index + 1 : -index);
+				familyUnitSizes[familyUnitCount++] = size;
+				remaining -= size;
+			}
+			return Arrays.copyOf(familyUnitSizes, familyUnitCount);
+		}
+	};
+
+	abstract int[] familyUnitSizes(int familyMemberCount, Random random);
+
+	int[] familyUnitOf(int familyMemberCount, long seed) {
+		int[] familyUnitSizes = this.familyUnitSizes(familyMemberCount, new Random(seed));
+		int[] familyUnitOf = new int[familyMemberCount];
+		int memberId = 0;
+		for (int familyUnitId = 0; familyUnitId < familyUnitSizes.length; familyUnitId++) {
+			for (int i = 0; i < familyUnitSizes[familyUnitId]; i++) {
+				familyUnitOf[memberId++] = familyUnitId;
+			}
+		}
+		return familyUnitOf;
+	}
+
+	Set<Set<Integer>> familyUnits(int familyMemberCount, long seed) {
+		int[] familyUnitSizes = this.familyUnitSizes(familyMemberCount, new Random(seed));
+		Set<Set<Integer>> familyUnits = new HashSet<>();
+		int startingIndex = 0;
+		for (int familyUnitSize : familyUnitSizes) {
+			familyUnits.add(GiftExchangeGenerator.instance().createFamilyUnit(startingIndex, familyUnitSize));
+			startingIndex += familyUnitSize;
+		}
+		return familyUnits;
+	}
+
+	private static int[] uniformFamilyUnitSizes(int familyMemberCount) {
+		int familyUnitSize = GiftExchangeGenerator.DEFAULT_FAMILYUNIT_SIZE;
+		int familyUnitCount = (familyMemberCount + familyUnitSize - 1) / familyUnitSize;
+		int[] familyUnitSizes = new int[familyUnitCount];
+		Arrays.fill(familyUnitSizes, familyUnitSize);
+		if (familyMemberCount % familyUnitSize != 0) {
+			familyUnitSizes[familyUnitCount - 1] = familyMemberCount % familyUnitSize;
+		}
+		return familyUnitSizes;
+	}
+
+}
@@ -0,0 +1,29 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+class FamilyUnitOrderTest {
+
+	@Test
+	void test_bySizeDescending() {
+		int[] order = FamilyUnitOrder.bySizeDescending(new int[] { 1, 3, 2, 5 }, new SplittableRandom(1));
+		assertArrayEquals(new int[] { 3, 1, 2, 0 }, order);
+	}
+
+	@Test
+	void test_shuffle_Range() {
+		int[] array = new int[] { 9, 0, 1, 2, 3, 4, 9 };
+		FamilyUnitOrder.shuffle(array, 1, 5, new SplittableRandom(1));
+		assertArrayEquals(new int[] { 9, 9 }, new int[] { array[0], array[6] });
+		int[] shuffled = Arrays.copyOfRange(array, 1, 6);
+		Arrays.sort(shuffled);
+		assertArrayEquals(new int[] { 0, 1, 2, 3, 4 }, shuffled);
+		assertArrayEquals(new int[] { 0, 1, 2, 3, 4 }, Arrays.stream(FamilyUnitOrder.shuffled(5, new SplittableRandom(1))).sorted().toArray());
+	}
+
+}
@@ -0,0 +1,174 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class GiftAssignmentTest {
+
+	@Test
+	void test_of_Lookups() throws Exception {
+		int[] receiverOf = new int[] { 2, 0, 3, 1 };
+		GiftAssignment giftAssignment = GiftAssignment.of(receiverOf);
+		receiverOf[0] = 1; // Copied, so not affected.
+		assertEquals(4, giftAssignment.size());
+		assertEquals(2, giftAssignment.getReceiverId(0));
+		assertEquals(3, giftAssignment.getGiverId(1));
+		assertFalse(giftAssignment.contains(4));
+		assertThrows(NoSuchElementException.class, () -> giftAssignment.getReceiverId(4));
+		assertThrows(NoSuchElementException.class, () -> giftAssignment.getGiverId(-1));
+		assertArrayEquals(new int[] { 2, 0, 3, 1 }, giftAssignment.toReceiverOf());
+		assertEquals(giftAssignment, GiftAssignment.of(new int[] { 2, 0, 3, 1 }));
+	}
+
+	@Test
+	void test_of_DuplicateReceiver() {
+		try {
+			GiftAssignment.of(new int[] { 1, 1, 0 });
+			fail("Expecting exception to be thrown. ");
+		} catch (Exception e) {
+			assertTrue(e.getMessage().contains(GiftExchangeGenerator.ERROR_MESSAGE_DUPLICATE_RECEIVER_ID_FOUND));
+		}
+	}
+
+	@Test
+	void test_of_ReceiverOutOfRange() {
+		try {
+			GiftAssignment.of(new int[] { 1, 3, 0 });
+			fail("Expecting exception to be thrown. ");
+		} catch (Exception e) {
+			assertTrue(e.getMessage().contains(GiftAssignment.ERROR_MESSAGE_RECEIVER_ID_OUT_OF_RANGE + "3"), e.getMessage());
+		}
+	}
+
+	@Test
+	void test_forEachPair() throws Exception {
+		GiftAssignment giftAssignment = GiftAssignment.of(new int[] { 2, 0, 3, 1 });
+		StringBuilder sb = new StringBuilder();
+		giftAssignment.forEachPair((giverId, receiverId) -> sb.append(giverId).append(':').append(receiverId).append(' '));
+		assertEquals("0:2 1:0 2:3 3:1 ", sb.toString());
+	}
+
+	@Test // Sparse family member ids, e.g. from the Set API.
+	void test_asMap() {
+		GiftAssignment giftAssignment = GiftAssignment.of(new int[] { 1, 2, 0 }, new int[] { 10, 14, 12 });
+		Map<Integer, Integer> expected = new HashMap<>();
+		expected.put(10, 14);
+		expected.put(14, 12);
+		expected.put(12, 10);
+		Map<Integer, Integer> map = giftAssignment.asMap();
+		assertEquals(expected, map);
+		assertEquals(map, expected);
+		assertEquals(3, map.size());
+		assertEquals(Integer.valueOf(12), map.get(14));
+		assertNull(map.get(11)); // In the id range, but not taking part.
+		assertFalse(map.containsKey(11));
+		assertEquals(14, giftAssignment.getGiverId(12));
+		assertThrows(NoSuchElementException.class, () -> giftAssignment.getGiverId(11));
+		assertThrows(UnsupportedOperationException.class, () -> map.put(11, 10));
+	}
+
+	@Test
+	void test_generateGiftAssignment_FamilyUnits() throws Exception {
+		Set<Set<Integer>> familyUnits = new HashSet<>();
+		for (int f = 0; f < 200; f++) {
+			familyUnits.add(new HashSet<>(Arrays.asList(1000 + 3 * f, 1000 + 3 * f + 1, 1000 + 3 * f + 2)));
+		}
+		GiftAssignment giftAssignment = GiftExchangeGenerator.instance().generateGiftAssignment(familyUnits, RandomSource.seeded(1));
+		GiftExchangeGenerator.instance().validateGiverReceiverMap(giftAssignment, familyUnits);
+		assertEquals(600, giftAssignment.size());
+		// Same pairs as the Map API.
+		assertEquals(GiftExchangeGenerator.instance().generateGiftExchanges(familyUnits, RandomSource.seeded(1)),
+				giftAssignment.asMap());
+	}
+
+	@Test // Ids spanning the whole int range are kept sorted instead of in a range-sized array.
+	void test_generateGiftAssignment_SparseFamilyMemberIds() throws Exception {
+		Set<Set<Integer>> familyUnits = new HashSet<>();
+		familyUnits.add(new HashSet<>(Arrays.asList(Integer.MIN_VALUE, 0)));
+		familyUnits.add(new HashSet<>(Arrays.asList(Integer.MAX_VALUE, 1)));
+		familyUnits.add(new HashSet<>(Arrays.asList(1 << 30)));
+		GiftAssignment giftAssignment = GiftExchangeGenerator.instance().generateGiftAssignment(familyUnits, RandomSource.seeded(1));
+		GiftExchangeGenerator.instance().validateGiverReceiverMap(giftAssignment, familyUnits);
+		assertEquals(GiftExchangeGenerator.instance().generateGiftExchanges(familyUnits, RandomSource.seeded(1)),
+				giftAssignment.asMap());
+		int receiverId = giftAssignment.getReceiverId(Integer.MIN_VALUE);
+		assertEquals(Integer.MIN_VALUE, giftAssignment.getGiverId(receiverId));
+		assertFalse(giftAssignment.contains(2));
+		StringBuilder sb = new StringBuilder();
+		giftAssignment.forEachPair((giverId, receiver) -> sb.append(giverId).append(' '));
+		assertEquals(Integer.MIN_VALUE + " 0 1 " + (1 << 30) + " " + Integer.MAX_VALUE + " ", sb.toString());
+	}
+
+	@Test // -1 is a family member id like any other.
+	void test_generateGiftAssignment_NegativeFamilyMemberIds() throws Exception {
+		Set<Set<Integer>> familyUnits = new HashSet<>();
+		familyUnits.add(new HashSet<>(Arrays.asList(-1, 0)));
+		familyUnits.add(new HashSet<>(Arrays.asList(1, 2)));
+		for (long seed = 0; seed < 20; seed++) {
+			GiftAssignment giftAssignment = GiftExchangeGenerator.instance().generateGiftAssignment(familyUnits, RandomSource.seeded(seed));
+			GiftExchangeGenerator.instance().validateGiverReceiverMap(giftAssignment, familyUnits);
+			assertEquals(4, giftAssignment.asMap().size());
+			assertEquals(4, giftAssignment.asMap().entrySet().stream().count());
+			int[] pairCount = new int[1];
+			giftAssignment.forEachPair((giverId, receiverId) -> pairCount[0]++);
+			assertEquals(4, pairCount[0]);
+			int giverOfMinusOne = giftAssignment.getGiverId(-1);
+			assertEquals(-1, giftAssignment.getReceiverId(giverOfMinusOne));
+			assertEquals(Integer.valueOf(-1), giftAssignment.asMap().get(giverOfMinusOne));
+			assertEquals(GiftExchangeGenerator.instance().generateGiftExchanges(familyUnits, RandomSource.seeded(seed)),
+					giftAssignment.asMap());
+		}
+	}
+
+	@Test // A range with a gap, where -1 did not take part.
+	void test_of_NegativeFamilyMemberIdsWithGap() {
+		GiftAssignment giftAssignment = GiftAssignment.of(new int[] { 1, 2, 0 }, new int[] { -2, -1, 1 });
+		assertEquals(3, giftAssignment.asMap().size());
+		assertEquals(Integer.valueOf(-1), giftAssignment.asMap().get(-2));
+		assertFalse(giftAssignment.contains(0));
+		assertNull(giftAssignment.asMap().get(0));
+		assertEquals(1, giftAssignment.getGiverId(-2));
+	}
+
+	@Test
+	void test_generateGiftAssignment_Dense() throws Exception {
+		int[] familyUnitOf = new int[1_000_000];
+		for (int memberId = 0; memberId < familyUnitOf.length; memberId++) {
+			familyUnitOf[memberId] = memberId / GiftExchangeGenerator.DEFAULT_FAMILYUNIT_SIZE;
+		}
+		GiftAssignment giftAssignment = GiftExchangeGenerator.instance().generateGiftAssignment(familyUnitOf);
+		GiftExchangeGenerator.instance().validateGiverReceiverMap(giftAssignment.toReceiverOf(), familyUnitOf);
+		for (int giverId = 0; giverId < familyUnitOf.length; giverId++) {
+			assertEquals(giverId, giftAssignment.getGiverId(giftAssignment.getReceiverId(giverId)));
+		}
+	}
+
+	@Test // Through the Map overload, which checks a GiftAssignment's map view without deriving an inverse.
+	void test_validateGiverReceiverMap_FamilyMemberGivingToAnotherFamilyMember() throws Exception {
+		GiftAssignment giftAssignment = GiftAssignment.of(new int[] { 1, 2, 0 });
+		Set<Set<Integer>> familyUnits = new HashSet<>();
+		familyUnits.add(new HashSet<>(Arrays.asList(0, 1)));
+		familyUnits.add(new HashSet<>(Arrays.asList(2)));
+		try {
+			GiftExchangeGenerator.instance().validateGiverReceiverMap(giftAssignment.asMap(), familyUnits);
+			fail("Expecting exception to be thrown. ");
+		} catch (Exception e) {
+			assertTrue(e.getMessage().contains(GiftExchangeGenerator.ERROR_MESSAGE_FAMILY_MEMBER_GIVING_TO_ANOTHER_FAMILY_MEMBER));
+		}
+	}
+
+}
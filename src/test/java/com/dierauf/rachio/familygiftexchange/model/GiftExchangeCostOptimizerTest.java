@@ -0,0 +1,170 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+class GiftExchangeCostOptimizerTest {
+
+	@Test // Same total cost as an exhaustive search over every valid draw.
+	void test_generate_Optimal() throws Exception {
+		int[] familyUnitOf = new int[] { 0, 0, 1, 1, 2, 2, 3, 4 };
+		for (long seed = 0; seed < 20; seed++) {
+			long[][] costs = new long[familyUnitOf.length][familyUnitOf.length];
+			SplittableRandom random = new SplittableRandom(seed);
+			for (long[] row : costs) {
+				for (int j = 0; j < row.length; j++) {
+					row[j] = random.nextInt(10);
+				}
+			}
+			GiftExchangeCostOptimizer optimizer = new GiftExchangeCostOptimizer(familyUnitOf, 5, new int[familyUnitOf.length],
+					(giverId, receiverId) -> costs[giverId][receiverId], new SplittableRandom(seed));
+			int[] receiverOf = optimizer.generate();
+			GiftExchangeGenerator.instance().validateGiverReceiverMap(receiverOf, familyUnitOf);
+			assertEquals(this.findMinimalCost(familyUnitOf, costs, new int[familyUnitOf.length], new boolean[familyUnitOf.length], 0),
+					optimizer.getTotalCost(), "Seed " + seed);
+			assertEquals(this.totalCost(receiverOf, (giverId, receiverId) -> costs[giverId][receiverId]), optimizer.getTotalCost());
+		}
+	}
+
+	@Test // 50k members on a 1000 by 1000 map, in 100 by 100 grid cells.
+	void test_generateCostAwareGiftExchanges_FiftyThousand() throws Exception {
+		int familyMemberCount = 50_000;
+		SplittableRandom random = new SplittableRandom(1);
+		int[] familyUnitOf = new int[familyMemberCount];
+		int[] x = new int[familyMemberCount];
+		int[] y = new int[familyMemberCount];
+		int[] regionOf = new int[familyMemberCount];
+		int familyUnitId = -1;
+		for (int memberId = 0; memberId < familyMemberCount; memberId++) {
+			if (memberId == 0 || random.nextInt(3) == 0) { // Family units of 3 on average, living together.
+				familyUnitId++;
+				x[memberId] = random.nextInt(1000);
+				y[memberId] = random.nextInt(1000);
+			}
+			else {
+				x[memberId] = x[memberId - 1];
+				y[memberId] = y[memberId - 1];
+			}
+			familyUnitOf[memberId] = familyUnitId;
+			regionOf[memberId] = y[memberId] / 10 * 100 + x[memberId] / 10;
+		}
+		GiftExchangeCostFunction distance = GiftExchangeCostFunction.distance(x, y);
+		int[] receiverOf = GiftExchangeGenerator.instance().generateCostAwareGiftExchanges(familyUnitOf, regionOf, distance,
+				RandomSource.seeded(1));
+		long totalCost = this.totalCost(receiverOf, distance);
+		long randomTotalCost = this.totalCost(GiftExchangeGenerator.instance().generateGiftExchanges(familyUnitOf), distance);
+		assertTrue(totalCost * 20 < randomTotalCost, totalCost + " vs " + randomTotalCost + " at random.");
+	}
+
+	@Test // Half of the pool is one family unit in a region of its own: blocks must not grow to twice its size.
+	void test_generateCostAwareGiftExchanges_LargeFamilyUnitInOneRegion() throws Exception {
+		int familyMemberCount = 50_000;
+		int largeFamilyUnitSize = familyMemberCount / 2;
+		int[] familyUnitOf = new int[familyMemberCount];
+		int[] regionOf = new int[familyMemberCount];
+		for (int memberId = largeFamilyUnitSize; memberId < familyMemberCount; memberId++) {
+			familyUnitOf[memberId] = 1 + (memberId - largeFamilyUnitSize) / 2;
+			regionOf[memberId] = 1 + (memberId - largeFamilyUnitSize) / 100;
+		}
+		int familyUnitCount = familyUnitOf[familyMemberCount - 1] + 1;
+		GiftExchangeCostFunction costFunction = (giverId, receiverId) -> Math.abs(regionOf[giverId] - regionOf[receiverId]);
+		GiftExchangeCostOptimizer optimizer = new GiftExchangeCostOptimizer(familyUnitOf, familyUnitCount, regionOf, costFunction,
+				new SplittableRandom(1));
+		GiftExchangeGenerator.instance().validateGiverReceiverMap(optimizer.generate(), familyUnitOf);
+		assertTrue(optimizer.getLargestBlockSize() < 4 * GiftExchangeCostOptimizer.BLOCK_SIZE, "Largest block: "
+				+ optimizer.getLargestBlockSize());
+	}
+
+	@Test // Only equally cheap draws: the tie-break still varies the draw.
+	void test_generate_RandomTieBreak() throws Exception {
+		int[] familyUnitOf = new int[] { 0, 0, 1, 1, 2, 2, 3, 3 };
+		int[] first = new GiftExchangeCostOptimizer(familyUnitOf, 4, new int[8], (giverId, receiverId) -> 1,
+				new SplittableRandom(0)).generate();
+		boolean varies = false;
+		for (long seed = 1; seed < 10 && !varies; seed++) {
+			varies = !Arrays.equals(first, new GiftExchangeCostOptimizer(familyUnitOf, 4, new int[8], (giverId, receiverId) -> 1,
+					new SplittableRandom(seed)).generate());
+		}
+		assertTrue(varies);
+	}
+
+	@Test // The last region holds a single family unit, which cannot be a block of its own.
+	void test_generate_InfeasibleTail() throws Exception {
+		int[] familyUnitOf = new int[GiftExchangeCostOptimizer.BLOCK_SIZE + 6];
+		int[] regionOf = new int[familyUnitOf.length];
+		for (int memberId = 0; memberId < familyUnitOf.length; memberId++) {
+			boolean tail = memberId >= GiftExchangeCostOptimizer.BLOCK_SIZE;
+			familyUnitOf[memberId] = tail ? GiftExchangeCostOptimizer.BLOCK_SIZE / 2 : memberId / 2;
+			regionOf[memberId] = tail ? 1 : 0;
+		}
+		GiftExchangeCostOptimizer optimizer = new GiftExchangeCostOptimizer(familyUnitOf, GiftExchangeCostOptimizer.BLOCK_SIZE / 2 + 1,
+				regionOf, (giverId, receiverId) -> Math.abs(regionOf[giverId] - regionOf[receiverId]), new SplittableRandom(1));
+		GiftExchangeGenerator.instance().validateGiverReceiverMap(optimizer.generate(), familyUnitOf);
+		assertEquals(1, optimizer.getBlockCount());
+		assertEquals(12, optimizer.getTotalCost()); // The tail's 6 members give and receive across regions.
+	}
+
+	@Test
+	void test_generateCostAwareGiftExchanges_InvalidCost() throws Exception {
+		try {
+			GiftExchangeGenerator.instance().generateCostAwareGiftExchanges(new int[] { 0, 1, 2 }, new int[3],
+					(giverId, receiverId) -> -1);
+			fail("Expecting exception to be thrown. ");
+		} catch (Exception e) {
+			assertTrue(e.getMessage().contains(GiftExchangeCostOptimizer.ERROR_MESSAGE_INVALID_COST));
+		}
+	}
+
+	@Test
+	void test_generateCostAwareGiftExchanges_InvalidRegions() throws Exception {
+		try {
+			GiftExchangeGenerator.instance().generateCostAwareGiftExchanges(new int[] { 0, 1, 2 }, new int[2],
+					(giverId, receiverId) -> 0);
+			fail("Expecting exception to be thrown. ");
+		} catch (Exception e) {
+			assertTrue(e.getMessage().contains(GiftExchangeGenerator.ERROR_MESSAGE_INVALID_REGIONS));
+		}
+	}
+
+	@Test
+	void test_distance() {
+		GiftExchangeCostFunction distance = GiftExchangeCostFunction.distance(new int[] { 0, 3, 1 }, new int[] { 0, 4, 1 });
+		assertEquals(5, distance.cost(0, 1));
+		assertEquals(1, distance.cost(2, 0));
+		assertFalse(distance.cost(1, 2) > 4);
+	}
+
+	private long findMinimalCost(int[] familyUnitOf, long[][] costs, int[] receiverOf, boolean[] received, int giverId) {
+		if (giverId == familyUnitOf.length) {
+			return 0;
+		}
+		long minimalCost = Long.MAX_VALUE;
+		for (int receiverId = 0; receiverId < familyUnitOf.length; receiverId++) {
+			if (!received[receiverId] && familyUnitOf[receiverId] != familyUnitOf[giverId]) {
+				received[receiverId] = true;
+				long cost = this.findMinimalCost(familyUnitOf, costs, receiverOf, received, giverId + 1);
+				if (cost != Long.MAX_VALUE) {
+					minimalCost = Math.min(minimalCost, costs[giverId][receiverId] + cost);
+				}
+				received[receiverId] = false;
+			}
+		}
+		return minimalCost;
+	}
+
+	private long totalCost(int[] receiverOf, GiftExchangeCostFunction costFunction) {
+		long totalCost = 0;
+		for (int giverId = 0; giverId < receiverOf.length; giverId++) {
+			totalCost += costFunction.cost(giverId, receiverOf[giverId]);
+		}
+		return totalCost;
+	}
+
+}
@@ -0,0 +1,80 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class GiftExchangeCycleEngineTest {
+
+	private final GiftExchangeGenerator instance = GiftExchangeGenerator.instance();
+
+	@Test
+	void test_generateSingleCycleGiftExchanges_Distributions() throws Exception {
+		for (FamilyUnitDistribution distribution : FamilyUnitDistribution.values()) {
+			for (int familyMemberCount : new int[] { 10, 11, 101, 1000 }) {
+				for (long seed = 0; seed < 10; seed++) {
+					int[] familyUnitOf = distribution.familyUnitOf(familyMemberCount, seed);
+					this.instance.generateSingleCycleGiftExchanges(familyUnitOf, RandomSource.seeded(seed));
+				}
+			}
+		}
+	}
+
+	@Test // Family units of exactly half, and a half-sized family unit that is not the first one.
+	void test_generateSingleCycleGiftExchanges_HalfSizedFamilyUnits() throws Exception {
+		for (long seed = 0; seed < 50; seed++) {
+			this.instance.generateSingleCycleGiftExchanges(new int[] { 0, 0, 0, 1, 1, 1 }, RandomSource.seeded(seed));
+			this.instance.generateSingleCycleGiftExchanges(new int[] { 0, 1, 1, 1, 1, 2, 2, 2 }, RandomSource.seeded(seed));
+			this.instance.generateSingleCycleGiftExchanges(new int[] { 0, 1, 1, 2, 2, 3, 3 }, RandomSource.seeded(seed));
+		}
+	}
+
+	@Test
+	void test_generateSingleCycleGiftExchanges_Random() throws Exception {
+		int[] familyUnitOf = { 0, 1, 2, 3 };
+		Set<String> cycles = new HashSet<>();
+		for (long seed = 0; seed < 200; seed++) {
+			cycles.add(Arrays.toString(this.instance.generateSingleCycleGiftExchanges(familyUnitOf, RandomSource.seeded(seed))));
+		}
+		assertEquals(6, cycles.size()); // (4 - 1)! single cycles of four singles.
+	}
+
+	@Test
+	void test_generateSingleCycleGiftExchanges_Set() throws Exception {
+		Set<Set<Integer>> familyUnits = FamilyUnitDistribution.ZIPF.familyUnits(1000, 3);
+		Map<Integer, Integer> giverReceiverMap = this.instance.generateSingleCycleGiftExchanges(familyUnits);
+		Integer giverId = giverReceiverMap.keySet().iterator().next();
+		Integer receiverId = giverReceiverMap.get(giverId);
+		int cycleLength = 1;
+		while (!receiverId.equals(giverId)) {
+			receiverId = giverReceiverMap.get(receiverId);
+			cycleLength++;
+		}
+		assertEquals(1000, cycleLength);
+	}
+
+	@Test
+	void test_generateSingleCycleGiftExchanges_Large() throws Exception {
+		int[] familyUnitOf = FamilyUnitDistribution.NEAR_MAXIMAL.familyUnitOf(1000000, 11);
+		this.instance.generateSingleCycleGiftExchanges(familyUnitOf, RandomSource.seeded(11));
+	}
+
+	@Test
+	void test_validateSingleCycle_TwoCycles() throws Exception {
+		try {
+			this.instance.validateSingleCycle(new int[] { 1, 0, 3, 2 });
+			fail("Expected exception");
+		}
+		catch (Exception e) {
+			assertTrue(e.getMessage().contains(GiftExchangeGenerator.ERROR_MESSAGE_NOT_A_SINGLE_CYCLE));
+		}
+	}
+
+}
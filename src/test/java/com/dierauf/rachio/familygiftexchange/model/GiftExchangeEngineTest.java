@@ -0,0 +1,86 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.SplittableRandom;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class GiftExchangeEngineTest {
+
+	private GiftExchangeGenerator instance;
+
+	@BeforeEach
+	public void setup() {
+		this.instance = GiftExchangeGenerator.instance();
+		this.setLogLevel(Level.INFO);
+	}
+
+	@Test
+	void test_generate_SingletonFamilyUnits() throws Exception {
+		int[] familyUnitOf = new int[1000];
+		for (int i = 0; i < familyUnitOf.length; i++) {
+			familyUnitOf[i] = i;
+		}
+		this.assertGenerate(familyUnitOf, familyUnitOf.length);
+	}
+
+	@Test // Largest family unit is drawn last, so the pool runs dry and swaps are required.
+	void test_generate_LargestFamilyUnitLast_Swaps() throws Exception {
+		int[] familyUnitOf = this.largestFamilyUnitLast(10_000);
+		this.assertGenerate(familyUnitOf, familyUnitOf[familyUnitOf.length - 1] + 1);
+	}
+
+	@Test
+	void test_generate_LargestFamilyUnitLast_Swaps_Level_DEBUG() throws Exception {
+		this.setLogLevel(Level.DEBUG);
+		int[] familyUnitOf = this.largestFamilyUnitLast(40);
+		this.assertGenerate(familyUnitOf, familyUnitOf[familyUnitOf.length - 1] + 1);
+	}
+
+	@Test // Swaps are O(1) expected, so the existing givers examined per swap must not grow with the pool size.
+	void test_generate_LargestFamilyUnitLast_ExaminedGiversPerSwapStaysFlat() throws Exception {
+		double small = this.examinedGiversPerSwap(20_000);
+		double large = this.examinedGiversPerSwap(200_000);
+		// A linear swap would examine thousands of givers per swap here; see GiftExchangeGeneratorBenchmark for timing.
+		assertTrue(small < 16, "Examined givers per swap: " + small);
+		assertTrue(large < 16, "Examined givers per swap: " + large);
+	}
+
+	private double examinedGiversPerSwap(int familyMemberCount) throws Exception {
+		int[] familyUnitOf = this.largestFamilyUnitLast(familyMemberCount);
+		GiftExchangeEngine engine = new GiftExchangeEngine(familyUnitOf, familyUnitOf[familyMemberCount - 1] + 1, new SplittableRandom(42L));
+		engine.generate();
+		assertTrue(engine.getSwapCount() > 1000, "Expecting thousands of swaps: " + engine.getSwapCount());
+		return (double) engine.getExaminedGiverCount() / engine.getSwapCount();
+	}
+
+	@Test
+	void test_generate_EmptyFamilyUnits() throws Exception {
+		this.assertGenerate(new int[] { 1, 1, 3, 3 }, 5);
+	}
+
+	// Half the members are singletons drawn first; the other half is one family unit drawn last.
+	private int[] largestFamilyUnitLast(int familyMemberCount) {
+		int[] familyUnitOf = new int[familyMemberCount];
+		int half = familyMemberCount / 2;
+		for (int i = 0; i < familyMemberCount; i++) {
+			familyUnitOf[i] = i < half ? i : half;
+		}
+		return familyUnitOf;
+	}
+
+	private void assertGenerate(int[] familyUnitOf, int familyUnitCount) throws Exception {
+		int[] receiverOf = new GiftExchangeEngine(familyUnitOf, familyUnitCount, new SplittableRandom()).generate();
+		this.instance.validateGiverReceiverMap(receiverOf, familyUnitOf);
+	}
+
+	private void setLogLevel(Level level) {
+		Configurator.setLevel(LogManager.getLogger(this.instance.getClass()).getName(), level);
+	}
+
+}
@@ -0,0 +1,120 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class GiftExchangeExporterTest {
+
+	private static final int[] RECEIVER_OF = new int[] { 2, 3, 1, 0 };
+
+	@Test
+	void test_export_Csv() throws Exception {
+		String csv = this.export(GiftExchangeExporter.Format.CSV, this.roster("Nick", "Smith, Jr.", "Amy \"A\"", "René"));
+		assertEquals("giverId,receiverId,giverName,receiverName\n"
+				+ "0,2,Nick,\"Amy \"\"A\"\"\"\n"
+				+ "1,3,\"Smith, Jr.\",René\n"
+				+ "2,1,\"Amy \"\"A\"\"\",\"Smith, Jr.\"\n"
+				+ "3,0,René,Nick\n", csv);
+	}
+
+	@Test
+	void test_export_Csv_WithoutNames() throws Exception {
+		assertEquals("giverId,receiverId\n0,2\n1,3\n2,1\n3,0\n", this.export(GiftExchangeExporter.Format.CSV, null));
+	}
+
+	@Test
+	void test_export_Ndjson() throws Exception {
+		String ndjson = this.export(GiftExchangeExporter.Format.NDJSON, this.roster("Nick", "Back\\slash", "Amy \"A\"", "Tab\t"));
+		assertEquals("{\"giverId\":0,\"receiverId\":2,\"giverName\":\"Nick\",\"receiverName\":\"Amy \\\"A\\\"\"}\n"
+				+ "{\"giverId\":1,\"receiverId\":3,\"giverName\":\"Back\\\\slash\",\"receiverName\":\"Tab\\u0009\"}\n"
+				+ "{\"giverId\":2,\"receiverId\":1,\"giverName\":\"Amy \\\"A\\\"\",\"receiverName\":\"Back\\\\slash\"}\n"
+				+ "{\"giverId\":3,\"receiverId\":0,\"giverName\":\"Tab\\u0009\",\"receiverName\":\"Nick\"}\n", ndjson);
+	}
+
+	@Test
+	void test_export_Binary() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new GiftExchangeExporter(GiftExchangeExporter.Format.BINARY).export(RECEIVER_OF, this.roster("a", "b", "c", "d"), out);
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+		assertEquals(GiftExchangeExporter.BINARY_MAGIC, in.readInt());
+		assertEquals(RECEIVER_OF.length, in.readInt());
+		for (int giverId = 0; giverId < RECEIVER_OF.length; giverId++) {
+			assertEquals(giverId, in.readInt());
+			assertEquals(RECEIVER_OF[giverId], in.readInt());
+		}
+		assertEquals(-1, in.read());
+	}
+
+	@Test
+	void test_export_Map() throws Exception {
+		Map<Integer, Integer> giverReceiverMap = new LinkedHashMap<>();
+		giverReceiverMap.put(0, 1);
+		giverReceiverMap.put(1, 0);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new GiftExchangeExporter(GiftExchangeExporter.Format.CSV).export(giverReceiverMap, new String[] { "Nick", "Trevor, T." }, out);
+		assertEquals("giverId,receiverId,giverName,receiverName\n0,1,Nick,\"Trevor, T.\"\n1,0,\"Trevor, T.\",Nick\n",
+				new String(out.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+	@Test // Output reaches the channel in buffer-sized writes while the result is still being formatted.
+	void test_export_Streams() throws Exception {
+		int familyMemberCount = 100_000;
+		int[] familyUnitOf = FamilyUnitDistribution.UNIFORM.familyUnitOf(familyMemberCount, 42L);
+		int[] receiverOf = GiftExchangeGenerator.instance().generateGiftExchanges(familyUnitOf);
+		int bufferSize = 4096;
+		int[] writes = new int[1];
+		long[] bytes = new long[1];
+		WritableByteChannel channel = new WritableByteChannel() {
+			@Override
+			public int write(ByteBuffer source) {
+				assertTrue(source.remaining() <= bufferSize);
+				writes[0]++;
+				int length = source.remaining();
+				bytes[0] += length;
+				source.position(source.limit());
+				return length;
+			}
+			@Override
+			public boolean isOpen() {
+				return true;
+			}
+			@Override
+			public void close() {
+			}
+		};
+		new GiftExchangeExporter(GiftExchangeExporter.Format.NDJSON, bufferSize).export(receiverOf, null, channel);
+		assertTrue(writes[0] > bytes[0] / bufferSize - 1, "Expecting one write per filled buffer.");
+	}
+
+	private String export(GiftExchangeExporter.Format format, Roster roster) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		// A tiny buffer exercises the flushes inside names and tokens.
+		new GiftExchangeExporter(format, 1).export(RECEIVER_OF, roster, out);
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	private Roster roster(String... familyMemberNames) {
+		ByteStringDictionary names = new ByteStringDictionary();
+		ByteStringDictionary familyUnitNames = new ByteStringDictionary();
+		int[] familyUnitOf = new int[familyMemberNames.length];
+		for (int i = 0; i < familyMemberNames.length; i++) {
+			byte[] bytes = familyMemberNames[i].getBytes(StandardCharsets.UTF_8);
+			names.intern(bytes, 0, bytes.length);
+			byte[] familyUnitName = Integer.toString(i).getBytes(StandardCharsets.UTF_8);
+			familyUnitOf[i] = familyUnitNames.intern(familyUnitName, 0, familyUnitName.length);
+		}
+		return new Roster(names, familyUnitNames, familyUnitOf);
+	}
+
+}
@@ -0,0 +1,82 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Baseline JMH benchmark for the generator. Allocation rate per operation is reported by the gc
+ * profiler, which the benchmark profile enables by default (see pom.xml).
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GiftExchangeGeneratorBenchmark {
+
+	@Param({ "10", "1000", "100000", "1000000" })
+	public int familyMemberCount;
+
+	@Param({ "UNIFORM", "NEAR_MAXIMAL", "ZIPF" })
+	public String distribution;
+
+	private final GiftExchangeGenerator instance = GiftExchangeGenerator.instance();
+	private Set<Set<Integer>> familyUnits;
+	private Map<Integer, Integer> giverReceiverMap;
+	private int[] familyUnitOf;
+
+	@Setup
+	public void setup() throws Exception {
+		FamilyUnitDistribution familyUnitDistribution = FamilyUnitDistribution.valueOf(this.distribution);
+		this.familyUnits = familyUnitDistribution.familyUnits(this.familyMemberCount, 42L);
+		this.familyUnitOf = familyUnitDistribution.familyUnitOf(this.familyMemberCount, 42L);
+		this.giverReceiverMap = this.instance.generateGiftExchanges(this.familyUnits);
+	}
+
+	@Benchmark
+	public Map<Integer, Integer> generateGiftExchanges() throws Exception {
+		return this.instance.generateGiftExchanges(this.familyUnits);
+	}
+
+	@Benchmark
+	public int[] generateGiftExchanges_Dense() throws Exception {
+		return this.instance.generateGiftExchanges(this.familyUnitOf);
+	}
+
+	@Benchmark
+	public int[] generateUniformGiftExchanges_Dense() throws Exception {
+		return this.instance.generateUniformGiftExchanges(this.familyUnitOf);
+	}
+
+	@Benchmark
+	public int[] generateSingleCycleGiftExchanges_Dense() throws Exception {
+		return this.instance.generateSingleCycleGiftExchanges(this.familyUnitOf);
+	}
+
+	@Benchmark
+	public Set<Set<Integer>> validateParameters() throws Exception {
+		this.instance.validateParameters(this.familyUnits);
+		return this.familyUnits;
+	}
+
+	@Benchmark
+	public Map<Integer, Integer> validateGiverReceiverMap() throws Exception {
+		this.instance.validateGiverReceiverMap(this.giverReceiverMap, this.familyUnits);
+		return this.giverReceiverMap;
+	}
+
+}
@@ -4,15 +4,27 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 import org.apache.logging.log4j.Level;
@@ -153,6 +165,107 @@ class GiftExchangeGeneratorTest {
 		this.assertGiftExchangePairs(giftExchangePairs);
 	}
 
+	@Test
+	void test_generateGiftExchanges_Dense_HappyPath() throws Exception {
+		int[] familyUnitOf = new int[] { 0, 0, 1, 1, 2, 2, 2, 3 };
+		int[] receiverOf = this.instance.generateGiftExchanges(familyUnitOf);
+		this.instance.validateGiverReceiverMap(receiverOf, familyUnitOf);
+	}
+
+	@Test
+	void test_generateGiftExchanges_Dense_OneMillionMembers() throws Exception {
+		this.setLogLevel(Level.INFO);
+		int familyMemberCount = 1_000_000;
+		int[] familyUnitOf = new int[familyMemberCount];
+		for (int i = 0; i < familyMemberCount; i++) {
+			familyUnitOf[i] = i / GiftExchangeGenerator.DEFAULT_FAMILYUNIT_SIZE;
+		}
+		int[] receiverOf = this.instance.generateGiftExchanges(familyUnitOf);
+		this.instance.validateGiverReceiverMap(receiverOf, familyUnitOf);
+	}
+
+	@Test
+	void test_generateGiftExchanges_Dense_FamilyUnitTooLarge() {
+		try {
+			this.instance.generateGiftExchanges(new int[] { 0, 0, 0, 1, 1 });
+			fail("Expecting exception to be thrown: " + GiftExchangeGenerator.ERROR_MESSAGE_FAMILY_UNIT_IS_TOO_LARGE);
+		} catch (Exception e) {
+			assertTrue(e.getMessage().contains(GiftExchangeGenerator.ERROR_MESSAGE_FAMILY_UNIT_IS_TOO_LARGE));
+		}
+	}
+
+	@Test
+	void test_generateGiftExchanges_Dense_OnlyOneFamilyUnit() {
+		try {
+			this.instance.generateGiftExchanges(new int[] { 0, 0 });
+			fail(GiftExchangeGenerator.ERROR_MESSAGE_MUST_HAVE_AT_LEAST_TWO_FAMILY_UNITS);
+		} catch (Exception e) {
+			assertEquals(GiftExchangeGenerator.ERROR_MESSAGE_MUST_HAVE_AT_LEAST_TWO_FAMILY_UNITS, e.getMessage());
+		}
+	}
+
+	@Test
+	void test_generateGiftExchanges_Dense_InvalidFamilyUnitId() {
+		try {
+			this.instance.generateGiftExchanges(new int[] { 0, -1 });
+			fail("Expecting exception to be thrown: " + GiftExchangeGenerator.ERROR_MESSAGE_INVALID_FAMILY_UNIT_ID);
+		} catch (Exception e) {
+			assertTrue(e.getMessage().contains(GiftExchangeGenerator.ERROR_MESSAGE_INVALID_FAMILY_UNIT_ID));
+		}
+	}
+
+	@Test
+	void test_validateGiverReceiverMap_Dense_FamilyMemberGivingToFamilyMember() {
+		try {
+			this.instance.validateGiverReceiverMap(new int[] { 1, 0, 3, 2 }, new int[] { 0, 0, 1, 1 });
+			fail("Expecting exception to be thrown. ");
+		} catch (Exception e) {
+			assertTrue(e.getMessage().contains(GiftExchangeGenerator.ERROR_MESSAGE_FAMILY_MEMBER_GIVING_TO_ANOTHER_FAMILY_MEMBER));
+		}
+	}
+
+	@Test
+	void test_validateGiverReceiverMap_Dense_DuplicateReceiverId() {
+		try {
+			this.instance.validateGiverReceiverMap(new int[] { 2, 2, 0, 1 }, new int[] { 0, 0, 1, 1 });
+			fail("Expecting exception to be thrown. ");
+		} catch (Exception e) {
+			assertTrue(e.getMessage().contains(GiftExchangeGenerator.ERROR_MESSAGE_DUPLICATE_RECEIVER_ID_FOUND));
+		}
+	}
+
+	@Test
+	void test_generateGiftExchangesBatch_ResultsInInputOrder() {
+		this.setLogLevel(Level.INFO);
+		List<Set<Set<Integer>>> familyUnitConfigurations = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			// Every tenth configuration has a single family unit, which must fail on its own.
+			int numberOfMembersPerFamilyUnit = i % 10 == 0 ? 7 + i : 1 + i % 5;
+			familyUnitConfigurations.add(this.instance.generateFamilyUnits(numberOfMembersPerFamilyUnit, 7 + i));
+		}
+		List<GiftExchangeResult> results = this.instance.generateGiftExchangesBatch(familyUnitConfigurations, 4);
+		assertEquals(familyUnitConfigurations.size(), results.size());
+		for (int i = 0; i < results.size(); i++) {
+			GiftExchangeResult result = results.get(i);
+			if (i % 10 == 0) {
+				assertFalse(result.isSuccess());
+				assertEquals(GiftExchangeGenerator.ERROR_MESSAGE_MUST_HAVE_AT_LEAST_TWO_FAMILY_UNITS, result.getException().getMessage());
+			}
+			else {
+				assertTrue(result.isSuccess(), result.toString());
+				this.familyUnits = familyUnitConfigurations.get(i);
+				assertEquals(7 + i, result.getGiverReceiverMap().size());
+				this.assertReceiveOnlyOneGiftEach(result.getGiverReceiverMap());
+				this.assertNotGiftingFamilyUnitMembers(result.getGiverReceiverMap());
+			}
+		}
+	}
+
+	@Test
+	void test_generateGiftExchangesBatch_Empty() {
+		assertTrue(this.instance.generateGiftExchangesBatch(new ArrayList<>()).isEmpty());
+	}
+
 	@Test
 	void test_main_NoArguements() {
 		try {
@@ -292,6 +405,45 @@ class GiftExchangeGeneratorTest {
 		}
 	}
 
+	@Test // Ids too far apart for the bitset fall back to a HashSet.
+	void test_validateParameters_SparseIds() throws Exception {
+		Set<Set<Integer>> familyUnits = new HashSet<>();
+		familyUnits.add(new HashSet<>(Arrays.asList(Integer.MIN_VALUE, 0)));
+		familyUnits.add(new HashSet<>(Arrays.asList(Integer.MAX_VALUE, 1)));
+		this.instance.validateParameters(familyUnits);
+		familyUnits.add(new HashSet<>(Arrays.asList(Integer.MAX_VALUE)));
+		try {
+			this.instance.validateParameters(familyUnits);
+			fail(GiftExchangeGenerator.ERROR_MESSAGE_FAMILY_MEMBER_ID_FOUND_IN_MULTIPLE_FAMILY_UNITS);
+		} catch (Exception e) {
+			assertTrue(e.getMessage().contains(GiftExchangeGenerator.ERROR_MESSAGE_FAMILY_MEMBER_ID_FOUND_IN_MULTIPLE_FAMILY_UNITS));
+		}
+	}
+
+	@Test // A duplicate in a large pool must not dump the whole pool into the message.
+	void test_validateParameters_LargeDuplicate() throws Exception {
+		Set<Set<Integer>> familyUnits = FamilyUnitDistribution.UNIFORM.familyUnits(1000000, 1);
+		Set<Integer> familyUnit = new HashSet<>(Arrays.asList(-1, 0));
+		familyUnits.add(familyUnit);
+		try {
+			this.instance.validateParameters(familyUnits);
+			fail(GiftExchangeGenerator.ERROR_MESSAGE_FAMILY_MEMBER_ID_FOUND_IN_MULTIPLE_FAMILY_UNITS);
+		} catch (Exception e) {
+			assertTrue(e.getMessage().contains(GiftExchangeGenerator.ERROR_MESSAGE_FAMILY_MEMBER_ID_FOUND_IN_MULTIPLE_FAMILY_UNITS));
+			assertTrue(e.getMessage().length() < 2000, e.getMessage());
+		}
+	}
+
+	@Test
+	void test_abbreviate() {
+		List<Integer> values = new ArrayList<>();
+		for (int i = 0; i < 12; i++) {
+			values.add(i);
+		}
+		assertEquals("[0, 1, 2]", GiftExchangeGenerator.abbreviate(values.subList(0, 3)));
+		assertEquals("[0, 1, 2, 3, 4, 5, 6, 7, 8, 9, ... (12 in total)]", GiftExchangeGenerator.abbreviate(values));
+	}
+
 	private void testProgressivelyLargerFamilyUnitSizes(int numberOfMembersPerFamilyUnit) throws Exception {
 		int totalNumberOfFamilyMembers = GiftExchangeGenerator.HAPPY_FAMILY_MEMBER_NAMES.length;
 		this.familyUnits = this.instance.generateFamilyUnits(numberOfMembersPerFamilyUnit, totalNumberOfFamilyMembers);
@@ -326,6 +478,126 @@ class GiftExchangeGeneratorTest {
 		}
 	}
 
+	@Test
+	void test_generateGiftExchangesAsync_HappyPath() throws Exception {
+		this.setLogLevel(Level.INFO);
+		int[] familyUnitOf = this.createFamilyUnitOf(100_000);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			int[] receiverOf = this.instance.generateGiftExchangesAsync(familyUnitOf, null, 10, TimeUnit.SECONDS, executor).get();
+			this.instance.validateGiverReceiverMap(receiverOf, familyUnitOf);
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	void test_generateGiftExchangesAsync_InvalidInput() throws Exception {
+		CompletableFuture<int[]> future = this.instance.generateGiftExchangesAsync(new int[] { 0, 0, 1 }, null, 10,
+				TimeUnit.SECONDS, Runnable::run);
+		this.assertFailure(future, GiftExchangeException.Reason.INVALID_INPUT, GiftExchangeGenerator.ERROR_MESSAGE_FAMILY_UNIT_IS_TOO_LARGE);
+	}
+
+	@Test
+	void test_generateGiftExchangesAsync_NotFound() throws Exception {
+		GiftExclusions exclusions = (giverId, receiverId) -> giverId == 2;
+		CompletableFuture<int[]> future = this.instance.generateGiftExchangesAsync(new int[] { 0, 1, 2, 3 }, exclusions, 10,
+				TimeUnit.SECONDS, Runnable::run);
+		this.assertFailure(future, GiftExchangeException.Reason.NOT_FOUND, GiftExchangeEngine.ERROR_MESSAGE_NO_ELIGIBLE_EXISTING_GIVER);
+	}
+
+	@Test // Small random exclusion graphs: the randomized search may give up where the matching finds a draw.
+	void test_generateGiftExchanges_NotFoundIsNotInfeasible() throws Exception {
+		int[] familyUnitOf = new int[] { 0, 0, 1, 1, 2, 2, 3, 3 };
+		SplittableRandom random = new SplittableRandom(1);
+		int notFoundCount = 0;
+		for (int trial = 0; trial < 2000; trial++) {
+			List<int[]> pairs = new ArrayList<>();
+			for (int giverId = 0; giverId < familyUnitOf.length; giverId++) {
+				for (int receiverId = 0; receiverId < familyUnitOf.length; receiverId++) {
+					if (random.nextInt(2) == 0) {
+						pairs.add(new int[] { giverId, receiverId });
+					}
+				}
+			}
+			ExclusionGraph exclusions = new ExclusionGraph(familyUnitOf.length, pairs.stream().mapToInt(pair -> pair[0]).toArray(),
+					pairs.stream().mapToInt(pair -> pair[1]).toArray());
+			int[] matched;
+			try {
+				matched = this.instance.generateMatchedGiftExchanges(familyUnitOf, exclusions, RandomSource.seeded(trial));
+			}
+			catch (InfeasibleGiftExchangeException e) {
+				continue;
+			}
+			this.instance.validateExclusions(matched, exclusions);
+			try {
+				this.instance.generateGiftExchanges(familyUnitOf, exclusions, RandomSource.seeded(trial));
+			}
+			catch (GiftExchangeException e) {
+				assertEquals(GiftExchangeException.Reason.NOT_FOUND, e.getReason());
+				notFoundCount++;
+			}
+		}
+		assertTrue(notFoundCount > 0);
+	}
+
+	@Test
+	void test_generateGiftExchangesAsync_TimedOut() throws Exception {
+		this.setLogLevel(Level.INFO);
+		CompletableFuture<int[]> future = this.instance.generateGiftExchangesAsync(this.createFamilyUnitOf(1_000_000), null, 1,
+				TimeUnit.NANOSECONDS, Runnable::run);
+		this.assertFailure(future, GiftExchangeException.Reason.TIMED_OUT, GiftExchangeException.ERROR_MESSAGE_TIMED_OUT);
+	}
+
+	@Test // Cancelled from within the draw; the draw stops at its next check.
+	void test_generateGiftExchangesAsync_CancelledWhileDrawing() throws Exception {
+		this.setLogLevel(Level.INFO);
+		AtomicReference<CompletableFuture<int[]>> futureReference = new AtomicReference<>();
+		CountDownLatch started = new CountDownLatch(1);
+		AtomicInteger exclusionCheckCount = new AtomicInteger();
+		GiftExclusions exclusions = (giverId, receiverId) -> {
+			exclusionCheckCount.incrementAndGet();
+			started.countDown();
+			futureReference.get().cancel(true);
+			return false;
+		};
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		CountDownLatch queued = new CountDownLatch(1);
+		executor.execute(() -> {
+			try {
+				queued.await();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		futureReference.set(this.instance.generateGiftExchangesAsync(this.createFamilyUnitOf(1_000_000), exclusions, 10,
+				TimeUnit.SECONDS, executor));
+		queued.countDown();
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+		// Cancelled at the first check; a full draw checks about one receiver per family member, 1M here.
+		assertTrue(exclusionCheckCount.get() <= 4 * (GiftExchangeEngine.CHECK_INTERVAL_MASK + 1),
+				"Receivers checked after cancelling: " + exclusionCheckCount.get());
+	}
+
+	private int[] createFamilyUnitOf(int familyMemberCount) {
+		int[] familyUnitOf = new int[familyMemberCount];
+		for (int memberId = 0; memberId < familyMemberCount; memberId++) {
+			familyUnitOf[memberId] = memberId / GiftExchangeGenerator.DEFAULT_FAMILYUNIT_SIZE;
+		}
+		return familyUnitOf;
+	}
+
+	private void assertFailure(CompletableFuture<int[]> future, GiftExchangeException.Reason reason, String message) {
+		ExecutionException e = assertThrows(ExecutionException.class, () -> future.get());
+		assertTrue(e.getCause() instanceof GiftExchangeException);
+		assertEquals(reason, ((GiftExchangeException) e.getCause()).getReason());
+		assertTrue(e.getCause().getMessage().contains(message));
+	}
+
 	private void assertNotGiftingFamilyUnitMembers(Map<Integer, Integer> giftExchangePairs) {
 		for (Set<Integer> familyUnit : this.familyUnits) {
 			for (Integer giverId : familyUnit) {
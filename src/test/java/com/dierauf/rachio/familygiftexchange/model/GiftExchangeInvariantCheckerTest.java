@@ -0,0 +1,74 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class GiftExchangeInvariantCheckerTest {
+
+	private GiftExchangeInvariantChecker checker;
+
+	@BeforeEach
+	public void setup() {
+		this.checker = new GiftExchangeInvariantChecker(new int[] { 0, 0, 1, 1, 2 });
+	}
+
+	@Test
+	void test_onAssign_HappyPath() throws Exception {
+		this.checker.onAssign(0, 2);
+		this.checker.onAssign(2, 4);
+		this.checker.onReassign(0, 2, 3);
+		this.checker.onAssign(4, 2);
+	}
+
+	@Test
+	void test_onAssign_GiverSameAsReceiver() {
+		try {
+			this.checker.onAssign(4, 4);
+			fail("Expecting exception to be thrown. ");
+		} catch (Exception e) {
+			assertTrue(e.getMessage().contains(GiftExchangeGenerator.ERROR_MESSAGE_GIVER_ID_AND_RECEIVER_ID_CANNOT_BE_THE_SAME));
+		}
+	}
+
+	@Test
+	void test_onAssign_DuplicateReceiverId() throws Exception {
+		this.checker.onAssign(0, 4);
+		try {
+			this.checker.onAssign(2, 4);
+			fail("Expecting exception to be thrown. ");
+		} catch (Exception e) {
+			assertTrue(e.getMessage().contains(GiftExchangeGenerator.ERROR_MESSAGE_DUPLICATE_RECEIVER_ID_FOUND));
+		}
+	}
+
+	@Test
+	void test_onReassign_FamilyMemberGivingToFamilyMember() throws Exception {
+		this.checker.onAssign(0, 2);
+		try {
+			this.checker.onReassign(0, 2, 1);
+			fail("Expecting exception to be thrown. ");
+		} catch (Exception e) {
+			assertTrue(e.getMessage().contains(GiftExchangeGenerator.ERROR_MESSAGE_FAMILY_MEMBER_GIVING_TO_ANOTHER_FAMILY_MEMBER));
+		}
+	}
+
+	@Test // With DEBUG on, every mutation is checked incrementally, so large draws stay linear.
+	void test_generateGiftExchanges_LargePool_Level_DEBUG() throws Exception {
+		GiftExchangeGenerator instance = GiftExchangeGenerator.instance();
+		Configurator.setLevel(LogManager.getLogger(instance.getClass()).getName(), Level.DEBUG);
+		try {
+			int[] familyUnitOf = FamilyUnitDistribution.UNIFORM.familyUnitOf(100_000, 42L);
+			int[] receiverOf = instance.generateGiftExchanges(familyUnitOf);
+			instance.validateGiverReceiverMap(receiverOf, familyUnitOf);
+		} finally {
+			Configurator.setLevel(LogManager.getLogger(instance.getClass()).getName(), Level.INFO);
+		}
+	}
+
+}
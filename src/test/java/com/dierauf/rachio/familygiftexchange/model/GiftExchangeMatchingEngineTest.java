@@ -0,0 +1,146 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+class GiftExchangeMatchingEngineTest {
+
+	private final GiftExchangeGenerator instance = GiftExchangeGenerator.instance();
+
+	@Test
+	void test_ExclusionGraph() throws Exception {
+		ExclusionGraph exclusions = ExclusionGraph.symmetric(4, new int[] { 0, 2 }, new int[] { 1, 3 });
+		assertEquals(4, exclusions.getExclusionCount());
+		assertTrue(exclusions.isExcluded(1, 0));
+		assertTrue(exclusions.isExcluded(2, 3));
+		assertFalse(exclusions.isExcluded(0, 2));
+		try {
+			new ExclusionGraph(4, new int[] { 0 }, new int[] { 4 });
+			fail("Expected exception");
+		}
+		catch (Exception e) {
+			assertTrue(e.getMessage().contains(ExclusionGraph.ERROR_MESSAGE_INVALID_EXCLUSION));
+		}
+	}
+
+	@Test // Exclusions leave exactly one valid draw: 0 -> 1 -> 2 -> 3 -> 4 -> 5 -> 0.
+	void test_generateMatchedGiftExchanges_SingleSolution() throws Exception {
+		int familyMemberCount = 6;
+		int[] familyUnitOf = { 0, 1, 2, 3, 4, 5 };
+		int[] giverIds = new int[familyMemberCount * familyMemberCount];
+		int[] receiverIds = new int[giverIds.length];
+		int exclusionCount = 0;
+		for (int giverId = 0; giverId < familyMemberCount; giverId++) {
+			for (int receiverId = 0; receiverId < familyMemberCount; receiverId++) {
+				if (receiverId != (giverId + 1) % familyMemberCount) {
+					giverIds[exclusionCount] = giverId;
+					receiverIds[exclusionCount++] = receiverId;
+				}
+			}
+		}
+		ExclusionGraph exclusions = new ExclusionGraph(familyMemberCount, Arrays.copyOf(giverIds, exclusionCount),
+				Arrays.copyOf(receiverIds, exclusionCount));
+		for (long seed = 0; seed < 20; seed++) {
+			assertArrayEquals(new int[] { 1, 2, 3, 4, 5, 0 },
+					this.instance.generateMatchedGiftExchanges(familyUnitOf, exclusions, RandomSource.seeded(seed)));
+		}
+	}
+
+	@Test // Givers 2, 3 and 4 may only give to 0 or 1.
+	void test_generateMatchedGiftExchanges_Infeasible() throws Exception {
+		int familyMemberCount = 10;
+		int[] familyUnitOf = { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9 };
+		int[] giverIds = new int[24];
+		int[] receiverIds = new int[24];
+		int exclusionCount = 0;
+		for (int giverId = 2; giverId <= 4; giverId++) {
+			for (int receiverId = 2; receiverId < familyMemberCount; receiverId++) {
+				giverIds[exclusionCount] = giverId;
+				receiverIds[exclusionCount++] = receiverId;
+			}
+		}
+		ExclusionGraph exclusions = new ExclusionGraph(familyMemberCount, giverIds, receiverIds);
+		try {
+			this.instance.generateMatchedGiftExchanges(familyUnitOf, exclusions, RandomSource.seeded(1));
+			fail("Expected exception");
+		}
+		catch (InfeasibleGiftExchangeException e) {
+			assertTrue(e.getMessage().contains(InfeasibleGiftExchangeException.ERROR_MESSAGE_NO_VALID_GIFT_EXCHANGE));
+			this.assertCertificate(familyUnitOf, exclusions, e);
+		}
+	}
+
+	@Test // Family units alone never need the matching phases to fail.
+	void test_generateMatchedGiftExchanges_FamilyUnitsOnly() throws Exception {
+		for (FamilyUnitDistribution distribution : FamilyUnitDistribution.values()) {
+			int[] familyUnitOf = distribution.familyUnitOf(10000, 3);
+			this.instance.generateMatchedGiftExchanges(familyUnitOf, null, RandomSource.seeded(3));
+		}
+	}
+
+	@Test // 100k members with 2M random exclusions, plus a large family unit that makes the greedy pass struggle.
+	void test_generateMatchedGiftExchanges_Large() throws Exception {
+		int familyMemberCount = 100000;
+		int exclusionCount = 2000000;
+		int[] familyUnitOf = FamilyUnitDistribution.NEAR_MAXIMAL.familyUnitOf(familyMemberCount, 5);
+		SplittableRandom random = new SplittableRandom(5);
+		int[] giverIds = new int[exclusionCount];
+		int[] receiverIds = new int[exclusionCount];
+		for (int i = 0; i < exclusionCount; i++) {
+			giverIds[i] = random.nextInt(familyMemberCount);
+			receiverIds[i] = random.nextInt(familyMemberCount);
+		}
+		long start = System.nanoTime();
+		ExclusionGraph exclusions = new ExclusionGraph(familyMemberCount, giverIds, receiverIds);
+		this.instance.generateMatchedGiftExchanges(familyUnitOf, exclusions, RandomSource.seeded(5));
+		long millis = (System.nanoTime() - start) / 1000000;
+		assertTrue(millis < 10000, "Took " + millis + " ms");
+	}
+
+	@Test // A random infeasible instance: the certificate must hold.
+	void test_generateMatchedGiftExchanges_RandomInfeasible() throws Exception {
+		int familyMemberCount = 1000;
+		int[] familyUnitOf = FamilyUnitDistribution.UNIFORM.familyUnitOf(familyMemberCount, 9);
+		// The first 50 givers may only give to the first 40 receivers.
+		int[] giverIds = new int[50 * (familyMemberCount - 40)];
+		int[] receiverIds = new int[giverIds.length];
+		int exclusionCount = 0;
+		for (int giverId = 0; giverId < 50; giverId++) {
+			for (int receiverId = 40; receiverId < familyMemberCount; receiverId++) {
+				giverIds[exclusionCount] = giverId;
+				receiverIds[exclusionCount++] = receiverId;
+			}
+		}
+		ExclusionGraph exclusions = new ExclusionGraph(familyMemberCount, giverIds, receiverIds);
+		try {
+			this.instance.generateMatchedGiftExchanges(familyUnitOf, exclusions, RandomSource.seeded(9));
+			fail("Expected exception");
+		}
+		catch (InfeasibleGiftExchangeException e) {
+			this.assertCertificate(familyUnitOf, exclusions, e);
+		}
+	}
+
+	// Fewer receivers than givers, and every allowed receiver of those givers among them.
+	private void assertCertificate(int[] familyUnitOf, ExclusionGraph exclusions, InfeasibleGiftExchangeException e) {
+		int[] giverIds = e.getGiverIds();
+		int[] receiverIds = e.getReceiverIds();
+		assertTrue(receiverIds.length < giverIds.length);
+		for (int giverId : giverIds) {
+			for (int receiverId = 0; receiverId < familyUnitOf.length; receiverId++) {
+				if (familyUnitOf[giverId] != familyUnitOf[receiverId] && !exclusions.isExcluded(giverId, receiverId)) {
+					assertTrue(Arrays.binarySearch(receiverIds, receiverId) >= 0);
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,55 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of the metrics: compare metricsEnabled=false with the baseline in GiftExchangeGeneratorBenchmark,
+ * and with metricsEnabled=true.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GiftExchangeMetricsBenchmark {
+
+	@Param({ "10", "1000", "100000" })
+	public int familyMemberCount;
+
+	@Param({ "false", "true" })
+	public boolean metricsEnabled;
+
+	private final GiftExchangeGenerator instance = GiftExchangeGenerator.instance();
+	private int[] familyUnitOf;
+
+	@Setup
+	public void setup() {
+		this.familyUnitOf = FamilyUnitDistribution.ZIPF.familyUnitOf(this.familyMemberCount, 42L);
+		this.instance.setMetricsListener(this.metricsEnabled ? new GiftExchangeMetrics() : null);
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.instance.setMetricsListener(null);
+	}
+
+	@Benchmark
+	public int[] generateGiftExchanges_Dense() throws Exception {
+		return this.instance.generateGiftExchanges(this.familyUnitOf);
+	}
+
+}
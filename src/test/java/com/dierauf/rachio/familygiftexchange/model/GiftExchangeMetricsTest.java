@@ -0,0 +1,85 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class GiftExchangeMetricsTest {
+
+	private final GiftExchangeGenerator instance = GiftExchangeGenerator.instance();
+	private final GiftExchangeMetrics metrics = new GiftExchangeMetrics();
+
+	@BeforeEach
+	void setup() {
+		this.instance.setMetricsListener(this.metrics);
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		this.instance.setMetricsListener(null);
+		this.metrics.unregister();
+	}
+
+	@Test
+	void test_onDraw() throws Exception {
+		int[] familyUnitOf = FamilyUnitDistribution.NEAR_MAXIMAL.familyUnitOf(1000, 1);
+		for (long seed = 0; seed < 10; seed++) {
+			this.instance.generateGiftExchanges(familyUnitOf, seed);
+		}
+		this.instance.generateGiftExchanges(FamilyUnitDistribution.UNIFORM.familyUnits(100, 1));
+		assertEquals(11, this.metrics.getDrawCount());
+		assertEquals(1000, this.metrics.getReceiverPoolSizeMax());
+		assertEquals(1000, this.metrics.getReceiverPoolSizeP50());
+		assertTrue(this.metrics.getSwapCount() > 0);
+		assertTrue(this.metrics.getSelectionNanosTotal() > 0);
+		assertTrue(this.metrics.getSelectionNanosP50() <= this.metrics.getSelectionNanosP99());
+		assertTrue(this.metrics.getValidateGiverReceiverMapNanosTotal() > 0);
+	}
+
+	@Test
+	void test_onDrawFailed() throws Exception {
+		try {
+			this.instance.generateGiftExchanges(new int[] { 0, 0, 1 });
+			fail("Expected exception");
+		}
+		catch (Exception e) {
+			assertTrue(e.getMessage().contains(GiftExchangeGenerator.ERROR_MESSAGE_FAMILY_UNIT_IS_TOO_LARGE));
+		}
+		assertEquals(1, this.metrics.getFailedDrawCount());
+		assertEquals(0, this.metrics.getDrawCount());
+	}
+
+	@Test
+	void test_register() throws Exception {
+		this.metrics.register();
+		this.instance.generateGiftExchanges(new int[] { 0, 1, 2 });
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(GiftExchangeMetrics.OBJECT_NAME);
+		assertEquals(1L, server.getAttribute(name, "DrawCount"));
+		server.invoke(name, "reset", null, null);
+		assertEquals(0L, server.getAttribute(name, "DrawCount"));
+	}
+
+	@Test
+	void test_Log2Histogram() {
+		Log2Histogram histogram = new Log2Histogram();
+		assertEquals(0, histogram.getPercentile(50));
+		for (int value = 1; value <= 100; value++) {
+			histogram.record(value);
+		}
+		assertEquals(100, histogram.getCount());
+		assertEquals(5050, histogram.getTotal());
+		assertEquals(63, histogram.getPercentile(50)); // 50 lies in [32, 64).
+		assertEquals(100, histogram.getPercentile(99)); // [64, 128) capped by the maximum.
+	}
+
+}
@@ -0,0 +1,150 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class GiftExchangeNotificationRendererTest {
+
+	private static final String TEMPLATE = "Hi {giver} ({giverFamily}), you gift to {receiver} ({receiverFamily}, #{receiverId}) "
+			+ "on {date}. {{budget}: {budget}\n";
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void test_render_Message() throws Exception {
+		GiftExchangeNotificationRenderer renderer = new GiftExchangeNotificationRenderer(TEMPLATE, this.eventDetails());
+		Roster roster = this.roster(new String[] { "Nick", "René" }, new String[] { "Dierauf", "Müller" });
+		ByteBuffer message = renderer.render(1, 0, roster, ByteBuffer.allocate(1)); // Grows the buffer.
+		assertEquals("Hi René (Müller), you gift to Nick (Dierauf, #0) on Dec 24. {budget}: $25\n",
+				StandardCharsets.UTF_8.decode(message).toString());
+	}
+
+	@Test
+	void test_render_Directory() throws Exception {
+		GiftExchangeNotificationRenderer renderer = new GiftExchangeNotificationRenderer("{giver} gifts to {receiver}.");
+		Roster roster = this.roster(new String[] { "Nick", "Trevor", "Amy", "Sam" }, new String[] { "a", "a", "b", "b" });
+		Path directory = this.tempDir.resolve("notifications");
+		renderer.render(new int[] { 2, 3, 1, 0 }, roster, GiftExchangeNotificationRenderer.directory(directory), 2);
+		assertEquals("Amy gifts to Trevor.", new String(Files.readAllBytes(directory.resolve("2.txt")), StandardCharsets.UTF_8));
+		assertEquals(4, directory.toFile().list().length);
+	}
+
+	@Test
+	void test_render_FiveHundredThousandGivers() throws Exception {
+		int familyMemberCount = 500_000;
+		String[] names = new String[familyMemberCount];
+		String[] familyUnits = new String[familyMemberCount];
+		int[] familyUnitOf = new int[familyMemberCount];
+		for (int memberId = 0; memberId < familyMemberCount; memberId++) {
+			names[memberId] = "Member " + memberId;
+			familyUnits[memberId] = "Family " + memberId / GiftExchangeGenerator.DEFAULT_FAMILYUNIT_SIZE;
+			familyUnitOf[memberId] = memberId / GiftExchangeGenerator.DEFAULT_FAMILYUNIT_SIZE;
+		}
+		Roster roster = this.roster(names, familyUnits);
+		int[] receiverOf = GiftExchangeGenerator.instance().generateGiftExchanges(familyUnitOf);
+		GiftExchangeNotificationRenderer renderer = new GiftExchangeNotificationRenderer(TEMPLATE, this.eventDetails());
+		AtomicLongArray lengths = new AtomicLongArray(familyMemberCount);
+		renderer.render(receiverOf, roster, (giverId, message) -> lengths.set(giverId, message.remaining()));
+		for (int giverId = 0; giverId < familyMemberCount; giverId++) {
+			assertTrue(lengths.get(giverId) > 0);
+		}
+	}
+
+	@Test
+	void test_render_SinkFailure() throws Exception {
+		GiftExchangeNotificationRenderer renderer = new GiftExchangeNotificationRenderer("{giver}");
+		Roster roster = this.roster(new String[] { "Nick", "Amy" }, new String[] { "a", "b" });
+		try {
+			renderer.render(new int[] { 1, 0 }, roster, (giverId, message) -> {
+				throw new IOException("Disk full");
+			});
+			fail("Expecting exception to be thrown. ");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains("Disk full"));
+		}
+	}
+
+	@Test // Every worker stops at its own first failure or at the first failure of another one.
+	void test_render_SinkFailureStopsAllWorkers() throws Exception {
+		int familyMemberCount = 100_000;
+		String[] names = new String[familyMemberCount];
+		String[] familyUnits = new String[familyMemberCount];
+		int[] receiverOf = new int[familyMemberCount];
+		for (int memberId = 0; memberId < familyMemberCount; memberId++) {
+			names[memberId] = "Member " + memberId;
+			familyUnits[memberId] = "Family " + memberId;
+			receiverOf[memberId] = (memberId + 1) % familyMemberCount;
+		}
+		Roster roster = this.roster(names, familyUnits);
+		GiftExchangeNotificationRenderer renderer = new GiftExchangeNotificationRenderer("{giver} gifts to {receiver}.");
+		AtomicLong acceptCount = new AtomicLong();
+		int parallelism = 4;
+		try {
+			renderer.render(receiverOf, roster, (giverId, message) -> {
+				acceptCount.incrementAndGet();
+				throw new IOException("Disk full");
+			}, parallelism);
+			fail("Expecting exception to be thrown. ");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains("Disk full"));
+		}
+		assertTrue(acceptCount.get() <= parallelism, "Messages written: " + acceptCount.get());
+	}
+
+	@Test
+	void test_GiftExchangeNotificationRenderer_UnknownPlaceholder() {
+		try {
+			new GiftExchangeNotificationRenderer("{giver} gifts to {recipient}", Collections.<String, String> emptyMap());
+			fail("Expecting exception to be thrown. ");
+		} catch (Exception e) {
+			assertTrue(e.getMessage().contains(GiftExchangeNotificationRenderer.ERROR_MESSAGE_UNKNOWN_PLACEHOLDER));
+		}
+	}
+
+	@Test
+	void test_GiftExchangeNotificationRenderer_UnclosedPlaceholder() {
+		try {
+			new GiftExchangeNotificationRenderer("{giver gifts");
+			fail("Expecting exception to be thrown. ");
+		} catch (Exception e) {
+			assertTrue(e.getMessage().contains(GiftExchangeNotificationRenderer.ERROR_MESSAGE_UNCLOSED_PLACEHOLDER));
+		}
+	}
+
+	private Map<String, String> eventDetails() {
+		Map<String, String> eventDetails = new HashMap<>();
+		eventDetails.put("date", "Dec 24");
+		eventDetails.put("budget", "$25");
+		return eventDetails;
+	}
+
+	private Roster roster(String[] familyMemberNames, String[] familyUnitNamesOf) {
+		ByteStringDictionary names = new ByteStringDictionary();
+		ByteStringDictionary familyUnitNames = new ByteStringDictionary();
+		int[] familyUnitOf = new int[familyMemberNames.length];
+		for (int i = 0; i < familyMemberNames.length; i++) {
+			byte[] bytes = familyMemberNames[i].getBytes(StandardCharsets.UTF_8);
+			names.intern(bytes, 0, bytes.length);
+			byte[] familyUnitName = familyUnitNamesOf[i].getBytes(StandardCharsets.UTF_8);
+			familyUnitOf[i] = familyUnitNames.intern(familyUnitName, 0, familyUnitName.length);
+		}
+		return new Roster(names, familyUnitNames, familyUnitOf);
+	}
+
+}
@@ -0,0 +1,92 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.jupiter.api.Test;
+
+class GiftExchangePortfolioTest {
+
+	@Test // One family unit of exactly half of the pool, plus exclusions.
+	void test_generatePortfolioGiftExchanges_TightInput() throws Exception {
+		int[] familyUnitOf = new int[100_000];
+		for (int memberId = familyUnitOf.length / 2; memberId < familyUnitOf.length; memberId++) {
+			familyUnitOf[memberId] = 1 + (memberId - familyUnitOf.length / 2) / 2;
+		}
+		GiftExclusions exclusions = (giverId, receiverId) -> (giverId + receiverId) % 7 == 0;
+		int[] receiverOf = GiftExchangeGenerator.instance().generatePortfolioGiftExchanges(familyUnitOf, exclusions,
+				GiftExchangePortfolio.of(2), RandomSource.seeded(1));
+		this.assertValid(receiverOf, familyUnitOf, exclusions);
+	}
+
+	@Test // One attempt is slowed down to ~0.1 ms per receiver check; the other wins and cancels it.
+	void test_generatePortfolioGiftExchanges_SlowAttemptCancelled() throws Exception {
+		int[] familyUnitOf = new int[20_000];
+		for (int memberId = 0; memberId < familyUnitOf.length; memberId++) {
+			familyUnitOf[memberId] = memberId / 2;
+		}
+		AtomicReference<Thread> slowThread = new AtomicReference<>();
+		AtomicInteger slowCheckCount = new AtomicInteger();
+		GiftExclusions exclusions = (giverId, receiverId) -> {
+			slowThread.compareAndSet(null, Thread.currentThread());
+			if (slowThread.get() == Thread.currentThread()) {
+				slowCheckCount.incrementAndGet();
+				LockSupport.parkNanos(100_000);
+			}
+			return (giverId + receiverId) % 7 == 0;
+		};
+		int[] receiverOf = GiftExchangeGenerator.instance().generatePortfolioGiftExchanges(familyUnitOf, exclusions,
+				GiftExchangePortfolio.of(2, 2), RandomSource.seeded(1));
+		this.assertValid(receiverOf, familyUnitOf, exclusions);
+		// The slow attempt checks at least one receiver per giver, so it stopped well before the end of its draw.
+		assertTrue(slowCheckCount.get() < familyUnitOf.length, "Slow attempt receiver checks: " + slowCheckCount.get());
+	}
+
+	private void assertValid(int[] receiverOf, int[] familyUnitOf, GiftExclusions exclusions) throws Exception {
+		GiftExchangeGenerator.instance().validateGiverReceiverMap(receiverOf, familyUnitOf);
+		for (int giverId = 0; giverId < receiverOf.length; giverId++) {
+			assertFalse(exclusions.isExcluded(giverId, receiverOf[giverId]), "Excluded pair: " + giverId + ", " + receiverOf[giverId]);
+		}
+	}
+
+	@Test
+	void test_generatePortfolioGiftExchanges_EveryAttemptFails() throws Exception {
+		int[] familyUnitOf = new int[] { 0, 1, 2, 3 };
+		GiftExclusions exclusions = (giverId, receiverId) -> giverId == 2;
+		try {
+			GiftExchangeGenerator.instance().generatePortfolioGiftExchanges(familyUnitOf, exclusions,
+					GiftExchangePortfolio.of(2, 6));
+			fail("Expecting exception to be thrown. ");
+		} catch (Exception e) {
+			assertTrue(e.getMessage().contains(GiftExchangeEngine.ERROR_MESSAGE_NO_ELIGIBLE_EXISTING_GIVER));
+		}
+	}
+
+	@Test
+	void test_generate_Cancelled() {
+		int[] familyUnitOf = new int[] { 0, 0, 1, 1 };
+		GiftExchangeEngine engine = new GiftExchangeEngine(familyUnitOf, 2, new SplittableRandom(1));
+		engine.setCancelled(() -> true);
+		GiftExchangeException e = assertThrows(GiftExchangeException.class, () -> engine.generate());
+		assertEquals(GiftExchangeException.Reason.CANCELLED, e.getReason());
+	}
+
+	@Test
+	void test_of_Invalid() {
+		try {
+			GiftExchangePortfolio.of(2, 1);
+			fail("Expecting exception to be thrown. ");
+		} catch (Exception e) {
+			assertTrue(e.getMessage().contains(GiftExchangePortfolio.ERROR_MESSAGE_INVALID_PORTFOLIO));
+		}
+	}
+
+}
@@ -0,0 +1,106 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class GiftExchangeResultStoreTest {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void test_write_Open() throws Exception {
+		Path path = this.tempDir.resolve("results.gxr");
+		GiftExchangeResultStore.write(path, new int[] { 2, 0, 3, 1 });
+		GiftExchangeResultStore store = GiftExchangeResultStore.open(path);
+		store.verify();
+		assertEquals(4, store.getFamilyMemberCount());
+		assertEquals(2, store.getReceiverId(0));
+		assertEquals(1, store.getReceiverId(3));
+		assertEquals(0, store.getGiverId(2));
+		assertEquals(3, store.getGiverId(1));
+		assertEquals(GiftExchangeResultStore.UNKNOWN, store.getReceiverId(4));
+		assertEquals(GiftExchangeResultStore.UNKNOWN, store.getGiverId(-1));
+		assertFalse(Files.exists(this.tempDir.resolve("results.gxr.tmp")));
+	}
+
+	@Test
+	void test_write_OneMillionMembers() throws Exception {
+		int[] familyUnitOf = new int[1_000_000];
+		for (int memberId = 0; memberId < familyUnitOf.length; memberId++) {
+			familyUnitOf[memberId] = memberId / GiftExchangeGenerator.DEFAULT_FAMILYUNIT_SIZE;
+		}
+		int[] receiverOf = GiftExchangeGenerator.instance().generateGiftExchanges(familyUnitOf);
+		Path path = this.tempDir.resolve("results.gxr");
+		GiftExchangeResultStore.write(path, receiverOf);
+		GiftExchangeResultStore store = GiftExchangeResultStore.open(path);
+		assertEquals(receiverOf.length, store.getFamilyMemberCount());
+		store.verify();
+		for (int giverId = 0; giverId < receiverOf.length; giverId++) {
+			assertEquals(receiverOf[giverId], store.getReceiverId(giverId));
+			assertEquals(giverId, store.getGiverId(receiverOf[giverId]));
+		}
+	}
+
+	@Test
+	void test_verify_ChecksumMismatch() throws Exception {
+		Path path = this.tempDir.resolve("results.gxr");
+		GiftExchangeResultStore.write(path, new int[] { 1, 2, 0 });
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, 2), GiftExchangeResultStore.HEADER_SIZE);
+		}
+		GiftExchangeResultStore store = GiftExchangeResultStore.open(path);
+		try {
+			store.verify();
+			fail("Expecting exception to be thrown. ");
+		} catch (Exception e) {
+			assertTrue(e.getMessage().contains(GiftExchangeResultStore.ERROR_MESSAGE_CHECKSUM_MISMATCH));
+		}
+	}
+
+	@Test
+	void test_open_InvalidFile() throws Exception {
+		Path path = this.tempDir.resolve("results.gxr");
+		Files.write(path, "GXR1 not a store".getBytes(StandardCharsets.UTF_8));
+		try {
+			GiftExchangeResultStore.open(path);
+			fail("Expecting exception to be thrown. ");
+		} catch (Exception e) {
+			assertTrue(e.getMessage().contains(GiftExchangeResultStore.ERROR_MESSAGE_INVALID_RESULT_STORE));
+		}
+	}
+
+	@Test
+	void test_write_DuplicateReceiver() throws Exception {
+		try {
+			GiftExchangeResultStore.write(this.tempDir.resolve("results.gxr"), new int[] { 1, 1, 0 });
+			fail("Expecting exception to be thrown. ");
+		} catch (Exception e) {
+			assertTrue(e.getMessage().contains(GiftExchangeGenerator.ERROR_MESSAGE_DUPLICATE_RECEIVER_ID_FOUND));
+		}
+	}
+
+	@Test
+	void test_main_Roster_ResultStore() throws Exception {
+		Path path = this.tempDir.resolve("members.csv");
+		Files.write(path, "a,Nick\na,Trevor\nb,Amy\nb,Sam\nc,Nancy\n".getBytes(StandardCharsets.UTF_8));
+		Path output = this.tempDir.resolve("results.gxr");
+		GiftExchangeGenerator.main(new String[] { GiftExchangeGenerator.ROSTER_OPTION, path.toString(), output.toString() });
+		GiftExchangeResultStore store = GiftExchangeResultStore.open(output);
+		store.verify();
+		assertEquals(5, store.getFamilyMemberCount());
+	}
+
+}
@@ -0,0 +1,88 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+class GiftExchangeSamplerTest {
+
+	private static final int DRAWS_PER_ASSIGNMENT = 200;
+	private static final double Z_0_001 = 3.09; // Upper 0.1% point of the standard normal distribution.
+
+	@Test // Only a rotation connects the two valid assignments.
+	void test_mix_ThreeSingles() throws Exception {
+		int[] familyUnitOf = { 0, 1, 2 };
+		GiftExchangeSampler sampler = new GiftExchangeSampler(familyUnitOf, null, new SplittableRandom(1));
+		int[] receiverOf = sampler.mix(new int[] { 1, 2, 0 }, 1000);
+		assertTrue(sampler.getAcceptedStepCount() > 0);
+		GiftExchangeGenerator.instance().validateGiverReceiverMap(receiverOf, familyUnitOf);
+	}
+
+	@Test
+	void test_generateUniformGiftExchanges_ChiSquare() throws Exception {
+		this.assertUniform(new int[] { 0, 0, 1, 2, 3 });
+		this.assertUniform(new int[] { 0, 0, 1, 1, 2, 3 });
+		this.assertUniform(new int[] { 0, 0, 0, 1, 1, 2 });
+	}
+
+	@Test
+	void test_generateUniformGiftExchanges_Exclusions() throws Exception {
+		int[] familyUnitOf = FamilyUnitDistribution.ZIPF.familyUnitOf(1000, 5);
+		GiftExclusions exclusions = (giverId, receiverId) -> (giverId + receiverId) % 5 == 0;
+		int[] receiverOf = GiftExchangeGenerator.instance().generateUniformGiftExchanges(familyUnitOf, exclusions,
+				GiftExchangeSampler.defaultMixingSteps(familyUnitOf.length), RandomSource.seeded(5));
+		GiftExchangeGenerator.instance().validateExclusions(receiverOf, exclusions);
+	}
+
+	private void assertUniform(int[] familyUnitOf) throws Exception {
+		List<int[]> assignments = new ArrayList<>();
+		this.enumerateAssignments(familyUnitOf, new int[familyUnitOf.length], new boolean[familyUnitOf.length], 0, assignments);
+		Map<String, Integer> counts = new HashMap<>();
+		for (int[] assignment : assignments) {
+			counts.put(Arrays.toString(assignment), 0);
+		}
+		int draws = assignments.size() * DRAWS_PER_ASSIGNMENT;
+		for (int draw = 0; draw < draws; draw++) {
+			String key = Arrays.toString(
+					GiftExchangeGenerator.instance().generateUniformGiftExchanges(familyUnitOf, RandomSource.seeded(draw)));
+			assertTrue(counts.containsKey(key));
+			counts.merge(key, 1, Integer::sum);
+		}
+		assertEquals(assignments.size(), counts.size());
+		double chiSquare = 0;
+		for (int count : counts.values()) {
+			chiSquare += Math.pow(count - DRAWS_PER_ASSIGNMENT, 2) / DRAWS_PER_ASSIGNMENT;
+		}
+		// Wilson-Hilferty approximation of the chi-square critical value.
+		int degreesOfFreedom = assignments.size() - 1;
+		double h = 2.0 / (9 * degreesOfFreedom);
+		double criticalValue = degreesOfFreedom * Math.pow(1 - h + Z_0_001 * Math.sqrt(h), 3);
+		assertTrue(chiSquare < criticalValue, "Chi-square " + chiSquare + " >= " + criticalValue + " for "
+				+ Arrays.toString(familyUnitOf) + " (" + assignments.size() + " valid assignments)");
+	}
+
+	private void enumerateAssignments(int[] familyUnitOf, int[] receiverOf, boolean[] received, int giverId,
+			List<int[]> assignments) {
+		if (giverId == familyUnitOf.length) {
+			assignments.add(receiverOf.clone());
+			return;
+		}
+		for (int receiverId = 0; receiverId < familyUnitOf.length; receiverId++) {
+			if (!received[receiverId] && familyUnitOf[giverId] != familyUnitOf[receiverId]) {
+				received[receiverId] = true;
+				receiverOf[giverId] = receiverId;
+				this.enumerateAssignments(familyUnitOf, receiverOf, received, giverId + 1, assignments);
+				received[receiverId] = false;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,126 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local load test for the {@link GiftExchangeServer}: sends seeded draw requests from concurrent clients and
+ * reports p50/p99 latency. Fewer distinct seeds mean more cache hits. Starts an in-process server unless a
+ * URL is given. Run through the benchmark profile (see README.md).
+ * Arguments: [requests] [concurrency] [familyMemberCount] [distinctSeeds] [url]
+ */
+public class GiftExchangeServerLoadClient {
+
+	/**
+	 * Latencies of the requests in nanoseconds, sorted.
+	 */
+	static long[] run(URL url, int requests, int concurrency, int familyMemberCount, int distinctSeeds) throws Exception {
+		Set<Set<Integer>> familyUnits = FamilyUnitDistribution.UNIFORM.familyUnits(familyMemberCount, 42L);
+		StringBuilder sb = new StringBuilder("{\"familyUnits\":[");
+		for (Set<Integer> familyUnit : familyUnits) {
+			sb.append(familyUnit.toString().replace(" ", "")).append(',');
+		}
+		sb.setLength(sb.length() - 1);
+		String familyUnitsJson = sb.append("],\"seed\":").toString();
+
+		ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+		try {
+			List<Future<Long>> latencies = new ArrayList<>(requests);
+			for (int i = 0; i < requests; i++) {
+				byte[] body = (familyUnitsJson + (i % distinctSeeds) + "}").getBytes(StandardCharsets.UTF_8);
+				latencies.add(executor.submit(() -> post(url, body)));
+			}
+			long[] result = new long[requests];
+			for (int i = 0; i < requests; i++) {
+				result[i] = latencies.get(i).get();
+			}
+			Arrays.sort(result);
+			return result;
+		}
+		finally {
+			executor.shutdown();
+			executor.awaitTermination(1, TimeUnit.MINUTES);
+		}
+	}
+
+	static long percentile(long[] sortedLatencies, double percentile) {
+		int index = (int) Math.ceil(percentile / 100 * sortedLatencies.length) - 1;
+		return sortedLatencies[Math.max(0, index)];
+	}
+
+	// Returns the latency in nanoseconds; fails on anything but 200.
+	static long post(URL url, byte[] body) throws IOException {
+		long start = System.nanoTime();
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		connection.setRequestMethod("POST");
+		connection.setDoOutput(true);
+		connection.setRequestProperty("Content-Type", "application/json");
+		try (OutputStream out = connection.getOutputStream()) {
+			out.write(body);
+		}
+		int status = connection.getResponseCode();
+		if (status != 200) {
+			throw new IOException("HTTP " + status + ": " + read(connection.getErrorStream()));
+		}
+		read(connection.getInputStream());
+		return System.nanoTime() - start;
+	}
+
+	static String read(InputStream in) throws IOException {
+		if (in == null) {
+			return "";
+		}
+		try (InputStream input = in) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = input.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+			return new String(out.toByteArray(), StandardCharsets.UTF_8);
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		int requests = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+		int familyMemberCount = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+		int distinctSeeds = args.length > 3 ? Integer.parseInt(args[3]) : 100;
+		if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+			System.setProperty("sun.net.httpserver.nodelay", "true"); // See GiftExchangeServer; before the server starts.
+		}
+		GiftExchangeServer server = args.length > 4 ? null : GiftExchangeServer.start(new InetSocketAddress("localhost", 0),
+				GiftExchangeServer.DEFAULT_CACHE_SIZE);
+		try {
+			URL url = new URL(args.length > 4 ? args[4] : "http://localhost:" + server.getPort() + GiftExchangeServer.DRAW_PATH);
+			run(url, Math.min(requests, 1000), concurrency, familyMemberCount, distinctSeeds); // Warm-up.
+			long start = System.nanoTime();
+			long[] latencies = run(url, requests, concurrency, familyMemberCount, distinctSeeds);
+			double seconds = (System.nanoTime() - start) / 1e9;
+			System.out.printf("requests=%d concurrency=%d familyMemberCount=%d distinctSeeds=%d%n", requests, concurrency,
+					familyMemberCount, distinctSeeds);
+			System.out.printf("throughput=%.0f req/s p50=%.3f ms p99=%.3f ms max=%.3f ms%n", requests / seconds,
+					percentile(latencies, 50) / 1e6, percentile(latencies, 99) / 1e6, latencies[latencies.length - 1] / 1e6);
+		}
+		finally {
+			if (server != null) {
+				server.close();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,96 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class GiftExchangeServerTest {
+
+	private GiftExchangeServer server;
+	private URL url;
+
+	@BeforeEach
+	void setup() throws Exception {
+		this.setup(GiftExchangeServer.DEFAULT_CACHE_SIZE);
+	}
+
+	private void setup(long cacheSize) throws Exception {
+		this.server = GiftExchangeServer.start(new InetSocketAddress("localhost", 0), cacheSize);
+		this.url = new URL("http://localhost:" + this.server.getPort() + GiftExchangeServer.DRAW_PATH);
+	}
+
+	@AfterEach
+	void tearDown() {
+		this.server.close();
+	}
+
+	@Test
+	void test_draw() throws Exception {
+		String response = this.post("{\"familyUnits\": [[1, 2], [3, 4], [5, 6]]}", 200);
+		assertTrue(response.startsWith("{\"pairs\":[[1,"), response);
+		assertEquals(6, response.split("\\],\\[").length);
+	}
+
+	@Test // Same family units in another order, same seed: same draw, from the cache.
+	void test_draw_Cache() throws Exception {
+		// Every entry below is a 53-byte response plus 56 bytes of key: two fit, three do not.
+		this.server.close();
+		this.setup(250);
+		String response = this.post("{\"familyUnits\": [[1, 2], [3, 4], [5, 6], [7]], \"seed\": 42}", 200);
+		assertEquals(response, this.post("{\"seed\": 42, \"comment\": {\"a\": [true, null, 1.5e3]}, \"familyUnits\": [[7], [6, 5], [4, 3], [2, 1], []]}", 200));
+		assertEquals(1, this.server.getCacheHitCount());
+		assertEquals(53, response.length());
+		// The third response evicts the least recently used.
+		this.post("{\"familyUnits\": [[1, 2], [3, 4], [5, 6], [7]], \"seed\": 1}", 200);
+		this.post("{\"familyUnits\": [[1, 2], [3, 4], [5, 6], [7]], \"seed\": 42}", 200);
+		this.post("{\"familyUnits\": [[1, 2], [3, 4], [5, 6], [7]], \"seed\": 2}", 200);
+		this.post("{\"familyUnits\": [[1, 2], [3, 4], [5, 6], [7]], \"seed\": 1}", 200);
+		assertEquals(2, this.server.getCacheHitCount());
+	}
+
+	@Test
+	void test_draw_InvalidRequests() throws Exception {
+		assertTrue(this.post("{\"familyUnits\": [[1, 2], [3, 4]", 400).contains(GiftExchangeRequest.ERROR_MESSAGE_INVALID_REQUEST));
+		assertTrue(this.post("{\"seed\": 1}", 400).contains(GiftExchangeRequest.ERROR_MESSAGE_INVALID_REQUEST));
+		assertTrue(this.post("{\"familyUnits\": [[1, 2, 3], [4]]}", 400).contains(GiftExchangeGenerator.ERROR_MESSAGE_FAMILY_UNIT_IS_TOO_LARGE));
+		assertTrue(this.post("{\"familyUnits\": [[1, 2], [2, 3]]}", 400)
+				.contains(GiftExchangeGenerator.ERROR_MESSAGE_FAMILY_MEMBER_ID_FOUND_IN_MULTIPLE_FAMILY_UNITS));
+		HttpURLConnection connection = (HttpURLConnection) this.url.openConnection();
+		assertEquals(405, connection.getResponseCode());
+	}
+
+	@Test
+	void test_draw_Load() throws Exception {
+		long[] latencies = GiftExchangeServerLoadClient.run(this.url, 200, 8, 100, 5);
+		assertEquals(200, latencies.length);
+		assertTrue(GiftExchangeServerLoadClient.percentile(latencies, 50) <= GiftExchangeServerLoadClient.percentile(latencies, 99));
+		assertNotEquals(0, this.server.getCacheHitCount());
+	}
+
+	private String post(String json, int expectedStatus) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) this.url.openConnection();
+		connection.setRequestMethod("POST");
+		connection.setDoOutput(true);
+		try (OutputStream out = connection.getOutputStream()) {
+			out.write(json.getBytes(StandardCharsets.UTF_8));
+		}
+		int status = connection.getResponseCode();
+		if (status != expectedStatus) {
+			fail("HTTP " + status + ": " + GiftExchangeServerLoadClient.read(connection.getErrorStream()));
+		}
+		return GiftExchangeServerLoadClient.read(status == 200 ? connection.getInputStream() : connection.getErrorStream());
+	}
+
+}
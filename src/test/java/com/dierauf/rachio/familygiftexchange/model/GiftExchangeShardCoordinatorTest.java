@@ -0,0 +1,114 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class GiftExchangeShardCoordinatorTest {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void test_generateShardedGiftExchanges_Threads() throws Exception {
+		int[] familyUnitOf = this.createFamilyUnitOf(100_000, 1);
+		int[] receiverOf = GiftExchangeGenerator.instance().generateShardedGiftExchanges(familyUnitOf,
+				GiftExchangeShardCoordinator.threads(4));
+		GiftExchangeGenerator.instance().validateGiverReceiverMap(receiverOf, familyUnitOf);
+	}
+
+	@Test // Several worker JVMs, started by the coordinator.
+	void test_generateShardedGiftExchanges_WorkerProcesses() throws Exception {
+		int[] familyUnitOf = this.createFamilyUnitOf(30_000, 2);
+		int[] receiverOf = GiftExchangeGenerator.instance().generateShardedGiftExchanges(familyUnitOf,
+				GiftExchangeShardCoordinator.processes(3), RandomSource.seeded(3));
+		GiftExchangeGenerator.instance().validateGiverReceiverMap(receiverOf, familyUnitOf);
+		// Worker processes and threads draw the same shards from the same seeds.
+		assertArrayEquals(receiverOf, GiftExchangeGenerator.instance().generateShardedGiftExchanges(familyUnitOf,
+				GiftExchangeShardCoordinator.threads(3), RandomSource.seeded(3)));
+	}
+
+	@Test
+	void test_partition_Feasible() {
+		int[] familyUnitSizes = new int[] { 40, 30, 20, 10, 5, 5, 5, 5, 3, 3, 2, 2, 1, 1, 1, 1 };
+		for (int shardCount = 1; shardCount <= 8; shardCount++) {
+			int[] shardOf = GiftExchangeShardCoordinator.partition(familyUnitSizes, shardCount, new SplittableRandom(shardCount));
+			long[] loads = new long[shardCount];
+			int[] largest = new int[shardCount];
+			int[] familyUnitCounts = new int[shardCount];
+			for (int f = 0; f < familyUnitSizes.length; f++) {
+				loads[shardOf[f]] += familyUnitSizes[f];
+				largest[shardOf[f]] = Math.max(largest[shardOf[f]], familyUnitSizes[f]);
+				familyUnitCounts[shardOf[f]]++;
+			}
+			for (int shard = 0; shard < shardCount; shard++) {
+				assertTrue(familyUnitCounts[shard] == 0 || (familyUnitCounts[shard] >= 2 && largest[shard] * 2 <= loads[shard]),
+						"Shard " + shard + " of " + shardCount);
+			}
+		}
+	}
+
+	@Test // One family unit takes half the pool, so no split keeps every shard feasible.
+	void test_partition_SingleShard() {
+		int[] shardOf = GiftExchangeShardCoordinator.partition(new int[] { 6, 2, 2, 1, 1 }, 4, new SplittableRandom(1));
+		assertArrayEquals(new int[5], shardOf);
+	}
+
+	@Test
+	void test_stitch() {
+		int[] receiverOf = new int[] { 1, 0, 3, 2, 5, 4 };
+		GiftExchangeShardCoordinator.stitch(receiverOf, new int[][] { { 0, 1 }, { 2, 3 }, { 4, 5 } }, new SplittableRandom(1));
+		int crossShardPairs = 0;
+		boolean[] received = new boolean[receiverOf.length];
+		for (int giverId = 0; giverId < receiverOf.length; giverId++) {
+			received[receiverOf[giverId]] = true;
+			crossShardPairs += giverId / 2 != receiverOf[giverId] / 2 ? 1 : 0;
+		}
+		assertEquals(3, crossShardPairs);
+		assertArrayEquals(new boolean[] { true, true, true, true, true, true }, received);
+	}
+
+	@Test
+	void test_threads_InvalidShardCount() {
+		try {
+			GiftExchangeShardCoordinator.threads(0);
+			fail("Expecting exception to be thrown. ");
+		} catch (Exception e) {
+			assertTrue(e.getMessage().contains(GiftExchangeShardCoordinator.ERROR_MESSAGE_INVALID_SHARD_COUNT));
+		}
+	}
+
+	@Test
+	void test_main_Shards() throws Exception {
+		Path path = this.tempDir.resolve("members.csv");
+		Files.write(path, "a,Nick\na,Trevor\nb,Amy\nb,Sam\nc,Nancy\nc,Ingo\nd,Neal\nd,Ryan\n".getBytes(StandardCharsets.UTF_8));
+		Path output = this.tempDir.resolve("results.ndjson");
+		GiftExchangeGenerator.main(new String[] { GiftExchangeGenerator.SHARDS_OPTION, "2", path.toString(), output.toString() });
+		assertEquals(8, Files.readAllLines(output).size());
+	}
+
+	// Family units of random sizes 1 to 20.
+	private int[] createFamilyUnitOf(int familyMemberCount, long seed) {
+		SplittableRandom random = new SplittableRandom(seed);
+		int[] familyUnitOf = new int[familyMemberCount];
+		int familyUnitId = 0;
+		for (int memberId = 0; memberId < familyMemberCount;) {
+			int familyUnitSize = 1 + random.nextInt(20);
+			for (int i = 0; i < familyUnitSize && memberId < familyMemberCount; i++) {
+				familyUnitOf[memberId++] = familyUnitId;
+			}
+			familyUnitId++;
+		}
+		return familyUnitOf;
+	}
+
+}
@@ -0,0 +1,101 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class GiftExchangeTracerTest {
+
+	private static final Pattern PAIR = Pattern.compile("giver (\\d+) -> receiver (\\d+)");
+
+	@TempDir
+	Path tempDir;
+
+	@Test // Replaying the decoded assignments and swaps gives back the draw.
+	void test_decode_InMemory() throws Exception {
+		int[] familyUnitOf = new int[] { 0, 0, 0, 0, 1, 1, 2, 2, 3 };
+		GiftExchangeTracer tracer = GiftExchangeTracer.inMemory(1024);
+		int[] receiverOf = this.generateGiftExchanges(familyUnitOf, tracer);
+		String trace = this.decode(tracer);
+		assertTrue(trace.startsWith("#0 draw 0: begin, 9 family members in 4 family units\n"), trace);
+		assertEquals(familyUnitOf.length + 1, tracer.getEventCount());
+		int[] replayed = new int[familyUnitOf.length];
+		Matcher matcher = PAIR.matcher(trace);
+		while (matcher.find()) {
+			replayed[Integer.parseInt(matcher.group(1))] = Integer.parseInt(matcher.group(2));
+		}
+		assertArrayEquals(receiverOf, replayed, trace);
+	}
+
+	@Test
+	void test_decode_Overwritten() throws Exception {
+		GiftExchangeTracer tracer = GiftExchangeTracer.inMemory(4);
+		this.generateGiftExchanges(new int[] { 0, 0, 1, 1, 2, 2, 3, 3, 4, 4 }, tracer);
+		String[] lines = this.decode(tracer).split("\n");
+		assertEquals(5, lines.length);
+		assertEquals("... 7 earlier events overwritten", lines[0]);
+		assertTrue(lines[1].startsWith("#7 draw 0: giver "), lines[1]);
+	}
+
+	@Test
+	void test_decode_MappedFile() throws Exception {
+		Path path = this.tempDir.resolve("trace.bin");
+		try (GiftExchangeTracer tracer = GiftExchangeTracer.mapped(path, 64)) {
+			this.generateGiftExchanges(new int[] { 0, 0, 1, 1, 2 }, tracer);
+			this.generateGiftExchanges(new int[] { 0, 1, 2 }, tracer);
+		}
+		StringBuilder sb = new StringBuilder();
+		GiftExchangeTracer.decode(path, sb);
+		assertEquals(10, sb.toString().split("\n").length);
+		assertTrue(sb.toString().contains("#6 draw 1: begin, 3 family members in 3 family units\n"), sb.toString());
+	}
+
+	@Test
+	void test_decode_InvalidTrace() throws Exception {
+		Path path = this.tempDir.resolve("trace.bin");
+		Files.write(path, "not a trace".getBytes(StandardCharsets.UTF_8));
+		try {
+			GiftExchangeTracer.decode(path, new StringBuilder());
+			fail("Expecting exception to be thrown. ");
+		} catch (Exception e) {
+			assertTrue(e.getMessage().contains(GiftExchangeTracer.ERROR_MESSAGE_INVALID_TRACE));
+		}
+	}
+
+	@Test
+	void test_main_DecodeTrace() throws Exception {
+		Path path = this.tempDir.resolve("trace.bin");
+		try (GiftExchangeTracer tracer = GiftExchangeTracer.mapped(path, 16)) {
+			this.generateGiftExchanges(new int[] { 0, 1, 1, 2 }, tracer);
+		}
+		GiftExchangeGenerator.main(new String[] { GiftExchangeGenerator.DECODE_TRACE_OPTION, path.toString() });
+	}
+
+	private int[] generateGiftExchanges(int[] familyUnitOf, GiftExchangeTracer tracer) throws Exception {
+		GiftExchangeGenerator.instance().setTracer(tracer);
+		try {
+			return GiftExchangeGenerator.instance().generateGiftExchanges(Arrays.copyOf(familyUnitOf, familyUnitOf.length));
+		}
+		finally {
+			GiftExchangeGenerator.instance().setTracer(null);
+		}
+	}
+
+	private String decode(GiftExchangeTracer tracer) throws Exception {
+		StringBuilder sb = new StringBuilder();
+		tracer.decode(sb);
+		return sb.toString();
+	}
+
+}
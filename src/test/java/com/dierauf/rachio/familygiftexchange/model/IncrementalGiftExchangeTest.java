@@ -0,0 +1,193 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+class IncrementalGiftExchangeTest {
+
+	private final GiftExchangeGenerator instance = GiftExchangeGenerator.instance();
+
+	@Test // The leaving member's giver takes over their receiver.
+	void test_apply_RemoveFamilyMember() throws Exception {
+		Set<Set<Integer>> familyUnits = this.familyUnits(Arrays.asList(1, 2), Arrays.asList(3, 4), Arrays.asList(5, 6));
+		Map<Integer, Integer> giverReceiverMap = this.map(1, 3, 3, 5, 5, 2, 2, 4, 4, 6, 6, 1);
+		IncrementalGiftExchange incrementalGiftExchange = new IncrementalGiftExchange(giverReceiverMap, familyUnits,
+				RandomSource.seeded(1));
+		Map<Integer, Integer> changedPairs = incrementalGiftExchange.apply(new GiftExchangeDelta().removeFamilyMember(3));
+		assertEquals(this.map(1, 5), changedPairs);
+		familyUnits = this.familyUnits(Arrays.asList(1, 2), Arrays.asList(4), Arrays.asList(5, 6));
+		this.instance.validateGiverReceiverMap(incrementalGiftExchange.getGiverReceiverMap(), familyUnits);
+	}
+
+	@Test // Removing one member of a pair that gives to each other leaves the other one without a receiver.
+	void test_apply_RemoveFamilyMemberOfTwoCycle() throws Exception {
+		Set<Set<Integer>> familyUnits = this.familyUnits(Arrays.asList(1, 2), Arrays.asList(3, 4), Arrays.asList(5, 6));
+		Map<Integer, Integer> giverReceiverMap = this.map(1, 3, 3, 1, 2, 5, 5, 4, 4, 6, 6, 2);
+		for (long seed = 0; seed < 20; seed++) {
+			IncrementalGiftExchange incrementalGiftExchange = new IncrementalGiftExchange(giverReceiverMap, familyUnits,
+					RandomSource.seeded(seed));
+			Map<Integer, Integer> changedPairs = incrementalGiftExchange.apply(new GiftExchangeDelta().removeFamilyMember(3));
+			assertEquals(2, changedPairs.size());
+			this.instance.validateGiverReceiverMap(incrementalGiftExchange.getGiverReceiverMap(),
+					this.familyUnits(Arrays.asList(1, 2), Arrays.asList(4), Arrays.asList(5, 6)));
+		}
+	}
+
+	@Test
+	void test_apply_AddFamilyMembers() throws Exception {
+		Set<Set<Integer>> familyUnits = FamilyUnitDistribution.UNIFORM.familyUnits(100, 1);
+		Map<Integer, Integer> giverReceiverMap = this.instance.generateGiftExchanges(familyUnits);
+		IncrementalGiftExchange incrementalGiftExchange = new IncrementalGiftExchange(giverReceiverMap, familyUnits);
+		Integer relatedFamilyMemberId = familyUnits.iterator().next().iterator().next();
+		Map<Integer, Integer> changedPairs = incrementalGiftExchange.apply(new GiftExchangeDelta()
+				.addFamilyUnit(new HashSet<>(Arrays.asList(1000, 1001))).addFamilyMember(1002, 1000)
+				.addFamilyMember(1003, relatedFamilyMemberId));
+		assertTrue(changedPairs.keySet().containsAll(Arrays.asList(1000, 1001, 1002, 1003)));
+		assertTrue(changedPairs.size() <= 8);
+		this.assertApplied(giverReceiverMap, changedPairs, incrementalGiftExchange.getGiverReceiverMap());
+		assertEquals(104, incrementalGiftExchange.getFamilyMemberCount());
+	}
+
+	@Test // Many small deltas on a large pool stay valid and only touch a few pairs each.
+	void test_apply_Churn() throws Exception {
+		SplittableRandom random = new SplittableRandom(7);
+		List<Set<Integer>> familyUnitList = new ArrayList<>(FamilyUnitDistribution.ZIPF.familyUnits(10000, 7));
+		Map<Integer, Integer> familyUnitIndexOf = new HashMap<>();
+		for (int i = 0; i < familyUnitList.size(); i++) {
+			for (Integer familyMemberId : familyUnitList.get(i)) {
+				familyUnitIndexOf.put(familyMemberId, i);
+			}
+		}
+		Map<Integer, Integer> giverReceiverMap = this.instance.generateGiftExchanges(new HashSet<>(familyUnitList));
+		IncrementalGiftExchange incrementalGiftExchange = new IncrementalGiftExchange(giverReceiverMap,
+				new HashSet<>(familyUnitList), RandomSource.seeded(7));
+		List<Integer> familyMemberIds = new ArrayList<>(familyUnitIndexOf.keySet());
+		int nextFamilyMemberId = 100000;
+		for (int round = 0; round < 200; round++) {
+			GiftExchangeDelta delta = new GiftExchangeDelta();
+			for (int i = 0; i < 3; i++) {
+				Integer removedFamilyMemberId = familyMemberIds.remove(random.nextInt(familyMemberIds.size()));
+				familyUnitList.get(familyUnitIndexOf.remove(removedFamilyMemberId)).remove(removedFamilyMemberId);
+				delta.removeFamilyMember(removedFamilyMemberId);
+				Integer relatedFamilyMemberId = familyMemberIds.get(random.nextInt(familyMemberIds.size()));
+				int familyUnitIndex = familyUnitIndexOf.get(relatedFamilyMemberId);
+				familyUnitList.get(familyUnitIndex).add(nextFamilyMemberId);
+				familyUnitIndexOf.put(nextFamilyMemberId, familyUnitIndex);
+				familyMemberIds.add(nextFamilyMemberId);
+				delta.addFamilyMember(nextFamilyMemberId++, relatedFamilyMemberId);
+			}
+			Map<Integer, Integer> changedPairs = incrementalGiftExchange.apply(delta);
+			assertTrue(changedPairs.size() <= 3 * delta.size(), "Changed pairs: " + changedPairs.size());
+			Map<Integer, Integer> currentGiverReceiverMap = incrementalGiftExchange.getGiverReceiverMap();
+			giverReceiverMap.keySet().removeAll(delta.getRemovedFamilyMembers());
+			this.assertApplied(giverReceiverMap, changedPairs, currentGiverReceiverMap);
+			this.instance.validateGiverReceiverMap(currentGiverReceiverMap, new HashSet<>(familyUnitList));
+			giverReceiverMap = currentGiverReceiverMap;
+		}
+	}
+
+	@Test
+	void test_apply_InvalidDelta() throws Exception {
+		Set<Set<Integer>> familyUnits = this.familyUnits(Arrays.asList(1, 2), Arrays.asList(3, 4), Arrays.asList(5, 6));
+		Map<Integer, Integer> giverReceiverMap = this.map(1, 3, 3, 5, 5, 2, 2, 4, 4, 6, 6, 1);
+		IncrementalGiftExchange incrementalGiftExchange = new IncrementalGiftExchange(giverReceiverMap, familyUnits);
+		this.assertFails(incrementalGiftExchange, new GiftExchangeDelta().removeFamilyMember(7),
+				IncrementalGiftExchange.ERROR_MESSAGE_UNKNOWN_FAMILY_MEMBER_ID);
+		this.assertFails(incrementalGiftExchange, new GiftExchangeDelta().addFamilyMember(7, 8),
+				IncrementalGiftExchange.ERROR_MESSAGE_UNKNOWN_FAMILY_MEMBER_ID);
+		this.assertFails(incrementalGiftExchange, new GiftExchangeDelta().addFamilyMember(1, 3),
+				GiftExchangeGenerator.ERROR_MESSAGE_FAMILY_MEMBER_ID_FOUND_IN_MULTIPLE_FAMILY_UNITS);
+		this.assertFails(incrementalGiftExchange, new GiftExchangeDelta().removeFamilyMember(3).removeFamilyMember(4).removeFamilyMember(5),
+				GiftExchangeGenerator.ERROR_MESSAGE_FAMILY_UNIT_IS_TOO_LARGE);
+		this.assertFails(incrementalGiftExchange,
+				new GiftExchangeDelta().removeFamilyMember(3).removeFamilyMember(4).removeFamilyMember(5).removeFamilyMember(6),
+				GiftExchangeGenerator.ERROR_MESSAGE_MUST_HAVE_AT_LEAST_TWO_FAMILY_UNITS);
+		assertEquals(giverReceiverMap, incrementalGiftExchange.getGiverReceiverMap());
+	}
+
+	@Test // A family unit that joins alone needs a swap; failing it undoes the removal applied before it.
+	void test_apply_SwapFailureRollsBack() throws Exception {
+		Set<Set<Integer>> familyUnits = this.familyUnits(Arrays.asList(1, 2), Arrays.asList(3, 4), Arrays.asList(5, 6));
+		Map<Integer, Integer> giverReceiverMap = this.map(1, 3, 3, 5, 5, 2, 2, 4, 4, 6, 6, 1);
+		IncrementalGiftExchange incrementalGiftExchange = new IncrementalGiftExchange(giverReceiverMap, familyUnits,
+				RandomSource.seeded(1));
+		GiftExchangeDelta delta = new GiftExchangeDelta().removeFamilyMember(1).addFamilyUnit(new HashSet<>(Arrays.asList(7, 8)));
+		int[] swapCount = new int[1];
+		incrementalGiftExchange.setSwapHook(giverId -> {
+			swapCount[0]++;
+			throw new IllegalStateException("Swap failed");
+		});
+		this.assertFails(incrementalGiftExchange, delta, "Swap failed");
+		assertEquals(1, swapCount[0]);
+		assertEquals(giverReceiverMap, incrementalGiftExchange.getGiverReceiverMap());
+		assertEquals(6, incrementalGiftExchange.getFamilyMemberCount());
+
+		incrementalGiftExchange.setSwapHook(null);
+		Map<Integer, Integer> changedPairs = incrementalGiftExchange.apply(delta);
+		Map<Integer, Integer> currentGiverReceiverMap = incrementalGiftExchange.getGiverReceiverMap();
+		giverReceiverMap.remove(1);
+		this.assertApplied(giverReceiverMap, changedPairs, currentGiverReceiverMap);
+		assertEquals(7, incrementalGiftExchange.getFamilyMemberCount());
+		this.instance.validateGiverReceiverMap(currentGiverReceiverMap,
+				this.familyUnits(Arrays.asList(2), Arrays.asList(3, 4), Arrays.asList(5, 6), Arrays.asList(7, 8)));
+	}
+
+	@Test
+	void test_IncrementalGiftExchange_MismatchedMap() throws Exception {
+		Set<Set<Integer>> familyUnits = this.familyUnits(Arrays.asList(1, 2), Arrays.asList(3, 4));
+		try {
+			new IncrementalGiftExchange(this.map(1, 3, 3, 1), familyUnits);
+			fail("Expected exception");
+		}
+		catch (Exception e) {
+			assertTrue(e.getMessage().contains(IncrementalGiftExchange.ERROR_MESSAGE_GIFT_EXCHANGES_DO_NOT_MATCH_FAMILY_UNITS));
+		}
+	}
+
+	private void assertApplied(Map<Integer, Integer> previousGiverReceiverMap, Map<Integer, Integer> changedPairs,
+			Map<Integer, Integer> giverReceiverMap) {
+		Map<Integer, Integer> expected = new HashMap<>(previousGiverReceiverMap);
+		expected.putAll(changedPairs);
+		assertEquals(expected, giverReceiverMap);
+	}
+
+	private void assertFails(IncrementalGiftExchange incrementalGiftExchange, GiftExchangeDelta delta, String errorMessage) {
+		try {
+			incrementalGiftExchange.apply(delta);
+			fail("Expected exception");
+		}
+		catch (Exception e) {
+			assertTrue(e.getMessage().contains(errorMessage), e.getMessage());
+		}
+	}
+
+	@SafeVarargs
+	private final Set<Set<Integer>> familyUnits(List<Integer>... familyUnits) {
+		Set<Set<Integer>> result = new HashSet<>();
+		for (List<Integer> familyUnit : familyUnits) {
+			result.add(new HashSet<>(familyUnit));
+		}
+		return result;
+	}
+
+	private Map<Integer, Integer> map(int... giverReceiverPairs) {
+		Map<Integer, Integer> giverReceiverMap = new HashMap<>();
+		for (int i = 0; i < giverReceiverPairs.length; i += 2) {
+			giverReceiverMap.put(giverReceiverPairs[i], giverReceiverPairs[i + 1]);
+		}
+		return giverReceiverMap;
+	}
+
+}
@@ -0,0 +1,54 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Concurrent draw throughput of the former shared java.util.Random against a SplittableRandom per draw,
+ * with every thread making one random selection per family member like the engine does.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(Threads.MAX)
+@State(Scope.Benchmark)
+public class RandomSourceBenchmark {
+
+	private static final int FAMILY_MEMBER_COUNT = 10_000;
+
+	private final Random shared = new Random();
+
+	@Benchmark
+	public long sharedRandom() {
+		long checksum = 0;
+		for (int bound = FAMILY_MEMBER_COUNT; bound > 0; bound--) {
+			checksum += this.shared.nextInt(bound);
+		}
+		return checksum;
+	}
+
+	@Benchmark
+	public long splittableRandomPerDraw() {
+		SplittableRandom random = RandomSource.threadLocal().forDraw();
+		long checksum = 0;
+		for (int bound = FAMILY_MEMBER_COUNT; bound > 0; bound--) {
+			checksum += random.nextInt(bound);
+		}
+		return checksum;
+	}
+
+}
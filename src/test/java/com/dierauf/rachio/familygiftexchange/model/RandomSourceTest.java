@@ -0,0 +1,63 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+class RandomSourceTest {
+
+	private static final int THREADS = Math.max(4, Runtime.getRuntime().availableProcessors());
+	private static final int FAMILY_MEMBER_COUNT = 10_000;
+
+	private final GiftExchangeGenerator instance = GiftExchangeGenerator.instance();
+
+	@Test
+	void test_seeded_SameSeedSameDraw() throws Exception {
+		int[] familyUnitOf = FamilyUnitDistribution.ZIPF.familyUnitOf(FAMILY_MEMBER_COUNT, 42L);
+		assertArrayEquals(this.instance.generateGiftExchanges(familyUnitOf, 7L), this.instance.generateGiftExchanges(familyUnitOf, 7L));
+		Set<Set<Integer>> familyUnits = FamilyUnitDistribution.ZIPF.familyUnits(1000, 42L);
+		assertEquals(this.instance.generateGiftExchanges(familyUnits, 7L), this.instance.generateGiftExchanges(familyUnits, 7L));
+	}
+
+	@Test
+	void test_seeded_DifferentSeedDifferentDraw() throws Exception {
+		int[] familyUnitOf = FamilyUnitDistribution.UNIFORM.familyUnitOf(FAMILY_MEMBER_COUNT, 42L);
+		assertFalse(Arrays.equals(this.instance.generateGiftExchanges(familyUnitOf, 7L), this.instance.generateGiftExchanges(familyUnitOf, 8L)));
+	}
+
+	@Test
+	void test_threadLocal_ConcurrentDraws() throws Exception {
+		int[] familyUnitOf = FamilyUnitDistribution.UNIFORM.familyUnitOf(FAMILY_MEMBER_COUNT, 42L);
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<int[]>> futures = new ArrayList<>();
+			for (int i = 0; i < THREADS * 4; i++) {
+				futures.add(executor.submit(() -> this.instance.generateGiftExchanges(familyUnitOf)));
+			}
+			for (Future<int[]> future : futures) {
+				this.instance.validateGiverReceiverMap(future.get(), familyUnitOf);
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	void test_seeded_NearMaximalFamilyUnit() throws Exception {
+		Set<Set<Integer>> familyUnits = FamilyUnitDistribution.NEAR_MAXIMAL.familyUnits(1000, 42L);
+		Map<Integer, Integer> giverReceiverMap = this.instance.generateGiftExchanges(familyUnits, RandomSource.seeded(3L));
+		this.instance.validateGiverReceiverMap(giverReceiverMap, familyUnits);
+	}
+
+}
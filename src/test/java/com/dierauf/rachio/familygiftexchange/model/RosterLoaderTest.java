@@ -0,0 +1,147 @@
+package com.dierauf.rachio.familygiftexchange.model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.BufferedWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RosterLoaderTest {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void test_load_Csv() throws Exception {
+		Path path = this.write("members.csv", "\uFEFFfamily,name\r\nDierauf,Nick\r\n\r\nDierauf, Trevor \r\n\"Smith, Jr.\",\"Amy \"\"A\"\" Smith\"\r\nJones,Sam");
+		Roster roster = RosterLoader.load(path);
+		assertEquals(4, roster.getFamilyMemberCount());
+		assertEquals(3, roster.getFamilyUnitCount());
+		assertArrayEquals(new int[] { 0, 0, 1, 2 }, roster.getFamilyUnitOf());
+		assertEquals("Trevor", roster.getFamilyMemberName(1));
+		assertEquals("Amy \"A\" Smith", roster.getFamilyMemberName(2));
+		assertEquals("Smith, Jr.", roster.getFamilyUnitName(1));
+	}
+
+	@Test
+	void test_load_Ndjson() throws Exception {
+		Path path = this.write("members.ndjson", "{\"family\":\"Dierauf\",\"name\":\"Nick\"}\n"
+				+ "{ \"name\" : \"Ren\\u00e9 \\\"R\\\"\", \"age\": 42, \"family\" : 7 }\n"
+				+ "{\"family\":\"Dierauf\",\"name\":\"Trevor\",\"email\":null}\n");
+		Roster roster = RosterLoader.load(path);
+		assertArrayEquals(new int[] { 0, 1, 0 }, roster.getFamilyUnitOf());
+		assertEquals("René \"R\"", roster.getFamilyMemberName(1));
+		assertEquals("7", roster.getFamilyUnitName(1));
+	}
+
+	@Test // Lines straddle buffer boundaries, and one line is longer than the initial buffer.
+	void test_load_SmallBuffer() throws Exception {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			sb.append("family").append(i % 7).append(",member").append(i).append(i == 50 ? "-with-a-very-long-name" : "").append('\n');
+		}
+		Roster roster = new RosterLoader(RosterLoader.Format.CSV, 8).read(this.write("members.csv", sb.toString()));
+		assertEquals(100, roster.getFamilyMemberCount());
+		assertEquals(7, roster.getFamilyUnitCount());
+		assertEquals("member50-with-a-very-long-name", roster.getFamilyMemberName(50));
+		assertEquals(99 % 7, roster.getFamilyUnitOf()[99]);
+	}
+
+	@Test
+	void test_load_DuplicateFamilyMember() throws Exception {
+		try {
+			RosterLoader.load(this.write("members.csv", "a,Nick\nb,Nick\n"));
+			fail("Expecting exception to be thrown. ");
+		} catch (Exception e) {
+			assertTrue(e.getMessage().contains(GiftExchangeGenerator.ERROR_MESSAGE_FAMILY_MEMBER_ID_FOUND_IN_MULTIPLE_FAMILY_UNITS));
+		}
+	}
+
+	@Test
+	void test_load_InvalidLine() throws Exception {
+		this.assertInvalidLine("members.csv", "a,Nick\nb\n");
+		this.assertInvalidLine("members.csv", "a,Nick,Amy\n");
+		this.assertInvalidLine("members.csv", "a,\"Nick\n");
+		this.assertInvalidLine("members.ndjson", "{\"family\":\"a\"}\n");
+		this.assertInvalidLine("members.ndjson", "[\"a\",\"Nick\"]\n");
+		this.assertInvalidLine("members.ndjson", "{\"family\":\"a\",\"name\":{\"first\":\"Nick\"}}\n");
+	}
+
+	@Test
+	void test_load_UnsupportedFormat() throws Exception {
+		try {
+			RosterLoader.load(this.write("members.txt", "a,Nick\n"));
+			fail("Expecting exception to be thrown. ");
+		} catch (Exception e) {
+			assertTrue(e.getMessage().contains(RosterLoader.ERROR_MESSAGE_UNSUPPORTED_ROSTER_FORMAT));
+		}
+	}
+
+	@Test
+	void test_load_OneMillionMembers() throws Exception {
+		int familyMemberCount = 1_000_000;
+		Path path = this.tempDir.resolve("members.csv");
+		try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+			writer.write("family,name\n");
+			for (int i = 0; i < familyMemberCount; i++) {
+				writer.write("family-" + (i / GiftExchangeGenerator.DEFAULT_FAMILYUNIT_SIZE) + ",member-" + i + "\n");
+			}
+		}
+		// Well under a second on a developer machine; the bound leaves room for a loaded CI host.
+		Roster roster = assertTimeout(Duration.ofSeconds(10), () -> RosterLoader.load(path));
+		assertEquals(familyMemberCount, roster.getFamilyMemberCount());
+		assertEquals(familyMemberCount / GiftExchangeGenerator.DEFAULT_FAMILYUNIT_SIZE, roster.getFamilyUnitCount());
+		assertEquals("member-999999", roster.getFamilyMemberName(999_999));
+		int[] receiverOf = GiftExchangeGenerator.instance().generateGiftExchanges(roster.getFamilyUnitOf());
+		GiftExchangeGenerator.instance().validateGiverReceiverMap(receiverOf, roster.getFamilyUnitOf());
+	}
+
+	@Test
+	void test_main_Roster() throws Exception {
+		Path path = this.write("members.csv", "a,Nick\na,Trevor\nb,Amy\nb,Sam\nc,Nancy\n");
+		GiftExchangeGenerator.main(new String[] { GiftExchangeGenerator.ROSTER_OPTION, path.toString() });
+	}
+
+	@Test
+	void test_main_Roster_OutputFile() throws Exception {
+		Path path = this.write("members.csv", "a,Nick\na,Trevor\nb,Amy\nb,Sam\nc,Nancy\n");
+		Path output = this.tempDir.resolve("results.ndjson");
+		GiftExchangeGenerator.main(new String[] { GiftExchangeGenerator.ROSTER_OPTION, path.toString(), output.toString() });
+		assertEquals(5, Files.readAllLines(output).size());
+	}
+
+	@Test
+	void test_main_Roster_MissingPath() {
+		try {
+			GiftExchangeGenerator.main(new String[] { GiftExchangeGenerator.ROSTER_OPTION });
+			fail("Expecting exception to be thrown. ");
+		} catch (Exception e) {
+			assertTrue(e.getMessage().contains(GiftExchangeGenerator.INSTRUCTIONS));
+		}
+	}
+
+	private void assertInvalidLine(String fileName, String content) throws Exception {
+		try {
+			RosterLoader.load(this.write(fileName, content));
+			fail("Expecting exception to be thrown: " + content);
+		} catch (Exception e) {
+			assertTrue(e.getMessage().contains(RosterLoader.ERROR_MESSAGE_INVALID_ROSTER_LINE), e.getMessage());
+		}
+	}
+
+	private Path write(String fileName, String content) throws Exception {
+		Path path = this.tempDir.resolve(fileName);
+		Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+		return path;
+	}
+
+}